@@ -0,0 +1,559 @@
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Implements a thread-safe Hash Table split into independently locked segments. Writers lock only
+ * the segment their key hashes to, while get() and containsKey() never lock: chains are made of
+ * nodes whose links never change, and every change to a bucket is published with a single
+ * volatile write. Each segment resizes on its own, so one segment can grow while readers and
+ * writers keep using the others.
+ *
+ * @param <KeyType>
+ * @param <ValueType>
+ */
+public class ConcurrentHashTableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+  // default number of segments, and so of writers that can work at the same time
+  private static final int DEFAULT_CONCURRENCY = 16;
+  // load of a segment at which its table is doubled
+  private static final double MAX_LOAD = 0.75;
+
+  /**
+   * Entry in a bucket chain. Only the value can change after the node is published.
+   */
+  private static final class Node<K, V> {
+    final int hash;
+    final K key;
+    volatile V value;
+    final Node<K, V> next;
+
+    Node(int hash, K key, V value, Node<K, V> next) {
+      this.hash = hash;
+      this.key = key;
+      this.value = value;
+      this.next = next;
+    }
+  }
+
+  /**
+   * Independently locked part of the map with its own table of buckets
+   */
+  @SuppressWarnings("serial")
+  private static final class Segment<K, V> extends ReentrantLock {
+    // replaced as a whole on resize so readers always see a complete table
+    volatile AtomicReferenceArray<Node<K, V>> table;
+    // only written while holding the lock
+    volatile int count;
+    // count at which table is doubled
+    int threshold;
+
+    Segment(int capacity) {
+      setTable(new AtomicReferenceArray<Node<K, V>>(capacity));
+    }
+
+    void setTable(AtomicReferenceArray<Node<K, V>> newTable) {
+      threshold = (int) (newTable.length() * MAX_LOAD);
+      table = newTable;
+    }
+  }
+
+  private final Segment<KeyType, ValueType>[] segments;
+  // hash bits used to select a segment
+  private final int segmentShift;
+  private final int segmentMask;
+
+  /**
+   * Constructor with specified total capacity and number of segments. Both are rounded up to a
+   * power of two.
+   *
+   * @param capacity    initial capacity across all segments
+   * @param concurrency expected number of threads writing at the same time
+   */
+  @SuppressWarnings("unchecked")
+  public ConcurrentHashTableMap(int capacity, int concurrency) {
+    if (capacity < 1 || concurrency < 1) {
+      throw new IllegalArgumentException("capacity and concurrency must be positive");
+    }
+    int segmentCount = powerOfTwo(Math.min(concurrency, 1 << 16));
+    segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+    segmentMask = segmentCount - 1;
+    int segmentCapacity = powerOfTwo((capacity + segmentCount - 1) / segmentCount);
+    segments = (Segment<KeyType, ValueType>[]) new Segment<?, ?>[segmentCount];
+    for (int i = 0; i < segmentCount; ++i) {
+      segments[i] = new Segment<KeyType, ValueType>(segmentCapacity);
+    }
+  }
+
+  /**
+   * Constructor with specified capacity and the default of 16 segments
+   *
+   * @param capacity
+   */
+  public ConcurrentHashTableMap(int capacity) {
+    this(capacity, DEFAULT_CONCURRENCY);
+  }
+
+  /**
+   * Constructor with default capacity 64 and 16 segments
+   */
+  public ConcurrentHashTableMap() {
+    this(64, DEFAULT_CONCURRENCY);
+  }
+
+  /**
+   * Returns the smallest power of two, at least 2, that is greater than or equal to n
+   *
+   * @param n requested size
+   * @return power of two size
+   */
+  private static int powerOfTwo(int n) {
+    int size = 2;
+    while (size < n && size < (1 << 30)) {
+      size <<= 1;
+    }
+    return size;
+  }
+
+  /**
+   * Mixes the bits of the hash code so both the high bits picking a segment and the low bits
+   * picking a bucket depend on the whole hash code
+   *
+   * @param key key to hash
+   * @return mixed hash code
+   */
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    return h;
+  }
+
+  /**
+   * Returns the segment responsible for a hash code
+   *
+   * @param hash mixed hash code
+   * @return segment for hash
+   */
+  private Segment<KeyType, ValueType> segmentFor(int hash) {
+    return segments[(hash >>> segmentShift) & segmentMask];
+  }
+
+  /**
+   * Returns the node holding key without taking any lock
+   *
+   * @param key key to look for
+   * @return node for key, null if key is not stored
+   */
+  private Node<KeyType, ValueType> findNode(Object key) {
+    if (key == null) {
+      return null;
+    }
+    int h = hash(key);
+    AtomicReferenceArray<Node<KeyType, ValueType>> table = segmentFor(h).table;
+    Node<KeyType, ValueType> node = table.get(h & (table.length() - 1));
+    while (node != null) {
+      if (node.hash == h && node.key.equals(key)) {
+        return node;
+      }
+      node = node.next;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the node holding key in a chain, must be called while holding the segment lock
+   *
+   * @param first first node of the chain
+   * @param hash  mixed hash code of key
+   * @param key   key to look for
+   * @return node for key, null if key is not in the chain
+   */
+  private static <K, V> Node<K, V> findInChain(Node<K, V> first, int hash, Object key) {
+    for (Node<K, V> node = first; node != null; node = node.next) {
+      if (node.hash == hash && node.key.equals(key)) {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Adds a new node for key to the front of its chain, doubling the segment table first if it is
+   * full. Must be called while holding the segment lock and only when key is not stored.
+   *
+   * @param segment segment key belongs to
+   * @param hash    mixed hash code of key
+   * @param key     key to add
+   * @param value   value to add
+   */
+  private void addNode(Segment<KeyType, ValueType> segment, int hash, KeyType key,
+      ValueType value) {
+    if (segment.count + 1 > segment.threshold) {
+      rehash(segment);
+    }
+    AtomicReferenceArray<Node<KeyType, ValueType>> table = segment.table;
+    int index = hash & (table.length() - 1);
+    table.set(index, new Node<KeyType, ValueType>(hash, key, value, table.get(index)));
+    segment.count = segment.count + 1;
+  }
+
+  /**
+   * Doubles the table of one segment. The new table is filled with copies of the nodes and then
+   * published at once, so readers still walking the old table see a consistent snapshot. Must be
+   * called while holding the segment lock.
+   *
+   * @param segment segment to grow
+   */
+  private void rehash(Segment<KeyType, ValueType> segment) {
+    AtomicReferenceArray<Node<KeyType, ValueType>> oldTable = segment.table;
+    int oldCapacity = oldTable.length();
+    if (oldCapacity >= (1 << 30)) {
+      return;
+    }
+    AtomicReferenceArray<Node<KeyType, ValueType>> newTable =
+        new AtomicReferenceArray<Node<KeyType, ValueType>>(oldCapacity * 2);
+    int newMask = oldCapacity * 2 - 1;
+    for (int i = 0; i < oldCapacity; ++i) {
+      for (Node<KeyType, ValueType> node = oldTable.get(i); node != null; node = node.next) {
+        int index = node.hash & newMask;
+        newTable.lazySet(index,
+            new Node<KeyType, ValueType>(node.hash, node.key, node.value, newTable.get(index)));
+      }
+    }
+    // volatile write publishes every node set above
+    segment.setTable(newTable);
+  }
+
+  @Override
+  /**
+   * Returns true if key-value pair is successfully added to the map
+   *
+   * @return true if add is successful, false if key is null or already stored
+   */
+  public boolean put(KeyType key, ValueType value) {
+    if (key == null) {
+      return false;
+    }
+    int h = hash(key);
+    Segment<KeyType, ValueType> segment = segmentFor(h);
+    segment.lock();
+    try {
+      AtomicReferenceArray<Node<KeyType, ValueType>> table = segment.table;
+      if (findInChain(table.get(h & (table.length() - 1)), h, key) != null) {
+        return false;
+      }
+      addNode(segment, h, key, value);
+      return true;
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  @Override
+  /**
+   * Returns value associated with a unique key in the map without locking
+   *
+   * @return ValueType value - associated with key
+   */
+  public ValueType get(KeyType key) throws NoSuchElementException {
+    Node<KeyType, ValueType> node = findNode(key);
+    if (node == null) {
+      throw new NoSuchElementException();
+    }
+    return node.value;
+  }
+
+  @Override
+  /**
+   * Returns current number of entries in the map. While other threads are writing this is a
+   * snapshot that may already be out of date.
+   *
+   * @return int size - entries in map
+   */
+  public int size() {
+    long total = 0;
+    for (Segment<KeyType, ValueType> segment : segments) {
+      total += segment.count;
+    }
+    return (int) Math.min(total, Integer.MAX_VALUE);
+  }
+
+  @Override
+  /**
+   * Checks if the map contains a certain key without locking
+   *
+   * @return true if key is found, false otherwise
+   */
+  public boolean containsKey(KeyType key) {
+    return findNode(key) != null;
+  }
+
+  @Override
+  /**
+   * Removes key-value pair from the map. Nodes in front of the removed one are copied so that
+   * readers walking the chain are never cut off from the nodes behind it.
+   *
+   * @return value that was removed, null if key was not found
+   */
+  public ValueType remove(KeyType key) {
+    if (key == null) {
+      return null;
+    }
+    int h = hash(key);
+    Segment<KeyType, ValueType> segment = segmentFor(h);
+    segment.lock();
+    try {
+      AtomicReferenceArray<Node<KeyType, ValueType>> table = segment.table;
+      int index = h & (table.length() - 1);
+      Node<KeyType, ValueType> first = table.get(index);
+      Node<KeyType, ValueType> removed = findInChain(first, h, key);
+      if (removed == null) {
+        return null;
+      }
+      unlinkNode(segment, table, index, removed);
+      return removed.value;
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  /**
+   * Removes a node from its chain by copying the nodes in front of it. Must be called while
+   * holding the segment lock.
+   *
+   * @param segment segment the node belongs to
+   * @param table   current table of the segment
+   * @param index   bucket index of the chain
+   * @param removed node to remove
+   */
+  private void unlinkNode(Segment<KeyType, ValueType> segment,
+      AtomicReferenceArray<Node<KeyType, ValueType>> table, int index,
+      Node<KeyType, ValueType> removed) {
+    Node<KeyType, ValueType> newFirst = removed.next;
+    for (Node<KeyType, ValueType> node = table.get(index); node != removed; node = node.next) {
+      newFirst = new Node<KeyType, ValueType>(node.hash, node.key, node.value, newFirst);
+    }
+    table.set(index, newFirst);
+    segment.count = segment.count - 1;
+  }
+
+  @Override
+  /**
+   * Clears all key-value pairs stored in this collection, one segment at a time
+   */
+  public void clear() {
+    for (Segment<KeyType, ValueType> segment : segments) {
+      segment.lock();
+      try {
+        segment.setTable(
+            new AtomicReferenceArray<Node<KeyType, ValueType>>(segment.table.length()));
+        segment.count = 0;
+      } finally {
+        segment.unlock();
+      }
+    }
+  }
+
+  @Override
+  /**
+   * Adds key-value pair only if key is not stored yet, as one atomic step
+   *
+   * @return value already stored for key, null if the new value was added
+   */
+  public ValueType putIfAbsent(KeyType key, ValueType value) {
+    if (key == null) {
+      return null;
+    }
+    int h = hash(key);
+    Segment<KeyType, ValueType> segment = segmentFor(h);
+    segment.lock();
+    try {
+      AtomicReferenceArray<Node<KeyType, ValueType>> table = segment.table;
+      Node<KeyType, ValueType> node = findInChain(table.get(h & (table.length() - 1)), h, key);
+      if (node != null) {
+        return node.value;
+      }
+      addNode(segment, h, key, value);
+      return null;
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  @Override
+  /**
+   * Returns value stored for key, computing and adding it first if key is not stored yet. The
+   * lookup runs without locking; only a miss locks the segment, and mappingFunction is called at
+   * most once while the lock is held.
+   *
+   * @return value stored for key after the call, null if mappingFunction returned null
+   */
+  public ValueType computeIfAbsent(KeyType key,
+      Function<? super KeyType, ? extends ValueType> mappingFunction) {
+    Node<KeyType, ValueType> existing = findNode(key);
+    if (existing != null || key == null) {
+      return existing == null ? null : existing.value;
+    }
+    int h = hash(key);
+    Segment<KeyType, ValueType> segment = segmentFor(h);
+    segment.lock();
+    try {
+      AtomicReferenceArray<Node<KeyType, ValueType>> table = segment.table;
+      Node<KeyType, ValueType> node = findInChain(table.get(h & (table.length() - 1)), h, key);
+      if (node != null) {
+        return node.value;
+      }
+      ValueType value = mappingFunction.apply(key);
+      if (value != null) {
+        addNode(segment, h, key, value);
+      }
+      return value;
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  @Override
+  /**
+   * Returns value associated with key, or defaultValue if key is not stored, without locking
+   *
+   * @return value associated with key, defaultValue if key is not found
+   */
+  public ValueType getOrDefault(KeyType key, ValueType defaultValue) {
+    Node<KeyType, ValueType> node = findNode(key);
+    return node == null ? defaultValue : node.value;
+  }
+
+  @Override
+  /**
+   * Replaces the value associated with key, only if key is already stored, as one atomic step
+   *
+   * @return previous value associated with key, null if key was not found
+   */
+  public ValueType replace(KeyType key, ValueType value) {
+    if (key == null) {
+      return null;
+    }
+    int h = hash(key);
+    Segment<KeyType, ValueType> segment = segmentFor(h);
+    segment.lock();
+    try {
+      AtomicReferenceArray<Node<KeyType, ValueType>> table = segment.table;
+      Node<KeyType, ValueType> node = findInChain(table.get(h & (table.length() - 1)), h, key);
+      if (node == null) {
+        return null;
+      }
+      ValueType previous = node.value;
+      node.value = value;
+      return previous;
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  @Override
+  /**
+   * Associates key with the result of remappingFunction applied to key and its current value
+   * (null if not stored), as one atomic step. A null result removes key. remappingFunction is
+   * called while the segment lock is held.
+   *
+   * @return new value associated with key, null if key is no longer stored
+   */
+  public ValueType compute(KeyType key,
+      BiFunction<? super KeyType, ? super ValueType, ? extends ValueType> remappingFunction) {
+    if (key == null) {
+      return null;
+    }
+    int h = hash(key);
+    Segment<KeyType, ValueType> segment = segmentFor(h);
+    segment.lock();
+    try {
+      AtomicReferenceArray<Node<KeyType, ValueType>> table = segment.table;
+      int index = h & (table.length() - 1);
+      Node<KeyType, ValueType> node = findInChain(table.get(index), h, key);
+      ValueType value = remappingFunction.apply(key, node == null ? null : node.value);
+      return store(segment, table, index, node, h, key, value);
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  @Override
+  /**
+   * Associates key with value if key is not stored yet, otherwise with the result of
+   * remappingFunction applied to the current value and value, as one atomic step. A null result
+   * removes key. remappingFunction is called while the segment lock is held.
+   *
+   * @return new value associated with key, null if key is no longer stored
+   */
+  public ValueType merge(KeyType key, ValueType value,
+      BiFunction<? super ValueType, ? super ValueType, ? extends ValueType> remappingFunction) {
+    if (key == null) {
+      return null;
+    }
+    int h = hash(key);
+    Segment<KeyType, ValueType> segment = segmentFor(h);
+    segment.lock();
+    try {
+      AtomicReferenceArray<Node<KeyType, ValueType>> table = segment.table;
+      int index = h & (table.length() - 1);
+      Node<KeyType, ValueType> node = findInChain(table.get(index), h, key);
+      ValueType merged = node == null || node.value == null ? value
+          : remappingFunction.apply(node.value, value);
+      return store(segment, table, index, node, h, key, merged);
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  /**
+   * Applies the result of compute() or merge() to the node that was looked up: updates it in
+   * place, adds a new node, or removes it when value is null. Must be called while holding the
+   * segment lock.
+   *
+   * @param segment segment key belongs to
+   * @param table   table node was looked up in
+   * @param index   bucket index of key in table
+   * @param node    node currently holding key, null if key is not stored
+   * @param hash    mixed hash code of key
+   * @param key     key being updated
+   * @param value   new value, null to remove key
+   * @return value
+   */
+  private ValueType store(Segment<KeyType, ValueType> segment,
+      AtomicReferenceArray<Node<KeyType, ValueType>> table, int index,
+      Node<KeyType, ValueType> node, int hash, KeyType key, ValueType value) {
+    if (node != null && value != null) {
+      node.value = value;
+    } else if (node != null) {
+      unlinkNode(segment, table, index, node);
+    } else if (value != null) {
+      addNode(segment, hash, key, value);
+    }
+    return value;
+  }
+
+  @Override
+  /**
+   * Converts values stored in the map to formatted String. Entries added or removed while this
+   * runs may or may not be included.
+   *
+   * @return String formatted String of map
+   */
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (Segment<KeyType, ValueType> segment : segments) {
+      AtomicReferenceArray<Node<KeyType, ValueType>> table = segment.table;
+      for (int i = 0; i < table.length(); ++i) {
+        for (Node<KeyType, ValueType> node = table.get(i); node != null; node = node.next) {
+          builder.append(node.value).append('\n');
+        }
+      }
+    }
+    return builder.toString();
+  }
+}
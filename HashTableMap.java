@@ -4,8 +4,28 @@
 // Notes to Grader: <optional extra notes>
 
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.NoSuchElementException;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 /**
  * Stores key-value pair
@@ -15,7 +35,7 @@ import java.util.LinkedList;
  * @param <T>
  * @param <S>
  */
-class Pair<T, S> {
+class Pair<T, S> implements Map.Entry<T, S> {
   // store KeyType and ValueType data from HashTableMap
   protected T type1;
   protected S type2;
@@ -25,6 +45,65 @@ class Pair<T, S> {
     this.type2 = type2;
 
   }
+
+  @Override
+  public T getKey() {
+    return type1;
+  }
+
+  @Override
+  public S getValue() {
+    return type2;
+  }
+
+  @Override
+  public S setValue(S value) {
+    S previous = type2;
+    type2 = value;
+    return previous;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof Map.Entry)) {
+      return false;
+    }
+    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) other;
+    return Objects.equals(type1, entry.getKey()) && Objects.equals(type2, entry.getValue());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(type1) ^ Objects.hashCode(type2);
+  }
+}
+
+
+/**
+ * Bucket of a HashTableMap that has grown past the treeify threshold. Pairs are kept in a
+ * balanced tree ordered by key, so a bucket full of colliding keys is searched in O(log n).
+ * 
+ * @param <T>
+ * @param <S>
+ */
+class TreeBucket<T, S> {
+  // every key in the tree has exactly this class, so keys are always mutually comparable
+  protected final Class<?> keyClass;
+  protected final TreeMap<T, Pair<T, S>> pairs = new TreeMap<T, Pair<T, S>>();
+
+  public TreeBucket(Class<?> keyClass) {
+    this.keyClass = keyClass;
+  }
+
+  /**
+   * Returns whether key can be stored in this tree
+   * 
+   * @param key key to check
+   * @return true if key has the class of the keys in this tree
+   */
+  protected boolean accepts(Object key) {
+    return key.getClass() == keyClass;
+  }
 }
 
 
@@ -38,12 +117,91 @@ class Pair<T, S> {
  */
 public class HashTableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
 
+  // default loadFactor threshold that triggers a resize
+  public static final double DEFAULT_LOAD_FACTOR = 0.85;
+  // default multiplier applied to capacity on each resize
+  public static final double DEFAULT_GROWTH_FACTOR = 2.0;
+  // number of old buckets moved to the new table on each operation during an incremental rehash
+  private static final int MIGRATION_STEP = 4;
+  // bucket length at which a LinkedList bucket is converted to a TreeBucket
+  static final int TREEIFY_THRESHOLD = 8;
+  // bucket length at which a TreeBucket is converted back to a LinkedList bucket
+  static final int UNTREEIFY_THRESHOLD = 6;
+  // largest capacity of the hashTable array
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+  // chain lengths from this one up share the last entry of the stats() histogram
+  private static final int HISTOGRAM_LENGTH = 16;
+
   private int capacity;
   private int size = 0;
   // stores current load of hashTable
   private double loadFactor;
-  @SuppressWarnings("rawtypes")
-  private LinkedList[] hashTable;
+  // load at which hashTable is resized
+  private final double maxLoadFactor;
+  // factor capacity is multiplied by on each resize
+  private final double growthFactor;
+  // whether resizes migrate buckets gradually instead of all at once
+  private final boolean incremental;
+  // each bucket is null, a LinkedList of pairs, or a TreeBucket once it grows too long
+  private Object[] hashTable;
+  // table still being drained by an incremental rehash, null when no rehash is in progress
+  private Object[] oldTable;
+  // buckets of oldTable below this index have already been moved to hashTable
+  private int migrateIndex;
+  // number of adds, removes and clears, used to detect changes during iteration
+  private int modCount;
+  // number of resizes and total nanoseconds spent in resize()
+  private int resizeCount;
+  private long resizeNanos;
+  // lookup statistics, only updated while countLookups is set
+  private boolean countLookups;
+  private long hits;
+  private long misses;
+  private int maxProbeLength;
+
+  /**
+   * Constructor with specified capacity, loadFactor threshold, growth factor and resize mode.
+   * Capacities are always rounded up to a power of two, so each resize multiplies the capacity
+   * by growthFactor rounded up to the next power of two: any factor up to 2 doubles it, and 3
+   * quadruples it.
+   * 
+   * @param capacity      initial capacity of hashTable array
+   * @param maxLoadFactor load at which hashTable is resized
+   * @param growthFactor  factor capacity is multiplied by on each resize, rounded up to the next
+   *                      power of two, must be greater than 1
+   * @param incremental   true to spread each rehash over the following operations
+   * @throws IllegalArgumentException if any of the options is out of range
+   */
+  public HashTableMap(int capacity, double maxLoadFactor, double growthFactor,
+      boolean incremental) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    if (!(maxLoadFactor > 0)) {
+      throw new IllegalArgumentException("load factor must be positive: " + maxLoadFactor);
+    }
+    if (!(growthFactor > 1)) {
+      throw new IllegalArgumentException("growth factor must be greater than 1: " + growthFactor);
+    }
+    this.capacity = tableSizeFor(capacity);
+    this.maxLoadFactor = maxLoadFactor;
+    this.growthFactor = growthFactor;
+    this.incremental = incremental;
+    hashTable = new Object[this.capacity];
+  }
+
+  /**
+   * Constructor with specified capacity, loadFactor threshold and growth factor that resizes all
+   * at once
+   * 
+   * @param capacity      initial capacity of hashTable array
+   * @param maxLoadFactor load at which hashTable is resized
+   * @param growthFactor  factor capacity is multiplied by on each resize, rounded up to the next
+   *                      power of two
+   */
+  public HashTableMap(int capacity, double maxLoadFactor, double growthFactor) {
+    this(capacity, maxLoadFactor, growthFactor, false);
+  }
 
   /**
    * Constructor with specified capacity for hashTable array
@@ -51,20 +209,211 @@ public class HashTableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
    * @param capacity
    */
   public HashTableMap(int capacity) {
-    this.capacity = capacity;
-    hashTable = new LinkedList[capacity];
+    this(capacity, DEFAULT_LOAD_FACTOR, DEFAULT_GROWTH_FACTOR, false);
   }
 
   /**
-   * Constructor with default capacity 10 for hashTable array
+   * Constructor with default capacity 16 for hashTable array
    */
   public HashTableMap() {
-    this.capacity = 10;
-    hashTable = new LinkedList[10];
+    this(16);
   }
 
+  /**
+   * Returns the smallest power of two that is greater than or equal to capacity
+   * 
+   * @param capacity requested capacity
+   * @return power of two capacity
+   */
+  private static int tableSizeFor(int capacity) {
+    int n = 1;
+    while (n < capacity && n < MAXIMUM_CAPACITY) {
+      n <<= 1;
+    }
+    return n;
+  }
+
+  /**
+   * Spreads the higher bits of the hash code of key into the lower bits, since only the lower
+   * bits are used to pick a bucket in a power of two table
+   * 
+   * @param key key to hash
+   * @return spread hash code
+   */
+  static int spread(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Returns the table that holds, or would hold, a key. While a rehash is in progress, keys whose
+   * old bucket has not been migrated yet still live in oldTable.
+   * 
+   * @param hash spread hash code of key
+   * @return hashTable or oldTable
+   */
+  private Object[] tableFor(int hash) {
+    if (oldTable != null && (hash & (oldTable.length - 1)) >= migrateIndex) {
+      return oldTable;
+    }
+    return hashTable;
+  }
 
+  /**
+   * Returns the key-value pair stored for key in a bucket
+   * 
+   * @param bucket bucket to search, may be null
+   * @param key    key to look for
+   * @param read   true for the lookups of reads, which are counted while countLookups is set
+   * @return pair holding key, null if key is not in the bucket
+   */
   @SuppressWarnings("unchecked")
+  private Pair<KeyType, ValueType> findPair(Object bucket, Object key, boolean read) {
+    Pair<KeyType, ValueType> found = null;
+    int probes = 0;
+    if (bucket instanceof TreeBucket) {
+      TreeBucket<KeyType, ValueType> tree = (TreeBucket<KeyType, ValueType>) bucket;
+      if (tree.accepts(key)) {
+        found = tree.pairs.get(key);
+        // depth of a balanced tree of this size
+        probes = 32 - Integer.numberOfLeadingZeros(tree.pairs.size());
+      }
+    } else if (bucket != null) {
+      for (Pair<KeyType, ValueType> pair : (LinkedList<Pair<KeyType, ValueType>>) bucket) {
+        probes++;
+        if (pair.type1.equals(key)) {
+          found = pair;
+          break;
+        }
+      }
+    }
+    if (read && countLookups) {
+      recordLookup(found != null, probes);
+    }
+    return found;
+  }
+
+  /**
+   * Updates the lookup statistics reported by stats()
+   * 
+   * @param hit    whether the key was found
+   * @param probes number of keys compared
+   */
+  private void recordLookup(boolean hit, int probes) {
+    if (hit) {
+      hits++;
+    } else {
+      misses++;
+    }
+    maxProbeLength = Math.max(maxProbeLength, probes);
+  }
+
+  /**
+   * Returns the key-value pair stored for key
+   * 
+   * @param key  key to look for
+   * @param read true for the lookups of reads, which are counted while countLookups is set
+   * @return pair holding key, null if key is not stored
+   */
+  private Pair<KeyType, ValueType> findPair(KeyType key, boolean read) {
+    if (key == null) {
+      return null;
+    }
+    int hash = spread(key);
+    Object[] table = tableFor(hash);
+    return findPair(table[hash & (table.length - 1)], key, read);
+  }
+
+  /**
+   * Returns the pairs held by a bucket
+   * 
+   * @param bucket LinkedList or TreeBucket
+   * @return pairs of the bucket
+   */
+  @SuppressWarnings("unchecked")
+  private Iterable<Pair<KeyType, ValueType>> pairsOf(Object bucket) {
+    if (bucket instanceof TreeBucket) {
+      return ((TreeBucket<KeyType, ValueType>) bucket).pairs.values();
+    }
+    return (LinkedList<Pair<KeyType, ValueType>>) bucket;
+  }
+
+  /**
+   * Adds a pair to a bucket, converting the bucket to a TreeBucket once it reaches
+   * TREEIFY_THRESHOLD pairs with mutually comparable keys
+   * 
+   * @param bucket bucket to add to, may be null
+   * @param pair   pair whose key is not in the bucket
+   * @return the bucket to store in the table slot
+   */
+  @SuppressWarnings("unchecked")
+  private Object addToBucket(Object bucket, Pair<KeyType, ValueType> pair) {
+    if (bucket instanceof TreeBucket) {
+      TreeBucket<KeyType, ValueType> tree = (TreeBucket<KeyType, ValueType>) bucket;
+      if (tree.accepts(pair.type1)) {
+        tree.pairs.put(pair.type1, pair);
+        return tree;
+      }
+      // a key of another class cannot be ordered against the tree, so fall back to a list
+      bucket = new LinkedList<Pair<KeyType, ValueType>>(tree.pairs.values());
+    }
+    LinkedList<Pair<KeyType, ValueType>> list = (LinkedList<Pair<KeyType, ValueType>>) bucket;
+    if (list == null) {
+      list = new LinkedList<Pair<KeyType, ValueType>>();
+    }
+    list.addFirst(pair);
+    if (list.size() >= TREEIFY_THRESHOLD) {
+      return treeify(list);
+    }
+    return list;
+  }
+
+  /**
+   * Converts a LinkedList bucket to a TreeBucket if all of its keys share one Comparable class
+   * 
+   * @param list bucket to convert
+   * @return TreeBucket with the same pairs, or list if its keys cannot be ordered
+   */
+  private Object treeify(LinkedList<Pair<KeyType, ValueType>> list) {
+    Class<?> keyClass = list.getFirst().type1.getClass();
+    if (!Comparable.class.isAssignableFrom(keyClass)) {
+      return list;
+    }
+    for (Pair<KeyType, ValueType> pair : list) {
+      if (pair.type1.getClass() != keyClass) {
+        return list;
+      }
+    }
+    TreeBucket<KeyType, ValueType> tree = new TreeBucket<KeyType, ValueType>(keyClass);
+    for (Pair<KeyType, ValueType> pair : list) {
+      tree.pairs.put(pair.type1, pair);
+    }
+    return tree;
+  }
+
+  /**
+   * Removes a pair from a bucket, converting a TreeBucket back to a LinkedList once it shrinks to
+   * UNTREEIFY_THRESHOLD pairs
+   * 
+   * @param bucket bucket holding pair
+   * @param pair   pair to remove
+   * @return the bucket to store in the table slot, null if it became empty
+   */
+  @SuppressWarnings("unchecked")
+  private Object removeFromBucket(Object bucket, Pair<KeyType, ValueType> pair) {
+    if (bucket instanceof TreeBucket) {
+      TreeBucket<KeyType, ValueType> tree = (TreeBucket<KeyType, ValueType>) bucket;
+      tree.pairs.remove(pair.type1);
+      if (tree.pairs.size() <= UNTREEIFY_THRESHOLD) {
+        return new LinkedList<Pair<KeyType, ValueType>>(tree.pairs.values());
+      }
+      return tree;
+    }
+    LinkedList<Pair<KeyType, ValueType>> list = (LinkedList<Pair<KeyType, ValueType>>) bucket;
+    list.remove(pair);
+    return list.isEmpty() ? null : list;
+  }
+
   @Override
   /**
    * Returns true if key-value pair is successfully added to hashTable array
@@ -72,72 +421,156 @@ public class HashTableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
    * @return true if add is successful, false otherwise
    */
   public boolean put(KeyType key, ValueType value) {
-    if (key == null || containsKey(key)) {
+    migrateStep();
+    if (key == null) {
+      return false;
+    }
+    int hash = spread(key);
+    Object[] table = tableFor(hash);
+    if (findPair(table[hash & (table.length - 1)], key, false) != null) {
       return false;
     }
+    addPair(table, hash, key, value);
+    return true;
+  }
 
+  /**
+   * Adds a key-value pair for a key known not to be stored, resizing first if the loadFactor
+   * threshold is met
+   * 
+   * @param table table key was looked up in
+   * @param hash  spread hash code of key
+   * @param key   key to add
+   * @param value value to add
+   */
+  private void addPair(Object[] table, int hash, KeyType key, ValueType value) {
     loadFactor = (double) (size() + 1) / capacity;
     // checks if current loadFactor is greater than threshold
-    if (Double.compare(loadFactor, 0.85) >= 0) {
-      resize();
+    if (Double.compare(loadFactor, maxLoadFactor) >= 0 && capacity < MAXIMUM_CAPACITY) {
+      resize(tableSizeFor((int) Math.min(MAXIMUM_CAPACITY,
+          Math.max(capacity + 1, Math.ceil(capacity * growthFactor)))));
+      // the bucket only has to be located again if the resize moved it
+      table = tableFor(hash);
     }
+    int index = hash & (table.length - 1);
+    table[index] = addToBucket(table[index], new Pair<KeyType, ValueType>(key, value));
+    size++;
+    modCount++;
+  }
 
-    int index = Math.abs(key.hashCode()) % capacity;
+  /**
+   * Removes a pair that was looked up with findPair()
+   * 
+   * @param table table the pair was found in
+   * @param hash  spread hash code of the key
+   * @param pair  pair to remove
+   */
+  private void removePair(Object[] table, int hash, Pair<KeyType, ValueType> pair) {
+    int index = hash & (table.length - 1);
+    table[index] = removeFromBucket(table[index], pair);
+    size--;
+    modCount++;
+  }
 
-    // adds LinkedList element containing key-value pair to hashTable
-    LinkedList<Pair<KeyType, ValueType>> list;
-    // first checks if current index is null
-    if (hashTable[index] == null) {
-      // if null, then create new linked list for that index and insert new key-value pair
-      list = new LinkedList<Pair<KeyType, ValueType>>();
-      hashTable[index] = list;
-      list.addFirst(new Pair<KeyType, ValueType>(key, value));
-    } else {
-      // otherwise just add new key-value pair in the linked list at the calculated index
-      list = (LinkedList<Pair<KeyType, ValueType>>) hashTable[index];
-      list.addFirst(new Pair<KeyType, ValueType>(key, value));
+  /**
+   * Makes room for at least expectedSize keys without any further resize, moving every key to
+   * the larger table right away. Used to pre-size the table before a bulk load.
+   * 
+   * @param expectedSize number of keys the table should hold
+   */
+  public void ensureCapacity(int expectedSize) {
+    double needed = Math.floor(expectedSize / maxLoadFactor) + 1;
+    if (needed > capacity && capacity < MAXIMUM_CAPACITY) {
+      resize(tableSizeFor((int) Math.min(MAXIMUM_CAPACITY, needed)));
+      completeMigration();
     }
-    size++;
-    
-    return true;
   }
 
-  @SuppressWarnings("unchecked")
   /**
-   * Double capacity of hashTable and rehashes when loadFactor threshold is met
-   */
-  private void resize() {
-    @SuppressWarnings("rawtypes")
-    // new array to store key-value pairs
-    LinkedList[] newTable = new LinkedList[capacity * 2];
-
-    // rehashing by going through old hashTable array
-    for (int i = 0; i < capacity; ++i) {
-      if (hashTable[i] != null) {
-        for (int j = 0; j < hashTable[i].size(); ++j) {
-          // extracts all key-value pairs from old array to put into new array
-          Pair<KeyType, ValueType> pair = (Pair<KeyType, ValueType>) hashTable[i].get(j);
-          KeyType key = pair.type1;
-          ValueType value = pair.type2;
-          int index = Math.abs(key.hashCode()) % (capacity * 2);
-
-          // exact same process to input into hash table as the put() method
-          LinkedList<Pair<KeyType, ValueType>> list;
-          if (newTable[index] == null) {
-            list = new LinkedList<Pair<KeyType, ValueType>>();
-            newTable[index] = list;
-            list.addFirst(new Pair<KeyType, ValueType>(key, value));
-
-          } else {
-            list = (LinkedList<Pair<KeyType, ValueType>>) newTable[index];
-            list.addFirst(new Pair<KeyType, ValueType>(key, value));
-          }
-        }
+   * Grows hashTable to newCapacity, called with capacity times growthFactor, rounded up to a
+   * power of two, when loadFactor threshold is met. In incremental mode the old buckets are moved over by later operations,
+   * otherwise they are all moved right away.
+   * 
+   * @param newCapacity power of two capacity larger than the current one
+   */
+  private void resize(int newCapacity) {
+    long start = System.nanoTime();
+    HashTableResizeEvent event = new HashTableResizeEvent();
+    event.begin();
+
+    // a rehash still in progress has to finish before the next one can start
+    completeMigration();
+
+    event.oldCapacity = capacity;
+    oldTable = hashTable;
+    migrateIndex = 0;
+    hashTable = new Object[newCapacity];
+    capacity = newCapacity;
+    loadFactor = (double) size / capacity;
+
+    if (!incremental) {
+      completeMigration();
+    }
+
+    resizeCount++;
+    resizeNanos += System.nanoTime() - start;
+    if (event.shouldCommit()) {
+      event.newCapacity = newCapacity;
+      event.size = size;
+      event.incremental = incremental;
+      event.commit();
+    }
+  }
+
+  /**
+   * Moves the next few buckets of oldTable into hashTable if a rehash is in progress
+   */
+  private void migrateStep() {
+    if (oldTable != null) {
+      migrateBuckets(MIGRATION_STEP);
+    }
+  }
+
+  /**
+   * Moves every remaining bucket of oldTable into hashTable
+   */
+  private void completeMigration() {
+    if (oldTable != null) {
+      migrateBuckets(oldTable.length);
+    }
+  }
+
+  /**
+   * Moves up to count buckets of oldTable into hashTable, reusing the existing pairs
+   * 
+   * @param count maximum number of buckets to move
+   */
+  private void migrateBuckets(int count) {
+    int mask = hashTable.length - 1;
+    int end = Math.min(oldTable.length, migrateIndex + count);
+    for (; migrateIndex < end; ++migrateIndex) {
+      Object bucket = oldTable[migrateIndex];
+      if (bucket == null) {
+        continue;
+      }
+      for (Pair<KeyType, ValueType> pair : pairsOf(bucket)) {
+        int index = spread(pair.type1) & mask;
+        hashTable[index] = addToBucket(hashTable[index], pair);
       }
+      oldTable[migrateIndex] = null;
+    }
+    if (migrateIndex == oldTable.length) {
+      oldTable = null;
     }
-    capacity *= 2;
-    hashTable = newTable;
+  }
 
+  /**
+   * Returns whether an incremental rehash is currently in progress
+   * 
+   * @return true if buckets are still waiting to be moved to the new table
+   */
+  boolean isRehashing() {
+    return oldTable != null;
   }
 
   @Override
@@ -147,19 +580,12 @@ public class HashTableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
    * @return ValueType value - associated with key
    */
   public ValueType get(KeyType key) throws NoSuchElementException {
-    if (containsKey(key)) {
-      int index = Math.abs(key.hashCode()) % capacity;
-      for (int j = 0; j < hashTable[index].size(); ++j) {
-        @SuppressWarnings("unchecked")
-        // gets key-value pair
-        Pair<KeyType, ValueType> pair = (Pair<KeyType, ValueType>) hashTable[index].get(j);
-        // if user provided key and key in hashTable match, return the value
-        if (pair.type1.equals(key)) {
-          return pair.type2;
-        }
-      }
+    migrateStep();
+    Pair<KeyType, ValueType> pair = findPair(key, true);
+    if (pair == null) {
+      throw new NoSuchElementException();
     }
-    throw new NoSuchElementException();
+    return pair.type2;
   }
 
   @Override
@@ -179,18 +605,7 @@ public class HashTableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
    * @return true if key is found, false otherwise
    */
   public boolean containsKey(KeyType key) {
-    int index = Math.abs(key.hashCode()) % capacity;
-    // iterates through the linked list associated with the key's index and checks if key is found
-    if (hashTable[index] != null) {
-      for (int j = 0; j < hashTable[index].size(); ++j) {
-        @SuppressWarnings("unchecked")
-        Pair<KeyType, ValueType> pair = (Pair<KeyType, ValueType>) hashTable[index].get(j);
-        if (pair.type1.equals(key)) {
-          return true;
-        }
-      }
-    }
-    return false;
+    return findPair(key, true) != null;
   }
 
   @Override
@@ -198,25 +613,158 @@ public class HashTableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
    * Removes key-value pair from hashTable array
    */
   public ValueType remove(KeyType key) {
-    if (containsKey(key)) {
-      int index = Math.abs(key.hashCode()) % capacity;
-      // iterates through the linked list at the index associated with key
-      for (int j = 0; j < hashTable[index].size(); ++j) {
-        @SuppressWarnings("unchecked")
-        Pair<KeyType, ValueType> pair = (Pair<KeyType, ValueType>) hashTable[index].get(j);
-        // compares key values
-        if (pair.type1.equals(key)) {
-          // removes key-value pair at a particular index in the linked list
-          hashTable[index].remove(j);
-          size--;
-          return pair.type2;
-        }
-      }
+    migrateStep();
+    if (key == null) {
+      return null;
+    }
+    int hash = spread(key);
+    Object[] table = tableFor(hash);
+    Pair<KeyType, ValueType> pair = findPair(table[hash & (table.length - 1)], key, false);
+    if (pair == null) {
+      return null;
+    }
+    removePair(table, hash, pair);
+    return pair.type2;
+  }
+
+  @Override
+  /**
+   * Returns value associated with key, or defaultValue if key is not stored
+   * 
+   * @return value associated with key, defaultValue if key is not found
+   */
+  public ValueType getOrDefault(KeyType key, ValueType defaultValue) {
+    migrateStep();
+    Pair<KeyType, ValueType> pair = findPair(key, true);
+    return pair == null ? defaultValue : pair.type2;
+  }
+
+  @Override
+  /**
+   * Adds key-value pair only if key is not stored yet, with a single lookup
+   * 
+   * @return value already stored for key, null if the new value was added
+   */
+  public ValueType putIfAbsent(KeyType key, ValueType value) {
+    migrateStep();
+    if (key == null) {
+      return null;
     }
+    int hash = spread(key);
+    Object[] table = tableFor(hash);
+    Pair<KeyType, ValueType> pair = findPair(table[hash & (table.length - 1)], key, false);
+    if (pair != null) {
+      return pair.type2;
+    }
+    addPair(table, hash, key, value);
     return null;
   }
 
+  @Override
+  /**
+   * Replaces the value associated with key, only if key is already stored
+   * 
+   * @return previous value associated with key, null if key was not found
+   */
+  public ValueType replace(KeyType key, ValueType value) {
+    migrateStep();
+    Pair<KeyType, ValueType> pair = findPair(key, false);
+    if (pair == null) {
+      return null;
+    }
+    ValueType previous = pair.type2;
+    pair.type2 = value;
+    return previous;
+  }
+
+  @Override
+  /**
+   * Returns value associated with key, computing and adding it first if key is not stored yet
+   * 
+   * @return value associated with key after the call, null if mappingFunction returned null
+   */
+  public ValueType computeIfAbsent(KeyType key,
+      Function<? super KeyType, ? extends ValueType> mappingFunction) {
+    migrateStep();
+    if (key == null) {
+      return null;
+    }
+    int hash = spread(key);
+    Object[] table = tableFor(hash);
+    Pair<KeyType, ValueType> pair = findPair(table[hash & (table.length - 1)], key, false);
+    if (pair != null) {
+      return pair.type2;
+    }
+    ValueType value = mappingFunction.apply(key);
+    if (value != null) {
+      addPair(table, hash, key, value);
+    }
+    return value;
+  }
+
+  @Override
+  /**
+   * Associates key with the result of remappingFunction applied to key and its current value
+   * (null if not stored). A null result removes key.
+   * 
+   * @return new value associated with key, null if key is no longer stored
+   */
+  public ValueType compute(KeyType key,
+      BiFunction<? super KeyType, ? super ValueType, ? extends ValueType> remappingFunction) {
+    migrateStep();
+    if (key == null) {
+      return null;
+    }
+    int hash = spread(key);
+    Object[] table = tableFor(hash);
+    Pair<KeyType, ValueType> pair = findPair(table[hash & (table.length - 1)], key, false);
+    ValueType value = remappingFunction.apply(key, pair == null ? null : pair.type2);
+    return store(table, hash, pair, key, value);
+  }
+
+  @Override
+  /**
+   * Associates key with value if key is not stored yet, otherwise with the result of
+   * remappingFunction applied to the current value and value. A null result removes key.
+   * 
+   * @return new value associated with key, null if key is no longer stored
+   */
+  public ValueType merge(KeyType key, ValueType value,
+      BiFunction<? super ValueType, ? super ValueType, ? extends ValueType> remappingFunction) {
+    migrateStep();
+    if (key == null) {
+      return null;
+    }
+    int hash = spread(key);
+    Object[] table = tableFor(hash);
+    Pair<KeyType, ValueType> pair = findPair(table[hash & (table.length - 1)], key, false);
+    ValueType merged = pair == null || pair.type2 == null ? value
+        : remappingFunction.apply(pair.type2, value);
+    return store(table, hash, pair, key, merged);
+  }
 
+  /**
+   * Applies the result of compute() or merge() to the pair that was looked up: updates it in
+   * place, adds a new pair, or removes it when value is null
+   * 
+   * @param table table key was looked up in
+   * @param hash  spread hash code of key
+   * @param pair  pair currently stored for key, null if key is not stored
+   * @param key   key being updated
+   * @param value new value, null to remove key
+   * @return value
+   */
+  private ValueType store(Object[] table, int hash, Pair<KeyType, ValueType> pair, KeyType key,
+      ValueType value) {
+    if (pair != null && value != null) {
+      pair.type2 = value;
+    } else if (pair != null) {
+      removePair(table, hash, pair);
+    } else if (value != null) {
+      addPair(table, hash, key, value);
+    }
+    return value;
+  }
 
   @Override
   /**
@@ -224,38 +772,422 @@ public class HashTableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
    */
   public void clear() {
     // creates new hash table array
-    hashTable = new LinkedList[capacity];
+    hashTable = new Object[capacity];
+    oldTable = null;
     size = 0;
+    modCount++;
 
   }
 
-  @SuppressWarnings("unchecked")
-  @Override
   /**
-   * Converts objects stored in hash table to formatted String
-   * @return String formatted String of hash table
+   * Turns counting of hits, misses and probe lengths on or off. Only the lookups of get(),
+   * getOrDefault() and containsKey() are counted, not the ones adds, removes and replaces make.
+   * Counting is off by default, and costs a single branch per lookup while off.
+   * 
+   * @param enabled true to count lookups
    */
-  public String toString() {
-    if (size() == 0) {
-      return "";
+  public void setLookupCountingEnabled(boolean enabled) {
+    countLookups = enabled;
+  }
+
+  /**
+   * Returns whether lookups are being counted
+   * 
+   * @return true if hits, misses and probe lengths are being counted
+   */
+  public boolean isLookupCountingEnabled() {
+    return countLookups;
+  }
+
+  /**
+   * Resets the hit, miss and probe length counters
+   */
+  public void resetLookupCounters() {
+    hits = 0;
+    misses = 0;
+    maxProbeLength = 0;
+  }
+
+  /**
+   * Returns a snapshot of the current load, how keys are spread over the buckets, resize history
+   * and lookup counters. Walks every bucket, so it takes time proportional to the capacity.
+   * 
+   * @return statistics of this hash table
+   */
+  public HashTableStats stats() {
+    int[] histogram = new int[HISTOGRAM_LENGTH + 1];
+    int[] summary = new int[3];
+    // buckets not yet migrated by an incremental rehash are still in oldTable
+    if (oldTable != null) {
+      addBuckets(oldTable, migrateIndex, histogram, summary);
     }
+    addBuckets(hashTable, 0, histogram, summary);
+    return new HashTableStats(size, capacity, summary[0], summary[1], summary[2], histogram,
+        maxProbeLength, resizeCount, resizeNanos, hits, misses);
+  }
 
-    String returnString = "";
-    int index = 0;
+  /**
+   * Adds the buckets of a table to the stats() histogram
+   * 
+   * @param table     table to go through
+   * @param from      first bucket index
+   * @param histogram number of buckets per chain length
+   * @param summary   occupied buckets, tree buckets and longest chain so far
+   */
+  private void addBuckets(Object[] table, int from, int[] histogram, int[] summary) {
+    for (int index = from; index < table.length; ++index) {
+      Object bucket = table[index];
+      int length = 0;
+      if (bucket instanceof TreeBucket) {
+        length = ((TreeBucket<?, ?>) bucket).pairs.size();
+        summary[1]++;
+      } else if (bucket != null) {
+        length = ((LinkedList<?>) bucket).size();
+      }
+      if (length > 0) {
+        summary[0]++;
+      }
+      summary[2] = Math.max(summary[2], length);
+      histogram[Math.min(length, HISTOGRAM_LENGTH)]++;
+    }
+  }
+
+  /**
+   * Publishes the statistics of this hash table on the platform MBean server so they can be
+   * watched with JConsole or any other JMX client. Each attribute is read from a fresh stats()
+   * snapshot, so reads should come from the thread using the hash table or be taken as
+   * approximate.
+   * 
+   * @param name name to register under, as in HeroDex:type=HashTableMap,name=name
+   * @return name the MBean was registered under
+   * @throws JMException if the MBean cannot be registered, e.g. the name is already taken
+   */
+  public ObjectName registerMBean(String name) throws JMException {
+    HashTableStatsMXBean bean = new HashTableStatsMXBean() {
+      public int getSize() {
+        return stats().getSize();
+      }
+
+      public int getCapacity() {
+        return stats().getCapacity();
+      }
+
+      public double getLoadFactor() {
+        return stats().getLoadFactor();
+      }
+
+      public double getBucketOccupancy() {
+        return stats().getBucketOccupancy();
+      }
+
+      public int getTreeBuckets() {
+        return stats().getTreeBuckets();
+      }
+
+      public int getLongestChain() {
+        return stats().getLongestChain();
+      }
+
+      public int[] getChainLengthHistogram() {
+        return stats().getChainLengthHistogram();
+      }
+
+      public int getMaxProbeLength() {
+        return maxProbeLength;
+      }
+
+      public int getResizeCount() {
+        return resizeCount;
+      }
+
+      public long getResizeNanos() {
+        return resizeNanos;
+      }
 
-    while (index < hashTable.length) {
-      if (hashTable[index] != null) {
-        LinkedList<Pair<KeyType, ValueType>> currentList = hashTable[index];
-        for (Pair<KeyType, ValueType> pair : currentList) {
-          returnString += pair.type2.toString() + "\n";
+      public long getHits() {
+        return hits;
+      }
+
+      public long getMisses() {
+        return misses;
+      }
+
+      public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+      }
+
+      public boolean isLookupCountingEnabled() {
+        return countLookups;
+      }
+
+      public void setLookupCountingEnabled(boolean enabled) {
+        HashTableMap.this.setLookupCountingEnabled(enabled);
+      }
+
+      public void resetLookupCounters() {
+        HashTableMap.this.resetLookupCounters();
+      }
+    };
+    ObjectName objectName =
+        new ObjectName("HeroDex:type=HashTableMap,name=" + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer()
+        .registerMBean(new StandardMBean(bean, HashTableStatsMXBean.class, true), objectName);
+    return objectName;
+  }
+
+  /**
+   * Performs action on every key-value pair stored in the hash table
+   * 
+   * @param action action to perform on each key and value
+   * @throws ConcurrentModificationException if action adds or removes keys
+   */
+  public void forEach(BiConsumer<? super KeyType, ? super ValueType> action) {
+    Objects.requireNonNull(action);
+    int expectedModCount = modCount;
+    // buckets not yet migrated by an incremental rehash are still in oldTable
+    if (oldTable != null) {
+      forEachPair(oldTable, migrateIndex, action);
+    }
+    forEachPair(hashTable, 0, action);
+    if (modCount != expectedModCount) {
+      throw new ConcurrentModificationException();
+    }
+  }
+
+  /**
+   * Visits the values of the next buckets, starting from cursor, until at least count values
+   * were visited or every bucket was. Start with cursor 0 and pass the returned cursor to the
+   * next call until it returns 0 again.
+   *
+   * The cursor counts with its bits reversed, so the buckets a doubled table splits a visited
+   * bucket into are visited as well: a value present for the whole scan is visited at least
+   * once even if the table grows in between calls, and no state is kept between calls.
+   *
+   * @param cursor 0 to start, or the cursor returned by the previous call
+   * @param count  number of values to visit, more if the last bucket holds several
+   * @param action action to perform on each value
+   * @return cursor to continue from, 0 once every bucket was visited
+   */
+  public int scan(int cursor, int count, Consumer<? super ValueType> action) {
+    Objects.requireNonNull(action);
+    completeMigration();
+    int mask = hashTable.length - 1;
+    int visited = 0;
+    do {
+      Object bucket = hashTable[cursor & mask];
+      if (bucket != null) {
+        for (Pair<KeyType, ValueType> pair : pairsOf(bucket)) {
+          action.accept(pair.type2);
+          visited++;
+        }
+      }
+      // increments the reversed bits of the index
+      cursor = Integer.reverse(Integer.reverse(cursor | ~mask) + 1);
+    } while (cursor != 0 && visited < count);
+    return cursor;
+  }
+
+  /**
+   * Performs action on every key-value pair in a table, starting from a bucket index
+   * 
+   * @param table  table to go through
+   * @param from   first bucket index
+   * @param action action to perform on each key and value
+   */
+  private void forEachPair(Object[] table, int from,
+      BiConsumer<? super KeyType, ? super ValueType> action) {
+    for (int index = from; index < table.length; ++index) {
+      if (table[index] != null) {
+        for (Pair<KeyType, ValueType> pair : pairsOf(table[index])) {
+          action.accept(pair.type1, pair.type2);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a view of the key-value pairs stored in the hash table. Its iterator and spliterator
+   * go through the buckets directly, and the spliterator splits by bucket range so parallel
+   * streams can scan the table on several threads. Any pending incremental rehash is finished
+   * before iteration starts.
+   * 
+   * @return Set view of the entries
+   */
+  public Set<Map.Entry<KeyType, ValueType>> entrySet() {
+    return new AbstractSet<Map.Entry<KeyType, ValueType>>() {
+      @Override
+      public Iterator<Map.Entry<KeyType, ValueType>> iterator() {
+        return Spliterators.iterator(spliterator());
+      }
+
+      @Override
+      public Spliterator<Map.Entry<KeyType, ValueType>> spliterator() {
+        completeMigration();
+        return new BucketSpliterator<Map.Entry<KeyType, ValueType>>(hashTable, 0,
+            hashTable.length, pair -> pair);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Returns a view of the values stored in the hash table, backed by the same bucket iterator
+   * and spliterator as entrySet()
+   * 
+   * @return Collection view of the values
+   */
+  public Collection<ValueType> values() {
+    return new AbstractCollection<ValueType>() {
+      @Override
+      public Iterator<ValueType> iterator() {
+        return Spliterators.iterator(spliterator());
+      }
+
+      @Override
+      public Spliterator<ValueType> spliterator() {
+        completeMigration();
+        return new BucketSpliterator<ValueType>(hashTable, 0, hashTable.length,
+            pair -> pair.type2);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Goes through the pairs in a range of buckets. Splitting hands off the first half of the
+   * remaining range, so each half can be traversed on its own thread.
+   *
+   * @param <T> type produced for each pair
+   */
+  private class BucketSpliterator<T> implements Spliterator<T> {
+    private final Object[] table;
+    private final Function<Pair<KeyType, ValueType>, T> view;
+    private final int expectedModCount;
+    // next bucket index to visit and end of the range
+    private int index;
+    private final int fence;
+    // pairs of the bucket currently being visited
+    private Iterator<Pair<KeyType, ValueType>> current;
+
+    BucketSpliterator(Object[] table, int index, int fence,
+        Function<Pair<KeyType, ValueType>, T> view) {
+      this.table = table;
+      this.index = index;
+      this.fence = fence;
+      this.view = view;
+      this.expectedModCount = modCount;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      Objects.requireNonNull(action);
+      while (true) {
+        if (current != null && current.hasNext()) {
+          action.accept(view.apply(current.next()));
+          return true;
+        }
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (index >= fence) {
+          return false;
         }
+        Object bucket = table[index++];
+        current = bucket == null ? null : pairsOf(bucket).iterator();
       }
-      index++;
     }
 
-    
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+      Objects.requireNonNull(action);
+      if (current != null) {
+        while (current.hasNext()) {
+          action.accept(view.apply(current.next()));
+        }
+        current = null;
+      }
+      for (; index < fence; ++index) {
+        if (table[index] != null) {
+          for (Pair<KeyType, ValueType> pair : pairsOf(table[index])) {
+            action.accept(view.apply(pair));
+          }
+        }
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
 
-    return returnString;
+    @Override
+    public Spliterator<T> trySplit() {
+      int mid = (index + fence) >>> 1;
+      if (mid <= index) {
+        return null;
+      }
+      BucketSpliterator<T> prefix = new BucketSpliterator<T>(table, index, mid, view);
+      index = mid;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      // assumes pairs are spread evenly over the buckets
+      return (long) size * (fence - index) / table.length + (current != null ? 1 : 0);
+    }
+
+    @Override
+    public int characteristics() {
+      return 0;
+    }
+  }
+
+  /**
+   * Writes every value stored in the hash table to out, one per line, using its toString()
+   * 
+   * @param out destination to write to
+   * @throws IOException if out cannot be written to
+   */
+  public void writeTo(Appendable out) throws IOException {
+    writeTo(out, (value, row) -> row.append(value));
+  }
+
+  /**
+   * Writes every value stored in the hash table to out, one row at a time. formatter appends each
+   * value to a single reused StringBuilder, so no String is built for the whole table.
+   * 
+   * @param out       destination to write to, ideally buffered
+   * @param formatter appends the text for one value to the row
+   * @throws IOException if out cannot be written to
+   */
+  public void writeTo(Appendable out, BiConsumer<? super ValueType, StringBuilder> formatter)
+      throws IOException {
+    StringBuilder row = new StringBuilder();
+    for (ValueType value : values()) {
+      row.setLength(0);
+      formatter.accept(value, row);
+      row.append('\n');
+      out.append(row);
+    }
+  }
+
+  @Override
+  /**
+   * Converts objects stored in hash table to formatted String
+   * @return String formatted String of hash table
+   */
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    forEach((key, value) -> builder.append(value).append('\n'));
+    return builder.toString();
   }
 
 
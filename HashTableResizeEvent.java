@@ -0,0 +1,29 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event committed every time a HashTableMap resizes. It is only recorded while a
+ * recording with this event enabled is running, so it costs almost nothing otherwise.
+ */
+@Name("herodex.HashTableResize")
+@Label("Hash Table Resize")
+@Category("HeroDex")
+@Description("A HashTableMap grew its bucket array")
+class HashTableResizeEvent extends Event {
+
+  @Label("Old Capacity")
+  int oldCapacity;
+
+  @Label("New Capacity")
+  int newCapacity;
+
+  @Label("Size")
+  int size;
+
+  @Label("Incremental")
+  @Description("Whether buckets are moved by later operations instead of during the resize")
+  boolean incremental;
+}
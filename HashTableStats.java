@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+/**
+ * Snapshot of how a HashTableMap is behaving: how full it is, how its keys are spread over the
+ * buckets, how often it has resized and, when lookup counting is enabled, how lookups went.
+ */
+public class HashTableStats {
+
+  private final int size;
+  private final int capacity;
+  private final int occupiedBuckets;
+  private final int treeBuckets;
+  private final int longestChain;
+  private final int[] chainLengthHistogram;
+  private final int maxProbeLength;
+  private final int resizeCount;
+  private final long resizeNanos;
+  private final long hits;
+  private final long misses;
+
+  /**
+   * Constructor used by HashTableMap.stats()
+   * 
+   * @param size                 number of keys stored
+   * @param capacity             number of buckets
+   * @param occupiedBuckets      number of buckets holding at least one key
+   * @param treeBuckets          number of buckets converted to trees
+   * @param longestChain         number of keys in the fullest bucket
+   * @param chainLengthHistogram number of buckets holding each number of keys, the last entry
+   *                             counts every bucket at least that full
+   * @param maxProbeLength       most keys compared by a single counted lookup
+   * @param resizeCount          number of resizes so far
+   * @param resizeNanos          total time spent resizing, in nanoseconds
+   * @param hits                 counted lookups that found their key
+   * @param misses               counted lookups that did not find their key
+   */
+  HashTableStats(int size, int capacity, int occupiedBuckets, int treeBuckets, int longestChain,
+      int[] chainLengthHistogram, int maxProbeLength, int resizeCount, long resizeNanos, long hits,
+      long misses) {
+    this.size = size;
+    this.capacity = capacity;
+    this.occupiedBuckets = occupiedBuckets;
+    this.treeBuckets = treeBuckets;
+    this.longestChain = longestChain;
+    this.chainLengthHistogram = chainLengthHistogram;
+    this.maxProbeLength = maxProbeLength;
+    this.resizeCount = resizeCount;
+    this.resizeNanos = resizeNanos;
+    this.hits = hits;
+    this.misses = misses;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return number of keys stored per bucket
+   */
+  public double getLoadFactor() {
+    return (double) size / capacity;
+  }
+
+  public int getOccupiedBuckets() {
+    return occupiedBuckets;
+  }
+
+  /**
+   * @return fraction of buckets holding at least one key
+   */
+  public double getBucketOccupancy() {
+    return (double) occupiedBuckets / capacity;
+  }
+
+  public int getTreeBuckets() {
+    return treeBuckets;
+  }
+
+  public int getLongestChain() {
+    return longestChain;
+  }
+
+  /**
+   * @return copy of the histogram, entry i is the number of buckets holding i keys and the last
+   *         entry counts every bucket at least that full
+   */
+  public int[] getChainLengthHistogram() {
+    return chainLengthHistogram.clone();
+  }
+
+  public int getMaxProbeLength() {
+    return maxProbeLength;
+  }
+
+  public int getResizeCount() {
+    return resizeCount;
+  }
+
+  public long getResizeNanos() {
+    return resizeNanos;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return fraction of counted lookups that found their key, 0 if none were counted
+   */
+  public double getHitRate() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  @Override
+  /**
+   * Converts the statistics to a single formatted line
+   */
+  public String toString() {
+    return String.format(
+        "size=%d capacity=%d load=%.3f occupancy=%.3f treeBuckets=%d longestChain=%d "
+            + "chains=%s maxProbe=%d resizes=%d resizeMs=%.3f hits=%d misses=%d",
+        size, capacity, getLoadFactor(), getBucketOccupancy(), treeBuckets, longestChain,
+        Arrays.toString(chainLengthHistogram), maxProbeLength, resizeCount, resizeNanos / 1e6,
+        hits, misses);
+  }
+}
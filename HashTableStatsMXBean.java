@@ -0,0 +1,38 @@
+/**
+ * Management interface exposing the statistics of a HashTableMap over JMX, see
+ * HashTableMap.registerMBean()
+ */
+public interface HashTableStatsMXBean {
+
+  int getSize();
+
+  int getCapacity();
+
+  double getLoadFactor();
+
+  double getBucketOccupancy();
+
+  int getTreeBuckets();
+
+  int getLongestChain();
+
+  int[] getChainLengthHistogram();
+
+  int getMaxProbeLength();
+
+  int getResizeCount();
+
+  long getResizeNanos();
+
+  long getHits();
+
+  long getMisses();
+
+  double getHitRate();
+
+  boolean isLookupCountingEnabled();
+
+  void setLookupCountingEnabled(boolean enabled);
+
+  void resetLookupCounters();
+}
@@ -1,49 +1,57 @@
-import java.util.*;
-
 /**
  * This class stores details about a specific Hero
  * @author mayanknayak
  *
  */
 class Hero implements Comparable<Hero> {
-  Scanner scnr;
-  Random randInt = new Random();
-  String name;
-  Traits trait;
-  int traitNumber;
-  String description;
-  int rating;
+  // shared so trait() does not copy the enum constants on every call
+  private static final Traits[] TRAITS = Traits.values();
+  // recently seen descriptions by hash, so repeated descriptions share one String. Unlike
+  // String.intern() this costs one array read per hero and never holds more than its slots.
+  private static final String[] DESCRIPTIONS = new String[1 << 12];
+
+  final String name;
+  final String description;
+  // ordinal of the trait, a byte keeps the object header and fields in 24 bytes
+  final byte traitNumber;
+  final byte rating;
 
   /**
-   * Constructor for newly created Heroes with user input
+   * Constructor for heroes read from the HeroDex files or created by HeroBuilder. Heroes with
+   * the same description as a recently created hero share its String.
    * @param name
    * @param description
-   * @param scnr
+   * @param trait
+   * @param rating 0 to Byte.MAX_VALUE
+   * @throws IllegalArgumentException if the rating does not fit the byte it is stored in
    */
-  public Hero(String name, String description, Scanner scnr) {
+  public Hero(String name, String description, Traits trait, int rating) {
+    if (rating < 0 || rating > Byte.MAX_VALUE) {
+      throw new IllegalArgumentException("invalid rating " + rating + " for hero " + name);
+    }
     this.name = name;
-    this.description = description;
-    this.scnr = scnr;
-    calculateRating();
-    System.out.println(chooseTrait());
+    this.description = shareDescription(description);
+    this.traitNumber = (byte) trait.ordinal();
+    this.rating = (byte) rating;
   }
+
+
   /**
-   * Constructor for existing heroes already in HeroDex text file database
-   * @param name
+   * Returns an equal description from the cache, or caches this one in its slot. Races between
+   * threads only cost a missed share, since Strings are immutable.
    * @param description
-   * @param trait
-   * @param traitNumber
-   * @param rating
+   * @return shared equal String or description itself
    */
-  public Hero(String name, String description, Traits trait, int traitNumber, int rating) {
-    this.name = name;
-    this.description = description;
-    this.trait = trait;
-    this.traitNumber = traitNumber;
-    this.rating = rating;
+  private static String shareDescription(String description) {
+    int slot = description.hashCode() & (DESCRIPTIONS.length - 1);
+    String shared = DESCRIPTIONS[slot];
+    if (description.equals(shared)) {
+      return shared;
+    }
+    DESCRIPTIONS[slot] = description;
+    return description;
   }
 
-
   /**
    * Enumeration of all possible traits a hero may possess
    * @author mayanknayak
@@ -54,48 +62,13 @@ class Hero implements Comparable<Hero> {
   }
 
   /**
-   * Assigns randomized rating to each hero
+   * Returns the trait of this hero
+   * @return trait
    */
-  protected void calculateRating() {
-    this.rating = randInt.nextInt(50) + 50;
+  public Traits trait() {
+    return TRAITS[traitNumber];
   }
 
-  /**
-   * Enables the user to pick a certain trait for each Hero
-   * @return Message to output
-   */
-  protected String chooseTrait() {
-    System.out.println("Please enter desired number (1 - 5) to choose trait:");
-    int n = 1;
-    for (Traits trait : Traits.values()) {
-
-      System.out.println(n++ + ": " + trait);
-    }
-
-    boolean validInput = false;
-    int input = 0;
-    
-    // makes sure user inputs a valid input
-    while (!validInput) {
-
-      if (scnr.hasNextInt()) {
-        input = scnr.nextInt();
-      }
-
-      if (input >= 1 && input <= 5) {
-        validInput = true;
-      }
-
-      if (!validInput) {
-        System.out.println("Please enter valid number between 1 to 5");
-      }
-    }
-    // assigns appropriate trait to hero based on user input
-    this.trait = Traits.values()[input - 1];
-    this.traitNumber = input - 1;
-    return "You chose " + Traits.values()[input - 1];
-  }
-  
   /**
    * Compares and assigns natural ordering for heroes
    */
@@ -111,9 +84,18 @@ class Hero implements Comparable<Hero> {
    * Converts the details of a hero to a formatted String
    */
   public String toString() {
-    String returnString = "";
-    returnString += "| Name: " + this.name + " | Trait: " + this.trait + " | Rating: " + this.rating
-        + " |\n| Description: " + this.description + " |\n";
-    return returnString;
+    return appendTo(new StringBuilder()).toString();
+  }
+
+  /**
+   * Appends the details of a hero, formatted as in toString(), to a caller supplied builder
+   * 
+   * @param builder StringBuilder to append to
+   * @return builder
+   */
+  public StringBuilder appendTo(StringBuilder builder) {
+    return builder.append("| Name: ").append(name).append(" | Trait: ").append(trait())
+        .append(" | Rating: ").append(rating).append(" |\n| Description: ").append(description)
+        .append(" |\n");
   }
 }
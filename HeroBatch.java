@@ -0,0 +1,294 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs HeroDex commands from a script without the menu, one command per line with its fields
+ * separated by tabs. Blank lines and lines starting with # are skipped.
+ *
+ * <pre>
+ * add      name, description, optional trait (name or number) and rating
+ * get      name
+ * filter   trait name, or a minimum rating
+ * sort     optional number of heroes
+ * compare  first name, second name
+ * clear
+ * </pre>
+ *
+ * Every result is written as tab separated lines, with tabs, line breaks and backslashes in the
+ * fields escaped as \t, \n and \\:
+ *
+ * <pre>
+ * added NAME | exists NAME                   for add
+ * hero NAME TRAIT RATING DESCRIPTION         for get, and for each hero of filter and sort
+ * missing NAME                               for get and compare
+ * count N                                    after the heroes of filter and sort
+ * winner NAME | tie                          for compare
+ * cleared                                    for clear
+ * error LINE MESSAGE                         for a line that is not a valid command
+ * </pre>
+ *
+ * Adds are held back until the next command of another kind and then put into the hash table
+ * and indexes as one batch. The heroes the script added are written to the log with a single
+ * write and fsync once the script ends, so a script adding thousands of heroes does not wait for
+ * the disk once per hero.
+ */
+public class HeroBatch {
+
+  private final HeroDex heroDex;
+  private final Writer out;
+  // adds not put into the HeroDex yet
+  private final List<HeroSpec> pending = new ArrayList<>();
+  // heroes added by the script and not written to the log yet
+  private final List<Hero> unlogged = new ArrayList<>();
+  // reused for every output line
+  private final StringBuilder row = new StringBuilder();
+
+  /**
+   * @param heroDex HeroDex to run the commands on
+   * @param out     destination of the results, ideally buffered
+   */
+  public HeroBatch(HeroDex heroDex, Writer out) {
+    this.heroDex = heroDex;
+    this.out = out;
+  }
+
+  /**
+   * Runs every command of a script, then writes the heroes added to the log and flushes out
+   *
+   * @param script commands, one per line
+   * @return number of commands run, including invalid ones
+   * @throws IOException if the script cannot be read or the results or log cannot be written
+   */
+  public int run(BufferedReader script) throws IOException {
+    int commands = 0;
+    int lineNumber = 0;
+    for (String line = script.readLine(); line != null; line = script.readLine()) {
+      lineNumber++;
+      if (line.isBlank() || line.startsWith("#")) {
+        continue;
+      }
+      commands++;
+      String[] fields = line.split("\t", -1);
+      try {
+        if (!fields[0].equals("add")) {
+          putPending();
+        }
+        run(fields);
+      } catch (IllegalArgumentException e) {
+        // the results of the adds before come first
+        putPending();
+        row.setLength(0);
+        row.append("error\t").append(lineNumber).append('\t');
+        field(String.valueOf(e.getMessage()));
+        writeRow();
+      }
+    }
+    putPending();
+    if (!unlogged.isEmpty()) {
+      heroDex.logAdded(unlogged);
+      unlogged.clear();
+    }
+    out.flush();
+    return commands;
+  }
+
+  /**
+   * Runs one command
+   *
+   * @param fields name of the command followed by its arguments
+   * @throws IOException              if the results cannot be written
+   * @throws IllegalArgumentException if the command or its arguments are not valid
+   */
+  private void run(String[] fields) throws IOException {
+    switch (fields[0]) {
+      case "add":
+        arguments(fields, 2, 4);
+        int rating = fields.length > 4 && !fields[4].isBlank()
+            ? Integer.parseInt(fields[4].trim())
+            : HeroSpec.GENERATED;
+        pending.add(new HeroSpec(fields[1], fields[2],
+            fields.length > 3 ? HeroSpec.parseTrait(fields[3]) : null, rating));
+        break;
+      case "get":
+        arguments(fields, 1, 1);
+        Hero hero = heroDex.getHero(fields[1]);
+        if (hero != null) {
+          writeHero(hero);
+        } else {
+          writeResult("missing", fields[1]);
+        }
+        break;
+      case "filter":
+        arguments(fields, 1, 1);
+        if (!fields[1].isEmpty() && Character.isDigit(fields[1].charAt(0))) {
+          int minimumRating = Integer.parseInt(fields[1]);
+          writeHeroes(heroDex.ratingIndex.atLeast(minimumRating), Integer.MAX_VALUE);
+        } else {
+          Hero.Traits trait = HeroSpec.parseTrait(fields[1]);
+          if (trait == null) {
+            throw new IllegalArgumentException("filter needs a trait or a rating");
+          }
+          writeHeroes(heroDex.traitIndex.withTrait(trait).values(), Integer.MAX_VALUE);
+        }
+        break;
+      case "sort":
+        arguments(fields, 0, 1);
+        writeHeroes(heroDex.ratingIndex,
+            fields.length > 1 ? Integer.parseInt(fields[1]) : Integer.MAX_VALUE);
+        break;
+      case "compare":
+        arguments(fields, 2, 2);
+        compare(fields[1], fields[2]);
+        break;
+      case "clear":
+        arguments(fields, 0, 0);
+        unlogged.clear();
+        heroDex.deleteAllHeroes();
+        writeResult("cleared", null);
+        break;
+      default:
+        throw new IllegalArgumentException("unknown command " + fields[0]);
+    }
+  }
+
+  /**
+   * @param fields  name of the command followed by its arguments
+   * @param minimum fewest arguments the command takes
+   * @param maximum most arguments the command takes
+   * @throws IllegalArgumentException if the number of arguments is not in range
+   */
+  private static void arguments(String[] fields, int minimum, int maximum) {
+    int count = fields.length - 1;
+    if (count < minimum || count > maximum) {
+      throw new IllegalArgumentException(
+          fields[0] + " takes " + minimum + (maximum > minimum ? " to " + maximum : "")
+              + " arguments, not " + count);
+    }
+  }
+
+  /**
+   * Puts the held back adds into the HeroDex as one batch and writes their results in order
+   *
+   * @throws IOException if the results cannot be written
+   */
+  private void putPending() throws IOException {
+    if (pending.isEmpty()) {
+      return;
+    }
+    List<Hero> added = heroDex.putHeroes(pending);
+    // added heroes come in the order of their specs, and a name is added at most once
+    int next = 0;
+    for (HeroSpec spec : pending) {
+      if (next < added.size() && added.get(next).name.equals(spec.name)) {
+        next++;
+        writeResult("added", spec.name);
+      } else {
+        writeResult("exists", spec.name);
+      }
+    }
+    unlogged.addAll(added);
+    pending.clear();
+  }
+
+  /**
+   * Writes which of two heroes would win a fight
+   *
+   * @param firstName  name of the first hero
+   * @param secondName name of the second hero
+   * @throws IOException if the result cannot be written
+   */
+  private void compare(String firstName, String secondName) throws IOException {
+    Hero first = heroDex.getHero(firstName);
+    Hero second = heroDex.getHero(secondName);
+    if (first == null || second == null) {
+      writeResult("missing", first == null ? firstName : secondName);
+      return;
+    }
+    int result = first.compareTo(second);
+    if (result == 0) {
+      writeResult("tie", null);
+    } else {
+      writeResult("winner", result < 0 ? first.name : second.name);
+    }
+  }
+
+  /**
+   * Writes up to limit heroes followed by the number written
+   *
+   * @param heroes heroes to write
+   * @param limit  most heroes written
+   * @throws IOException if the results cannot be written
+   */
+  private void writeHeroes(Iterable<Hero> heroes, int limit) throws IOException {
+    int count = 0;
+    for (Hero hero : heroes) {
+      if (count == limit) {
+        break;
+      }
+      writeHero(hero);
+      count++;
+    }
+    writeResult("count", Integer.toString(count));
+  }
+
+  /**
+   * @param hero hero to write
+   * @throws IOException if the result cannot be written
+   */
+  private void writeHero(Hero hero) throws IOException {
+    row.setLength(0);
+    row.append("hero\t");
+    field(hero.name);
+    row.append('\t').append(hero.trait()).append('\t').append(hero.rating).append('\t');
+    field(hero.description);
+    writeRow();
+  }
+
+  /**
+   * @param kind  kind of result
+   * @param value value of the result, null for none
+   * @throws IOException if the result cannot be written
+   */
+  private void writeResult(String kind, String value) throws IOException {
+    row.setLength(0);
+    row.append(kind);
+    if (value != null) {
+      row.append('\t');
+      field(value);
+    }
+    writeRow();
+  }
+
+  /**
+   * Appends a field to the row, escaping the characters that separate fields and lines
+   *
+   * @param value field to append
+   */
+  private void field(String value) {
+    for (int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      if (c == '\t') {
+        row.append("\\t");
+      } else if (c == '\n') {
+        row.append("\\n");
+      } else if (c == '\\') {
+        row.append("\\\\");
+      } else {
+        row.append(c);
+      }
+    }
+  }
+
+  /**
+   * Ends the row and writes it
+   *
+   * @throws IOException if the row cannot be written
+   */
+  private void writeRow() throws IOException {
+    row.append('\n');
+    out.append(row);
+  }
+}
@@ -0,0 +1,87 @@
+import java.util.Scanner;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Creates new heroes interactively, asking for the trait on the console and generating the
+ * rating. Heroes only hold their final values, so the Scanner and random numbers live here
+ * instead of in every Hero.
+ */
+public class HeroBuilder {
+
+  private final Scanner scnr;
+
+  /**
+   * Constructor with the Scanner that traits are read from
+   *
+   * @param scnr Instance of Scanner to read from
+   */
+  public HeroBuilder(Scanner scnr) {
+    this.scnr = scnr;
+  }
+
+  /**
+   * Asks for the trait of a new hero and generates its rating
+   *
+   * @param name        name of the hero
+   * @param description description of the hero
+   * @return new hero
+   */
+  public Hero build(String name, String description) {
+    Hero.Traits trait = chooseTrait();
+    System.out.println("You chose " + trait);
+    return new Hero(name, description, trait, randomRating());
+  }
+
+  /**
+   * Returns a random rating as given to every new hero
+   *
+   * @return rating between 50 and 99
+   */
+  public static int randomRating() {
+    return ThreadLocalRandom.current().nextInt(50) + 50;
+  }
+
+  /**
+   * Returns a random trait
+   *
+   * @return trait
+   */
+  public static Hero.Traits randomTrait() {
+    Hero.Traits[] traits = Hero.Traits.values();
+    return traits[ThreadLocalRandom.current().nextInt(traits.length)];
+  }
+
+  /**
+   * Enables the user to pick a certain trait for a hero
+   *
+   * @return chosen trait
+   */
+  private Hero.Traits chooseTrait() {
+    System.out.println("Please enter desired number (1 - 5) to choose trait:");
+    int n = 1;
+    for (Hero.Traits trait : Hero.Traits.values()) {
+
+      System.out.println(n++ + ": " + trait);
+    }
+
+    boolean validInput = false;
+    int input = 0;
+
+    // makes sure user inputs a valid input
+    while (!validInput) {
+
+      if (scnr.hasNextInt()) {
+        input = scnr.nextInt();
+      }
+
+      if (input >= 1 && input <= 5) {
+        validInput = true;
+      }
+
+      if (!validInput) {
+        System.out.println("Please enter valid number between 1 to 5");
+      }
+    }
+    return Hero.Traits.values()[input - 1];
+  }
+}
@@ -1,5 +1,25 @@
 import java.util.*;
 import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.management.JMException;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -15,10 +35,48 @@ public class HeroDex {
   HashTableMap<String, Hero> heroDex;
 
   // holds heroes based on their rating
-  PriorityQueue<Hero> ratingQueue = new PriorityQueue<>();
-
-  // hold the names of heroes for easy access and comparison of traits and ratings
-  ArrayList<String> names = new ArrayList<>();
+  RatingIndex ratingIndex = new RatingIndex();
+
+  // holds heroes based on their trait
+  TraitIndex traitIndex = new TraitIndex();
+
+  // bitmaps of hero ids per trait and rating, used by query()
+  QueryIndex queryIndex = new QueryIndex();
+
+  // results of query(), count() and searchDescriptions() until a hero they can hold changes
+  QueryCache queryCache = new QueryCache();
+
+  // words of the hero descriptions, used by searchDescriptions()
+  TextIndex textIndex = new TextIndex();
+  // set while loading, so the text index is built in one go on the first search instead
+  private boolean textIndexStale = false;
+
+  // normalized hero names, used by findHero() and suggestHeroes()
+  NameTrie names = new NameTrie();
+  // set while loading, so the names are added in one go on first use instead
+  private boolean namesStale = false;
+
+  // heroes printed before the menu asks whether to go on
+  int pageSize = 20;
+
+  // write-ahead log of the changes made since the text file was written, opened on first use
+  private HeroLog log;
+  // text file the log belongs to, null until a text file is loaded
+  private String fileName;
+  // heroes stored in the text file, live or not
+  private volatile int baseRecords = 0;
+  // share of the stored records that are deleted or outdated before the log is compacted
+  double compactionGarbageRatio = 0.5;
+  // logs holding fewer records are never compacted
+  int compactionMinRecords = 1024;
+  private Future<?> compaction;
+
+  // one daemon thread compacts logs in the background
+  private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "HeroDex-compactor");
+    thread.setDaemon(true);
+    return thread;
+  });
 
   /**
    * Constructor initializes hash table to store heroes
@@ -42,6 +100,10 @@ public class HeroDex {
     file.createNewFile();
 
     fileScanner = new Scanner(file);
+    int records = 0;
+    textIndexStale = true;
+    namesStale = true;
+    queryCache.clear();
 
 
     while (fileScanner.hasNextLine()) {
@@ -54,16 +116,358 @@ public class HeroDex {
 
       Hero.Traits trait = Hero.Traits.values()[traitNumber];
       int rating = fileScanner.nextInt();
+      if (rating < 0 || rating > RatingIndex.MAX_RATING) {
+        fileScanner.close();
+        // the rating is the fourth line of a hero
+        throw new IOException("Invalid rating " + rating + " at line " + (4 * records + 4));
+      }
 
       fileScanner.nextLine();
-      Hero addHero = new Hero(name, description, trait, traitNumber, rating);
-      heroDex.put(name, addHero);
-      ratingQueue.add(addHero);
-      names.add(name);
+      Hero addHero = new Hero(name, description, trait, rating);
+      if (heroDex.put(name, addHero)) {
+        indexHero(addHero);
+      }
+      records++;
 
     }
 
     fileScanner.close();
+    recoverLog(fileName, records);
+  }
+
+  /**
+   * Replays the changes made in the write-ahead log of a text file since the text file was
+   * written. Opening the log cuts off a record torn by a crash.
+   * 
+   * @param fileName    Name of the text file the log belongs to.
+   * @param baseRecords Number of heroes read from the text file.
+   * @throws IOException if the log cannot be read
+   */
+  private void recoverLog(String fileName, int baseRecords) throws IOException {
+    closeLog();
+    this.fileName = fileName;
+    this.baseRecords = baseRecords;
+    if (new File(fileName + HeroLog.EXTENSION).exists()) {
+      openLog();
+    }
+  }
+
+  /**
+   * Returns the write-ahead log of the loaded text file, opening it first if needed
+   * 
+   * @return open log
+   * @throws IOException if the log cannot be opened
+   */
+  private HeroLog openLog() throws IOException {
+    if (log == null) {
+      log = HeroLog.open(fileName + HeroLog.EXTENSION, new HeroLog.Replay() {
+        public void add(Hero addHero) {
+          if (heroDex.put(addHero.name, addHero)) {
+            indexHero(addHero);
+          }
+        }
+
+        public void update(Hero newHero) {
+          Hero previous = heroDex.replace(newHero.name, newHero);
+          if (previous != null) {
+            unindexHero(previous);
+            indexHero(newHero);
+          } else {
+            add(newHero);
+          }
+        }
+
+        public void remove(String name) {
+          Hero previous = heroDex.remove(name);
+          if (previous != null) {
+            unindexHero(previous);
+          }
+        }
+      });
+    }
+    return log;
+  }
+
+  /**
+   * Waits for a running compaction, then commits and closes the write-ahead log, if it is open
+   * 
+   * @throws IOException if the last records cannot be written
+   */
+  public void closeLog() throws IOException {
+    awaitCompaction();
+    if (log != null) {
+      HeroLog closing = log;
+      log = null;
+      closing.close();
+    }
+  }
+
+  /**
+   * Adds a hero to the indexes kept next to the hash table
+   * 
+   * @param hero hero that was added to the hash table
+   */
+  private void indexHero(Hero hero) {
+    ratingIndex.add(hero);
+    traitIndex.add(hero);
+    queryIndex.add(hero);
+    queryCache.changed(hero);
+    if (!textIndexStale) {
+      textIndex.add(hero);
+    }
+    if (!namesStale) {
+      names.add(hero);
+    }
+  }
+
+  /**
+   * Adds many heroes to the indexes kept next to the hash table in one pass
+   * 
+   * @param heroes heroes that were added to the hash table
+   */
+  private void indexHeroes(Collection<Hero> heroes) {
+    for (Hero hero : heroes) {
+      ratingIndex.add(hero);
+      traitIndex.add(hero);
+      queryIndex.add(hero);
+      queryCache.changed(hero);
+    }
+    if (!textIndexStale) {
+      textIndex.addAll(heroes);
+    }
+    if (!namesStale) {
+      heroes.forEach(names::add);
+    }
+  }
+
+  /**
+   * Removes a hero from the indexes kept next to the hash table
+   * 
+   * @param hero hero that was removed from the hash table
+   */
+  private void unindexHero(Hero hero) {
+    ratingIndex.remove(hero);
+    traitIndex.remove(hero);
+    queryIndex.remove(hero);
+    queryCache.changed(hero);
+    if (!textIndexStale) {
+      textIndex.remove(hero);
+    }
+    if (!namesStale) {
+      names.remove(hero);
+    }
+  }
+
+  /**
+   * Deletes one hero and writes a tombstone for it to the write-ahead log
+   * 
+   * @param name Name of the hero to delete.
+   * @return deleted hero, null if no hero has that name
+   * @throws IOException if the log cannot be written
+   */
+  public Hero removeHero(String name) throws IOException {
+    Hero previous = heroDex.remove(name);
+    if (previous != null) {
+      unindexHero(previous);
+      if (fileName != null) {
+        openLog().remove(name);
+        compactIfNeeded();
+      }
+    }
+    return previous;
+  }
+
+  /**
+   * Replaces a stored hero with a new version and writes it to the write-ahead log
+   * 
+   * @param newHero New version of a stored hero, matched by name.
+   * @return replaced hero, null if no hero has that name
+   * @throws IOException if the log cannot be written
+   */
+  public Hero updateHero(Hero newHero) throws IOException {
+    Hero previous = heroDex.replace(newHero.name, newHero);
+    if (previous != null) {
+      unindexHero(previous);
+      indexHero(newHero);
+      if (fileName != null) {
+        openLog().update(newHero);
+        compactIfNeeded();
+      }
+    }
+    return previous;
+  }
+
+  /**
+   * Starts a background compaction once deleted and outdated heroes make up
+   * compactionGarbageRatio of the records in the text file and the log
+   * 
+   * @throws IOException if the previous compaction failed
+   */
+  private void compactIfNeeded() throws IOException {
+    long stored = baseRecords + log.getRecordCount();
+    long garbage = stored - heroDex.size();
+    if (stored >= compactionMinRecords && garbage >= stored * compactionGarbageRatio
+        && (compaction == null || compaction.isDone())) {
+      awaitCompaction();
+      startCompaction();
+    }
+  }
+
+  /**
+   * Compacts the write-ahead log into the text file and waits until it is done
+   * 
+   * @throws IOException if the text file or the log cannot be rewritten
+   */
+  public void compactLog() throws IOException {
+    awaitCompaction();
+    if (fileName != null) {
+      openLog();
+      startCompaction();
+      awaitCompaction();
+    }
+  }
+
+  /**
+   * Writes the live heroes to a new text file in the background and swaps it in with an atomic
+   * move, then drops the log records the text file now holds. The heroes are copied and the log
+   * is marked before the background task starts, so changes made while it runs stay in the log.
+   * A crash between the two swaps replays records already in the text file, which leaves the
+   * same heroes since every record sets the final state of its hero.
+   * 
+   * @throws IOException if the log cannot be marked
+   */
+  private void startCompaction() throws IOException {
+    List<Hero> live = new ArrayList<>(heroDex.values());
+    HeroLog compacting = log;
+    long mark = compacting.mark();
+    long records = compacting.getRecordCount();
+    String target = fileName;
+    compaction = COMPACTOR.submit(() -> {
+      writeTextFile(target, live);
+      compacting.discardBefore(mark, records);
+      baseRecords = live.size();
+      return null;
+    });
+  }
+
+  /**
+   * Waits for a running compaction to finish
+   * 
+   * @throws IOException if the compaction failed
+   */
+  private void awaitCompaction() throws IOException {
+    if (compaction == null) {
+      return;
+    }
+    try {
+      compaction.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while compacting the HeroDex log", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to compact the HeroDex log", e.getCause());
+    } finally {
+      compaction = null;
+    }
+  }
+
+  /**
+   * Writes heroes to a text file in the 4 line format read by initializeHeroDex(). The file is
+   * written next to the target, synced and then moved over it.
+   * 
+   * @param fileName Name of text file to write.
+   * @param heroes   Heroes to write.
+   * @throws IOException if the file cannot be written
+   */
+  static void writeTextFile(String fileName, Collection<Hero> heroes) throws IOException {
+    File target = new File(fileName).getAbsoluteFile();
+    File temp = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+    try {
+      try (FileOutputStream out = new FileOutputStream(temp);
+          BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out), 1 << 16)) {
+        for (Hero hero : heroes) {
+          writer.write(hero.name);
+          writer.newLine();
+          writer.write(hero.description);
+          writer.newLine();
+          writer.write(Integer.toString(hero.traitNumber));
+          writer.newLine();
+          writer.write(Integer.toString(hero.rating));
+          writer.newLine();
+        }
+        writer.flush();
+        out.getFD().sync();
+      }
+      Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      temp.delete();
+    }
+  }
+
+  /**
+   * Reads the same text file as initializeHeroDex(), parsing it on the common fork-join pool with
+   * ParallelHeroLoader. Heroes are merged in file order once every chunk is parsed, so the hash
+   * table is sized once and a duplicate name keeps its first hero as before.
+   * 
+   * @param fileName Name of file to work on.
+   * @param progress receives progress and per-phase timing messages
+   * @throws IOException if the file cannot be read or holds a malformed record
+   */
+  public void initializeHeroDexParallel(String fileName, Consumer<String> progress)
+      throws IOException {
+    new File(fileName).createNewFile();
+    ParallelHeroLoader loader = new ParallelHeroLoader(progress);
+    List<List<Hero>> chunks = loader.parse(fileName);
+    textIndexStale = true;
+    namesStale = true;
+    queryCache.clear();
+
+    long start = System.nanoTime();
+    heroDex.ensureCapacity(heroDex.size() + loader.getHeroCount());
+    List<Hero> added = new ArrayList<>(loader.getHeroCount());
+    for (List<Hero> chunk : chunks) {
+      for (Hero addHero : chunk) {
+        if (heroDex.put(addHero.name, addHero)) {
+          added.add(addHero);
+        }
+      }
+    }
+    indexHeroes(added);
+    recoverLog(fileName, loader.getHeroCount());
+    progress.accept(String.format("merge: %d heroes in %.1f ms", added.size(),
+        (System.nanoTime() - start) / 1e6));
+  }
+
+  /**
+   * Loads heroes from a binary snapshot written by HeroSnapshot.write(). The hash table is sized
+   * once from the hero count in the snapshot header before any hero is added.
+   * 
+   * @param fileName Name of snapshot file to read.
+   * @throws IOException if the file cannot be read or is not a valid snapshot
+   */
+  public void initializeHeroDexFromSnapshot(String fileName) throws IOException {
+    HeroSnapshot snapshot = HeroSnapshot.open(fileName);
+    heroDex.ensureCapacity(heroDex.size() + snapshot.count());
+    textIndexStale = true;
+    namesStale = true;
+    queryCache.clear();
+    while (snapshot.hasNext()) {
+      Hero addHero = snapshot.next();
+      if (heroDex.put(addHero.name, addHero)) {
+        indexHero(addHero);
+      }
+    }
+  }
+
+  /**
+   * Saves every hero to a binary snapshot that initializeHeroDexFromSnapshot() can load
+   * 
+   * @param fileName Name of snapshot file to write.
+   * @throws IOException if the file cannot be written
+   */
+  public void saveSnapshot(String fileName) throws IOException {
+    HeroSnapshot.write(fileName, heroDex.values());
   }
 
   /**
@@ -140,12 +544,14 @@ public class HeroDex {
       }
     } while (input != 6);
     scnr.close();
+    closeLog();
 
     System.out.println("Thanks for using HeroDex!");
   }
 
   /**
-   * Adds a new hero to the HeroDex hash table and updates the text file
+   * Adds a new hero to the HeroDex hash table and appends it to the write-ahead log of the text
+   * file
    * 
    * @param scnr     Instance of Scanner to input from
    * @param fileName File to work on
@@ -165,17 +571,14 @@ public class HeroDex {
       System.out.println("Please enter a description for your hero that is more than 5 words");
       description = scnr.nextLine();
     } while (!validateDescription(description));
-    addHero(name, description, scnr);
-    // updates and writes to text file
-    FileWriter file = new FileWriter(fileName, true);
-    PrintWriter writer = new PrintWriter(file);
-    Hero currentHero = heroDex.get(name);
-    writer.println(name);
-    writer.println(description);
-    writer.println(currentHero.traitNumber);
-    writer.println(currentHero.rating);
-
-    writer.close();
+    if (!addHero(name, description, scnr)) {
+      System.out.println("Sorry but another hero took that name first, identity theft "
+          + "isn't a joke...");
+      return;
+    }
+    // the log commits adds in groups, the hero is on disk within the group window
+    openLog().append(heroDex.get(name));
+    compactIfNeeded();
 
     System.out.println("\nYou have successfully added a new hero to the HeroDex!");
   }
@@ -215,33 +618,170 @@ public class HeroDex {
   }
 
   /**
-   * Simple method that add new Hero instance to the data structures used in this class
+   * Simple method that add new Hero instance to the data structures used in this class. The name
+   * is claimed with putIfAbsent so a hero added after validateName() ran is never overwritten.
    * 
    * @param name        User input name
    * @param description User input description
    * @param scnr        Instance of Scanner to use
+   * @return true if the hero was added, false if another hero already has that name
+   */
+  public boolean addHero(String name, String description, Scanner scnr) {
+    Hero newHero = new HeroBuilder(scnr).build(name, description);
+    if (heroDex.putIfAbsent(name, newHero) != null) {
+      return false;
+    }
+    indexHero(newHero);
+    return true;
+  }
+
+  /**
+   * Adds many heroes without prompting for anything. The hash table is sized once, names that
+   * are already stored or repeated in the batch are skipped with the first one kept, the rating
+   * index is updated in one pass, and the new heroes are written to the write-ahead log with a
+   * single write.
+   * 
+   * @param specs Heroes to add, generating traits and ratings that were left out.
+   * @return number of heroes added
+   * @throws IOException if the log cannot be written
+   */
+  public int addHeroes(Iterable<HeroSpec> specs) throws IOException {
+    Collection<HeroSpec> batch;
+    if (specs instanceof Collection) {
+      batch = (Collection<HeroSpec>) specs;
+    } else {
+      batch = new ArrayList<>();
+      specs.forEach(batch::add);
+    }
+    List<Hero> added = putHeroes(batch);
+    logAdded(added);
+    return added.size();
+  }
+
+  /**
+   * Adds heroes to the hash table and indexes without writing them to the log. Specs whose name
+   * is taken, also by an earlier spec of the batch, are skipped.
+   * 
+   * @param batch Heroes to add.
+   * @return added heroes, in the order of their specs
+   */
+  List<Hero> putHeroes(Collection<HeroSpec> batch) {
+    heroDex.ensureCapacity(heroDex.size() + batch.size());
+    List<Hero> added = new ArrayList<>(batch.size());
+    for (HeroSpec spec : batch) {
+      Hero newHero = spec.toHero();
+      if (heroDex.putIfAbsent(newHero.name, newHero) == null) {
+        added.add(newHero);
+      }
+    }
+    indexHeroes(added);
+    return added;
+  }
+
+  /**
+   * Writes heroes added by putHeroes() to the log with one write and fsync, if a file is loaded
+   * 
+   * @param added Heroes that were added.
+   * @throws IOException if the log cannot be written
+   */
+  void logAdded(Collection<Hero> added) throws IOException {
+    if (fileName != null && !added.isEmpty()) {
+      openLog().appendAll(added);
+      compactIfNeeded();
+    }
+  }
+
+  /**
+   * Runs commands from a script on the heroes of a file, without the menu, as described in
+   * HeroBatch
+   * 
+   * @param fileName Name of file to work on.
+   * @param script   Commands, one per line.
+   * @param out      Destination of the results, ideally buffered.
+   * @return number of commands run
+   * @throws IOException if a file, the script or out cannot be used
+   */
+  public int runBatch(String fileName, BufferedReader script, Writer out) throws IOException {
+    initializeHeroDex(fileName);
+    try {
+      return new HeroBatch(this, out).run(script);
+    } finally {
+      closeLog();
+    }
+  }
+
+  /**
+   * Adds the heroes of a CSV file, or of a JSON lines file if its name ends in .jsonl or .json
+   * 
+   * @param importFile File to import, in the formats read by HeroSpec.
+   * @return number of heroes added
+   * @throws IOException if the file cannot be read, holds an invalid hero or the log cannot be
+   *                     written
    */
-  public void addHero(String name, String description, Scanner scnr) {
-    Hero newHero = new Hero(name, description, scnr);
-    heroDex.put(name, newHero);
-    ratingQueue.add(newHero);
-    names.add(newHero.name);
+  public int importHeroes(String importFile) throws IOException {
+    List<HeroSpec> specs;
+    try (BufferedReader reader = new BufferedReader(new FileReader(importFile), 1 << 16)) {
+      specs = importFile.endsWith(".jsonl") || importFile.endsWith(".json")
+          ? HeroSpec.readJsonLines(reader) : HeroSpec.readCsv(reader);
+    }
+    return addHeroes(specs);
   }
 
 
   /**
-   * Prints out the list of all heroes stored in the HeroDex by calling the hash table's toString()
-   * method.
+   * Prints out the list of all heroes stored in the HeroDex, streaming each hero straight to the
+   * console.
    * 
    * @param scnr Instance of Scanner to use
+   * @throws IOException
    */
-  private void option2(Scanner scnr) {
+  private void option2(Scanner scnr) throws IOException {
     if (getHeroesStored() == 1) {
       System.out.println("There is " + getHeroesStored() + " hero in the HeroDex!\n");
     } else {
       System.out.println("There are " + getHeroesStored() + " heroes in the HeroDex!\n");
     }
-    System.out.println(heroDex.toString());
+    printPages(scnr, token -> listHeroes(token, pageSize));
+  }
+
+  /**
+   * Prints a listing one page at a time, asking before every further page
+   * 
+   * @param scnr  Instance of Scanner to read the answer from
+   * @param pages Returns the page for a token, the first page for null.
+   * @throws IOException
+   */
+  private void printPages(Scanner scnr, Function<String, HeroPage> pages) throws IOException {
+    HeroPage page = pages.apply(null);
+    printHeroes(page.heroes);
+    while (page.hasNext()) {
+      System.out.println("Press Enter for more heroes, or type q to stop:");
+      if (!scnr.hasNextLine() || scnr.nextLine().trim().equalsIgnoreCase("q")) {
+        return;
+      }
+      page = pages.apply(page.next);
+      printHeroes(page.heroes);
+    }
+  }
+
+  /**
+   * Writes heroes to the console through one buffered writer, one reused row at a time and
+   * followed by a blank line, without building the whole listing as one String
+   * 
+   * @param heroes Heroes to print
+   * @throws IOException
+   */
+  private void printHeroes(Iterable<Hero> heroes) throws IOException {
+    // System.out stays open, so the writer is only flushed
+    Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+    StringBuilder row = new StringBuilder();
+    for (Hero hero : heroes) {
+      row.setLength(0);
+      hero.appendTo(row).append('\n');
+      out.append(row);
+    }
+    out.write(System.lineSeparator());
+    out.flush();
   }
 
   /**
@@ -250,19 +790,21 @@ public class HeroDex {
    * 
    * @param scnr
    * @return Return specific Hero that user desires, null if not found
+   * @throws IOException
    */
-  private Hero option3(Scanner scnr) {
+  private Hero option3(Scanner scnr) throws IOException {
     boolean valid = false;
     int input = 0;
 
     System.out.println("Please choose an option below (Enter a number):\n1: Sort heroes by rating\n"
         + "2: Filter heroes by Trait\n3: Get details about a specific hero"
-        + "\n4: Get a list of heroes above a certain rating");
+        + "\n4: Get a list of heroes above a certain rating\n5: Search hero descriptions"
+        + "\n6: Rank heroes in a tournament");
     // validate correct user input
     do {
       if (scnr.hasNextInt()) {
         input = scnr.nextInt();
-        if (input > 0 && input < 5) {
+        if (input > 0 && input < 7) {
           valid = true;
         }
       }
@@ -274,21 +816,13 @@ public class HeroDex {
 
     // option 1
     if (input == 1) {
-      if (ratingQueue.size() == 1) {
+      if (ratingIndex.size() == 1) {
         System.out.println("There is " + getHeroesStored() + " hero in the HeroDex.\n");
       } else {
         System.out.println("There are " + getHeroesStored() + " heroes in the HeroDex.\n");
       }
-      // output heroes in ascending order with regard to rating
-      if (!ratingQueue.isEmpty()) {
-        while (!ratingQueue.isEmpty()) {
-          System.out.println(ratingQueue.remove().toString());
-        }
-
-        for (String heroName : names) {
-          ratingQueue.add(getHero(heroName));
-        }
-      }
+      // output heroes in descending order with regard to rating
+      printPages(scnr, token -> heroesByRating(0, token, pageSize));
 
 
     // option 2
@@ -315,9 +849,10 @@ public class HeroDex {
         }
         scnr.nextLine();
       } while (!valid1);
-      // get hash table of heroes matching the selected trait
-      HashTableMap<String, Hero> heroesWithTrait = findMatchingTrait(traitInput);
-      System.out.println(heroesWithTrait.toString());
+      // get view of heroes matching the selected trait
+      Map<String, Hero> heroesWithTrait = findMatchingTrait(traitInput);
+      Hero.Traits trait = Hero.Traits.values()[traitInput - 1];
+      printPages(scnr, token -> heroesWithTrait(trait, token, pageSize));
 
 
       if (heroesWithTrait.size() == 1) {
@@ -330,14 +865,16 @@ public class HeroDex {
       
     // option 3
     } else if (input == 3) {
-      System.out.println("Please enter hero name exactly and accurately...");
+      System.out.println("Please enter hero name...");
       String findHero = scnr.nextLine();
-      // validate user input
-      if (heroDex.containsKey(findHero)) {
-        System.out.println(getHero(findHero).toString());
-        return getHero(findHero);
+      // validate user input, ignoring case and accents
+      Hero foundHero = findHero(findHero);
+      if (foundHero != null) {
+        System.out.println(foundHero.toString());
+        return foundHero;
       } else {
         System.out.println("There is no Hero matching that name.");
+        printSuggestions(findHero);
         return null;
       }
       
@@ -360,141 +897,442 @@ public class HeroDex {
         scnr.nextLine();
       } while (!ratingValid);
 
-      int heroesFound = 0;
-      // go through all heroes stored to check which heroes have a rating matching the criteria
-      for (String name : names) {
-        Hero currentHero = heroDex.get(name);
-        if (currentHero.rating >= ratingInput) {
-          heroesFound++;
-          System.out.println(currentHero);
-        }
-      }
+      // walks the rating index down to the minimum rating, highest rating first
+      int minimumRating = ratingInput;
+      printPages(scnr, token -> heroesByRating(minimumRating, token, pageSize));
+      int heroesFound = ratingIndex.countAtLeast(ratingInput);
       if (heroesFound == 1) {
         System.out.println(heroesFound + " hero was found above " + ratingInput + " rating.\n");
       } else {
         System.out
             .println(heroesFound + " heroes were found above " + ratingInput + " rating.\n");
       }
+
+    // option 5
+    } else if (input == 5) {
+      System.out.println("Enter words to search for (word* for a prefix, \"...\" for a phrase):");
+      List<TextIndex.Hit> hits = searchDescriptions(scnr.nextLine(), 10);
+      for (TextIndex.Hit hit : hits) {
+        System.out.println(hit.hero);
+      }
+      System.out.println(hits.size() + " matching hero(es) shown, best match first.\n");
+
+    // option 6
+    } else if (input == 6) {
+      System.out.println("Choose the kind of tournament:\n1: Every hero battles every other hero"
+          + "\n2: Knockout bracket");
+      int kind = 0;
+      // validate user input
+      do {
+        if (scnr.hasNextInt()) {
+          kind = scnr.nextInt();
+        }
+        if (kind != 1 && kind != 2) {
+          System.out.println("Not a valid input, try again...");
+        }
+        scnr.nextLine();
+      } while (kind != 1 && kind != 2);
+
+      if (kind == 1) {
+        System.out.print(runTournament(Tournament.TRAIT_MATCHUPS).table(10));
+      } else {
+        List<Hero> ranking = runBracket(Tournament.TRAIT_MATCHUPS);
+        for (int i = 0; i < Math.min(10, ranking.size()); ++i) {
+          System.out.println((i + 1) + ". " + ranking.get(i).name);
+        }
+      }
+      System.out.println();
     }
     return null;
   }
 
   /**
-   * Finds all heroes matching a certain trait
+   * Lists every hero a page at a time, in hash table order. The token is a bucket position, so a
+   * hero stored for the whole listing is listed at least once even if the table grows in between
+   * pages. The last page may be empty.
    * 
-   * @param traitInput Trait to match
-   * @return Hash table containing all heroes with matching trait
+   * @param token    Null for the first page, otherwise the next token of the previous page.
+   * @param pageSize Number of heroes per page, a few more if the last bucket holds several.
+   * @return page of heroes
    */
-  private HashTableMap<String, Hero> findMatchingTrait(int traitInput) {
-    HashTableMap<String, Hero> hashTable = new HashTableMap<>();
-
-    // Goes through array list to find which Heroes possess a certain trait
-    for (String name : names) {
-      Hero hero = heroDex.get(name);
-      if (hero.traitNumber == (traitInput - 1)) {
-        hashTable.put(name, hero);
-      }
-    }
-
-    return hashTable;
+  public HeroPage listHeroes(String token, int pageSize) {
+    checkPageSize(pageSize);
+    List<Hero> heroes = new ArrayList<>(pageSize);
+    int cursor = heroDex.scan(token == null ? 0 : Integer.parseInt(token), pageSize, heroes::add);
+    return new HeroPage(heroes, cursor == 0 ? null : Integer.toString(cursor));
   }
 
   /**
-   * Deletes all data related to the HeroDex
+   * Lists the heroes with a trait a page at a time, sorted by name. The token is the name of the
+   * last hero listed.
    * 
-   * @param fileName
+   * @param trait    Trait to match.
+   * @param token    Null for the first page, otherwise the next token of the previous page.
+   * @param pageSize Number of heroes per page.
+   * @return page of heroes
    */
-  private void option4(String fileName) {
-    clearAllData(fileName);
+  public HeroPage heroesWithTrait(Hero.Traits trait, String token, int pageSize) {
+    checkPageSize(pageSize);
+    NavigableMap<String, Hero> withTrait = traitIndex.withTrait(trait);
+    return page(token == null ? withTrait.values() : withTrait.tailMap(token, false).values(),
+        pageSize, hero -> hero.name);
   }
 
   /**
-   * Helps the user compare two different Heroes based on rating
+   * Lists the heroes rated at least minimumRating a page at a time, highest rating first and by
+   * name among ties. The token is the rating and name of the last hero listed.
    * 
-   * @param scnr Instance of Scanner to use
+   * @param minimumRating Lowest rating listed.
+   * @param token         Null for the first page, otherwise the next token of the previous page.
+   * @param pageSize      Number of heroes per page.
+   * @return page of heroes
    */
-  private void option5(Scanner scnr) {
-    String firstHeroName;
-    String secondHeroName;
-    System.out.println("Please enter first hero's name:");
-    boolean valid = false;
-    // makes sure valid hero name is input
-    do {
-      firstHeroName = scnr.nextLine();
-      if (heroDex.containsKey(firstHeroName)) {
-        valid = true;
-      }
-      if (!valid) {
-        System.out.println("Not a valid input, try again...");
-      }
-
-    } while (!valid);
-
-    valid = false;
-    System.out.println("Please enter second hero's name:");
-    // makes sure valid hero name is input
-    do {
-      secondHeroName = scnr.nextLine();
-      if (heroDex.containsKey(secondHeroName) && !secondHeroName.equals(firstHeroName)) {
-        valid = true;
+  public HeroPage heroesByRating(int minimumRating, String token, int pageSize) {
+    checkPageSize(pageSize);
+    Iterable<Hero> heroes = ratingIndex.atLeast(minimumRating);
+    if (token != null) {
+      int colon = token.indexOf(':');
+      if (colon < 0) {
+        throw new IllegalArgumentException("Not a page token: " + token);
       }
-      if (!valid) {
-        System.out.println("Not a valid input, try again...");
-      }
-
-    } while (!valid);
-
-    // outputs result of comparison
-    if (getHero(firstHeroName).compareTo(getHero(secondHeroName)) < 0) {
-      System.out.println(firstHeroName + " would win this battle!");
-    } else if (getHero(firstHeroName).compareTo(getHero(secondHeroName)) > 0) {
-      System.out.println(secondHeroName + " would win this battle!");
-
-    } else {
-      System.out.println("This battle would be a tie!");
+      heroes = ratingIndex.after(Integer.parseInt(token.substring(0, colon)),
+          token.substring(colon + 1), minimumRating);
     }
-
-    System.out.println(firstHeroName + " has a rating of " + getHero(firstHeroName).rating);
-    System.out
-        .println(secondHeroName + " has a rating of " + getHero(secondHeroName).rating + "\n");
+    return page(heroes, pageSize, hero -> hero.rating + ":" + hero.name);
   }
 
   /**
-   * Returns hero matching a certain name
+   * Takes the first heroes of a listing as a page
    * 
-   * @param name User input name
-   * @return
+   * @param heroes   Listing, starting at the first hero of the page.
+   * @param pageSize Number of heroes per page.
+   * @param token    Turns the last hero of the page into the token of the next page.
+   * @return page of heroes
    */
-  public Hero getHero(String name) {
-    return heroDex.get(name);
+  private static HeroPage page(Iterable<Hero> heroes, int pageSize,
+      Function<Hero, String> token) {
+    List<Hero> page = new ArrayList<>(pageSize);
+    Iterator<Hero> iterator = heroes.iterator();
+    while (page.size() < pageSize && iterator.hasNext()) {
+      page.add(iterator.next());
+    }
+    return new HeroPage(page, iterator.hasNext() ? token.apply(page.get(page.size() - 1)) : null);
   }
 
   /**
-   * Returns number of heroes stored in the HeroDex hash table
-   * 
-   * @return Number of heroes stored
+   * @param pageSize Number of heroes per page.
+   * @throws IllegalArgumentException if pageSize is not positive
    */
-  public int getHeroesStored() {
-    return heroDex.size();
+  private static void checkPageSize(int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+    }
   }
 
   /**
-   * Deletes associated hash table, priority queue, and ArrayList
+   * Returns every hero ordered by rating, read from the rating index without changing it
+   * 
+   * @return List of heroes, highest rating first
    */
-  private void clearHeroDex() {
-    heroDex.clear();
-    ratingQueue.clear();
-    names.clear();
+  List<Hero> sortHeroesByRating() {
+    List<Hero> sorted = new ArrayList<>(ratingIndex.size());
+    ratingIndex.forEach(sorted::add);
+    return sorted;
   }
 
   /**
-   * Deletes all data including text file database
+   * Returns the heroes matching a query, for example every Speed or Stealth hero rated 80 or
+   * more whose name starts with "S", sorted by rating:
    * 
-   * @param fileName
+   * <pre>
+   * query(HeroQuery.and(HeroQuery.or(HeroQuery.trait(Speed), HeroQuery.trait(Stealth)),
+   *     HeroQuery.ratingAtLeast(80), HeroQuery.namePrefix("S")), HeroQuery.BY_RATING, 10)
+   * </pre>
+   * 
+   * The result is cached until a hero the query can match is added or removed. Orders are
+   * compared by identity, so a constant such as HeroQuery.BY_RATING shares cached results.
+   * 
+   * @param where Filter to apply.
+   * @param order Order of the results, null for no particular order.
+   * @param limit Maximum number of results.
+   * @return read-only list of matching heroes
+   */
+  public List<Hero> query(HeroQuery where, Comparator<? super Hero> order, int limit) {
+    return queryCache.get(Arrays.asList("query", where.key, order, limit), where.footprint(),
+        () -> Collections.unmodifiableList(where.run(queryIndex, order, limit)));
+  }
+
+  /**
+   * Counts the heroes matching a query
+   * 
+   * @param where Filter to apply.
+   * @return number of matching heroes
+   */
+  public int count(HeroQuery where) {
+    return queryCache.get(Arrays.asList("count", where.key), where.footprint(),
+        () -> where.evaluate(queryIndex).cardinality());
+  }
+
+  /**
+   * Searches the hero descriptions for words, word prefixes ending in '*' and phrases in double
+   * quotes, all of which have to match. After a file was loaded, the first search builds the text
+   * index.
+   * 
+   * @param search Words, prefixes and phrases to find.
+   * @param limit  Maximum number of results.
+   * @return read-only list of matching heroes with their scores, most relevant first
+   */
+  public List<TextIndex.Hit> searchDescriptions(String search, int limit) {
+    return queryCache.get(Arrays.asList("search", search, limit), QueryCache.everything(),
+        () -> Collections.unmodifiableList(textIndex().search(search, limit)));
+  }
+
+  /**
+   * Returns the text index, adding every hero first if a file was loaded since it was last used
+   * 
+   * @return up to date text index
+   */
+  private TextIndex textIndex() {
+    if (textIndexStale) {
+      textIndex.clear();
+      textIndex.addAll(heroDex.values());
+      textIndexStale = false;
+    }
+    return textIndex;
+  }
+
+  /**
+   * Builds the indexes that are otherwise built on first use, so that later lookups only read
+   * the HeroDex and can run on several threads at once
+   */
+  void buildIndexes() {
+    textIndex();
+    names();
+  }
+
+  /**
+   * Returns the name trie, adding every hero first if a file was loaded since it was last used
+   * 
+   * @return up to date name trie
+   */
+  private NameTrie names() {
+    if (namesStale) {
+      names.clear();
+      heroDex.values().forEach(names::add);
+      namesStale = false;
+    }
+    return names;
+  }
+
+  /**
+   * Finds a hero by name. A name that is not stored exactly is looked up again ignoring case and
+   * accents, and is only found if it then matches a single hero.
+   * 
+   * @param name Name of the hero, as typed by the user.
+   * @return matching hero, null if there is none or more than one
+   */
+  public Hero findHero(String name) {
+    Hero hero = getHero(name);
+    if (hero != null) {
+      return hero;
+    }
+    List<Hero> matches = names().find(name);
+    return matches.size() == 1 ? matches.get(0) : null;
+  }
+
+  /**
+   * Suggests heroes for a name that was not found: the best rated heroes whose name starts with
+   * it, then the heroes whose name is one edit away, or two for longer names
+   * 
+   * @param name  Name typed by the user.
+   * @param limit Maximum number of suggestions.
+   * @return suggested heroes, best suggestion first
+   */
+  public List<Hero> suggestHeroes(String name, int limit) {
+    Set<Hero> suggestions = new LinkedHashSet<>(names().complete(name, limit));
+    for (Hero hero : names().suggest(name, name.length() > 5 ? 2 : 1, limit)) {
+      if (suggestions.size() < limit) {
+        suggestions.add(hero);
+      }
+    }
+    return new ArrayList<>(suggestions);
+  }
+
+  /**
+   * Prints the suggestions for a name that was not found, if there are any
+   * 
+   * @param name Name typed by the user.
+   */
+  private void printSuggestions(String name) {
+    List<Hero> suggestions = suggestHeroes(name, 5);
+    if (!suggestions.isEmpty()) {
+      StringJoiner names = new StringJoiner(", ", "Did you mean: ", "?");
+      for (Hero hero : suggestions) {
+        names.add(hero.name);
+      }
+      System.out.println(names);
+    }
+  }
+
+  /**
+   * Battles every hero against every other hero
+   * 
+   * @param scorer Decides each battle, for example Tournament.TRAIT_MATCHUPS.
+   * @return wins, losses and ties of every hero
+   */
+  public Tournament.Result runTournament(Tournament.BattleScorer scorer) {
+    return new Tournament(scorer).allPairs(heroDex.values());
+  }
+
+  /**
+   * Runs a knockout bracket between every hero
+   * 
+   * @param scorer Decides each battle, for example Tournament.TRAIT_MATCHUPS.
+   * @return heroes by the round they went out in, champion first
+   */
+  public List<Hero> runBracket(Tournament.BattleScorer scorer) {
+    return new Tournament(scorer).bracket(heroDex.values());
+  }
+
+  /**
+   * Finds all heroes matching a certain trait, read from the trait index
+   * 
+   * @param traitInput Trait to match, numbered from 1 as in the menu
+   * @return Read-only view of the heroes with matching trait, keyed and sorted by name
+   */
+  Map<String, Hero> findMatchingTrait(int traitInput) {
+    return traitIndex.withTrait(Hero.Traits.values()[traitInput - 1]);
+  }
+
+  /**
+   * Deletes all data related to the HeroDex
+   * 
+   * @param fileName
+   * @throws IOException
+   */
+  private void option4(String fileName) throws IOException {
+    clearAllData(fileName);
+  }
+
+  /**
+   * Helps the user compare two different Heroes based on rating
+   * 
+   * @param scnr Instance of Scanner to use
+   */
+  private void option5(Scanner scnr) {
+    String firstHeroName;
+    String secondHeroName;
+    Hero firstHero;
+    Hero secondHero;
+    System.out.println("Please enter first hero's name:");
+    boolean valid = false;
+    // makes sure valid hero name is input
+    do {
+      firstHeroName = scnr.nextLine();
+      firstHero = findHero(firstHeroName);
+      if (firstHero != null) {
+        valid = true;
+      }
+      if (!valid) {
+        System.out.println("Not a valid input, try again...");
+        printSuggestions(firstHeroName);
+      }
+
+    } while (!valid);
+
+    valid = false;
+    System.out.println("Please enter second hero's name:");
+    // makes sure valid hero name is input
+    do {
+      secondHeroName = scnr.nextLine();
+      secondHero = findHero(secondHeroName);
+      if (secondHero != null && secondHero != firstHero) {
+        valid = true;
+      }
+      if (!valid) {
+        System.out.println("Not a valid input, try again...");
+        if (secondHero == null) {
+          printSuggestions(secondHeroName);
+        }
+      }
+
+    } while (!valid);
+
+    // outputs result of comparison
+    int result = firstHero.compareTo(secondHero);
+    if (result < 0) {
+      System.out.println(firstHero.name + " would win this battle!");
+    } else if (result > 0) {
+      System.out.println(secondHero.name + " would win this battle!");
+
+    } else {
+      System.out.println("This battle would be a tie!");
+    }
+
+    System.out.println(firstHero.name + " has a rating of " + firstHero.rating);
+    System.out
+        .println(secondHero.name + " has a rating of " + secondHero.rating + "\n");
+  }
+
+  /**
+   * Returns hero matching a certain name
+   * 
+   * @param name User input name
+   * @return Hero with that name, null if there is none
    */
-  private void clearAllData(String fileName) {
+  public Hero getHero(String name) {
+    return heroDex.getOrDefault(name, null);
+  }
+
+  /**
+   * Returns number of heroes stored in the HeroDex hash table
+   * 
+   * @return Number of heroes stored
+   */
+  public int getHeroesStored() {
+    return heroDex.size();
+  }
+
+  /**
+   * Deletes associated hash table and priority queue
+   */
+  private void clearHeroDex() {
+    heroDex.clear();
+    ratingIndex.clear();
+    traitIndex.clear();
+    queryIndex.clear();
+    textIndex.clear();
+    textIndexStale = false;
+    names.clear();
+    namesStale = false;
+    queryCache.clear();
+  }
+
+  /**
+   * Deletes every hero, with the text file and its write-ahead log if a file is loaded
+   * 
+   * @throws IOException if the log cannot be closed
+   */
+  void deleteAllHeroes() throws IOException {
+    if (fileName != null) {
+      clearAllData(fileName);
+    } else {
+      clearHeroDex();
+    }
+  }
+
+  /**
+   * Deletes all data including text file database and its write-ahead log
+   * 
+   * @param fileName
+   * @throws IOException if the log cannot be closed
+   */
+  private void clearAllData(String fileName) throws IOException {
+    closeLog();
     File file = new File(fileName);
     file.delete();
+    new File(fileName + HeroLog.EXTENSION).delete();
+    baseRecords = 0;
     clearHeroDex();
   }
 
@@ -527,9 +1365,9 @@ public class HeroDex {
    * Test to check if Hero is correctly added into the HeroDex hash table and checks if HeroDex is
    * correctly cleared of all data.
    * 
-   * @throws FileNotFoundException
+   * @throws IOException
    */
-  public void jUnitTest2() throws FileNotFoundException {
+  public void jUnitTest2() throws IOException {
     System.out.println("Start of Test 2\n---------------");
 
     HeroDex heroDex = new HeroDex();
@@ -546,16 +1384,16 @@ public class HeroDex {
 
     assertEquals(true, heroDex.heroDex.containsKey("Test man"));
 
-    assertEquals(heroDex.names.get(0), "Test man");
+    assertEquals(heroDex.heroDex.values().iterator().next().name, "Test man");
 
-    assertEquals(heroDex.ratingQueue.remove().name, "Test man");
+    assertEquals(heroDex.ratingIndex.first().name, "Test man");
 
     heroDex.clearAllData("testFile.txt");
 
     assertEquals(new File("testFile.txt").exists(), false);
     assertEquals(heroDex.heroDex.size(), 0);
-    assertEquals(heroDex.names.isEmpty(), true);
-    assertEquals(heroDex.ratingQueue.isEmpty(), true);
+    assertEquals(heroDex.heroDex.values().isEmpty(), true);
+    assertEquals(heroDex.ratingIndex.isEmpty(), true);
 
     System.out.println("End of Test 2\n---------------\n");
   }
@@ -590,7 +1428,7 @@ public class HeroDex {
     System.out.println("Start of Test 4\n---------------");
 
     HeroDex heroDex = new HeroDex();
-    HashTableMap<String, Hero> traitTable = null;
+    Map<String, Hero> traitTable = null;
     try {
       heroDex.initializeHeroDex("testFile2.txt");
       traitTable = heroDex.findMatchingTrait(1);
@@ -633,6 +1471,1221 @@ public class HeroDex {
     System.out.println("End of Test 5\n---------------\n");
   }
 
+  @Test
+  /**
+   * Checks that the open addressing map stores, finds and removes keys correctly across resizes
+   */
+  public void jUnitTest6() {
+    System.out.println("Start of Test 6\n---------------");
+
+    OpenAddressingHashTableMap<String, Integer> map = new OpenAddressingHashTableMap<>(4);
+    for (int i = 0; i < 1000; ++i) {
+      assertEquals(map.put("hero" + i, i), true);
+    }
+    assertEquals(map.put("hero5", 5), false);
+    assertEquals(map.size(), 1000);
+
+    for (int i = 0; i < 1000; i += 2) {
+      assertEquals(map.remove("hero" + i), Integer.valueOf(i));
+    }
+    assertEquals(map.size(), 500);
+    for (int i = 0; i < 1000; ++i) {
+      assertEquals(map.containsKey("hero" + i), i % 2 == 1);
+    }
+    assertEquals(map.get("hero999"), Integer.valueOf(999));
+    assertEquals(map.remove("hero0"), null);
+
+    System.out.println("End of Test 6\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that an incremental rehash keeps every hero reachable while both tables are live and
+   * that the rehash drains over the following operations
+   */
+  public void jUnitTest7() {
+    System.out.println("Start of Test 7\n---------------");
+
+    HashTableMap<String, Integer> map = new HashTableMap<>(8, 0.75, 4.0, true);
+    for (int i = 0; i < 5; ++i) {
+      map.put("hero" + i, i);
+    }
+    // crosses the threshold and starts a rehash that only moves a few buckets per operation
+    map.put("hero5", 5);
+    assertEquals(map.isRehashing(), true);
+    for (int i = 0; i < 6; ++i) {
+      assertEquals(map.containsKey("hero" + i), true);
+    }
+    map.put("hero6", 6);
+    assertEquals(map.isRehashing(), true);
+    assertEquals(map.remove("hero3"), Integer.valueOf(3));
+    assertEquals(map.put("hero7", 7), true);
+    assertEquals(map.get("hero6"), Integer.valueOf(6));
+    assertEquals(map.isRehashing(), false);
+    assertEquals(map.size(), 7);
+    assertEquals(map.containsKey("hero3"), false);
+
+    System.out.println("End of Test 7\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that concurrent writers on the concurrent map never lose an add and that exactly one
+   * writer wins each contested putIfAbsent
+   */
+  public void jUnitTest8() throws InterruptedException {
+    System.out.println("Start of Test 8\n---------------");
+
+    ConcurrentHashTableMap<String, Integer> map = new ConcurrentHashTableMap<>(4, 4);
+    AtomicInteger winners = new AtomicInteger();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; ++t) {
+      int offset = t;
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 2000; ++i) {
+          map.put("hero" + offset + "-" + i, i);
+          if (map.putIfAbsent("shared" + i, offset) == null) {
+            winners.incrementAndGet();
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(map.size(), 10000);
+    assertEquals(winners.get(), 2000);
+    assertEquals(map.get("hero3-1999"), Integer.valueOf(1999));
+    assertEquals(map.remove("hero0-0"), Integer.valueOf(0));
+    assertEquals(map.containsKey("hero0-0"), false);
+    assertEquals(map.computeIfAbsent("shared0", key -> -1).intValue() >= 0, true);
+
+    System.out.println("End of Test 8\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks the compound operations give the same results on every MapADT implementation
+   */
+  public void jUnitTest9() {
+    System.out.println("Start of Test 9\n---------------");
+
+    List<MapADT<String, Integer>> maps = new ArrayList<>();
+    maps.add(new HashTableMap<>(2, 0.85, 2.0, true));
+    maps.add(new OpenAddressingHashTableMap<>());
+    maps.add(new ConcurrentHashTableMap<>());
+    for (MapADT<String, Integer> map : maps) {
+      assertEquals(map.getOrDefault("Batman", -1), Integer.valueOf(-1));
+      assertEquals(map.putIfAbsent("Batman", 96), null);
+      assertEquals(map.putIfAbsent("Batman", 10), Integer.valueOf(96));
+      assertEquals(map.replace("Batman", 97), Integer.valueOf(96));
+      assertEquals(map.replace("Robin", 50), null);
+      assertEquals(map.computeIfAbsent("Robin", key -> 60), Integer.valueOf(60));
+      assertEquals(map.compute("Robin", (key, value) -> value + 1), Integer.valueOf(61));
+      assertEquals(map.merge("Robin", 9, Integer::sum), Integer.valueOf(70));
+      assertEquals(map.merge("Joker", 5, Integer::sum), Integer.valueOf(5));
+      assertEquals(map.compute("Joker", (key, value) -> null), null);
+      assertEquals(map.containsKey("Joker"), false);
+      assertEquals(map.size(), 2);
+      assertEquals(map.getOrDefault("Batman", -1), Integer.valueOf(97));
+    }
+
+    System.out.println("End of Test 9\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that names with colliding hash codes, including one hashing to Integer.MIN_VALUE, are
+   * stored and removed correctly once their bucket is converted to a tree
+   */
+  public void jUnitTest10() {
+    System.out.println("Start of Test 10\n---------------");
+
+    // "Aa" and "BB" have the same hash code, so every combination of them collides
+    List<String> colliding = new ArrayList<>();
+    colliding.add("");
+    for (int i = 0; i < 6; ++i) {
+      List<String> longer = new ArrayList<>();
+      for (String prefix : colliding) {
+        longer.add(prefix + "Aa");
+        longer.add(prefix + "BB");
+      }
+      colliding = longer;
+    }
+
+    HashTableMap<String, Integer> map = new HashTableMap<>();
+    for (int i = 0; i < colliding.size(); ++i) {
+      assertEquals(map.put(colliding.get(i), i), true);
+    }
+    assertEquals(map.put("polygenelubricants", -1), true);
+    assertEquals(map.size(), 65);
+    assertEquals(map.get("polygenelubricants"), Integer.valueOf(-1));
+
+    for (int i = 0; i < colliding.size(); i += 2) {
+      assertEquals(map.remove(colliding.get(i)), Integer.valueOf(i));
+    }
+    for (int i = 0; i < colliding.size(); ++i) {
+      assertEquals(map.containsKey(colliding.get(i)), i % 2 == 1);
+    }
+    assertEquals(map.size(), 33);
+
+    System.out.println("End of Test 10\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that entrySet, values, forEach and parallel streams each see every hero exactly once
+   */
+  public void jUnitTest11() {
+    System.out.println("Start of Test 11\n---------------");
+
+    HashTableMap<String, Integer> map = new HashTableMap<>(4, 0.85, 2.0, true);
+    for (int i = 0; i < 5000; ++i) {
+      map.put("hero" + i, i);
+    }
+    long expected = 4999L * 5000 / 2;
+
+    long entrySum = 0;
+    for (Map.Entry<String, Integer> entry : map.entrySet()) {
+      assertEquals(entry.getKey(), "hero" + entry.getValue());
+      entrySum += entry.getValue();
+    }
+    long[] forEachSum = new long[1];
+    map.forEach((name, value) -> forEachSum[0] += value);
+
+    assertEquals(entrySum, expected);
+    assertEquals(forEachSum[0], expected);
+    assertEquals(map.values().parallelStream().mapToLong(Integer::longValue).sum(), expected);
+    assertEquals(map.entrySet().parallelStream().map(Map.Entry::getKey).distinct().count(), 5000);
+
+    System.out.println("End of Test 11\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that streaming heroes through writeTo produces the same listing as toString
+   */
+  public void jUnitTest12() throws IOException {
+    System.out.println("Start of Test 12\n---------------");
+
+    HeroDex heroDex = new HeroDex();
+    heroDex.initializeHeroDex("testFile2.txt");
+    StringBuilder listing = new StringBuilder();
+    heroDex.heroDex.writeTo(listing, Hero::appendTo);
+
+    assertEquals(listing.toString(), heroDex.heroDex.toString());
+    Hero superman = heroDex.getHero("Superman");
+    assertEquals(superman.appendTo(new StringBuilder(">")).toString(), ">" + superman);
+
+    System.out.println("End of Test 12\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that stats() reports resizes, tree buckets and counted lookups
+   */
+  public void jUnitTest13() {
+    System.out.println("Start of Test 13\n---------------");
+
+    HashTableMap<String, Integer> map = new HashTableMap<>(4);
+    map.setLookupCountingEnabled(true);
+    // "Aa" and "BB" collide, so these eight keys share one bucket
+    String[] colliding = {"AaAaAa", "AaAaBB", "AaBBAa", "AaBBBB", "BBAaAa", "BBAaBB", "BBBBAa",
+        "BBBBBB"};
+    for (int i = 0; i < colliding.length; ++i) {
+      map.put(colliding[i], i);
+    }
+    map.putIfAbsent("AaAaAa", 9);
+    // adds are not lookups, new keys must not count as misses
+    assertEquals(map.stats().getHits(), 0);
+    assertEquals(map.stats().getMisses(), 0);
+    map.get("BBBBBB");
+    map.resetLookupCounters();
+    map.get("AaAaAa");
+    map.containsKey("Batman");
+    map.containsKey("BBBBBB");
+
+    HashTableStats stats = map.stats();
+    assertEquals(stats.getSize(), 8);
+    assertEquals(stats.getCapacity(), 16);
+    assertEquals(stats.getResizeCount(), 2);
+    assertEquals(stats.getTreeBuckets(), 1);
+    assertEquals(stats.getLongestChain(), 8);
+    assertEquals(stats.getOccupiedBuckets(), 1);
+    assertEquals(stats.getChainLengthHistogram()[0], 15);
+    assertEquals(stats.getHits(), 2);
+    assertEquals(stats.getMisses(), 1);
+
+    System.out.println("End of Test 13\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that a text file converted to a binary snapshot loads back the same heroes and that a
+   * truncated snapshot is rejected
+   */
+  public void jUnitTest14() throws IOException {
+    System.out.println("Start of Test 14\n---------------");
+
+    File snapshotFile = File.createTempFile("heroDexSnapshot", ".hdx");
+    snapshotFile.deleteOnExit();
+    assertEquals(HeroSnapshot.convert("testFile2.txt", snapshotFile.getPath()), 9);
+
+    HeroDex heroDex = new HeroDex();
+    heroDex.initializeHeroDexFromSnapshot(snapshotFile.getPath());
+    assertEquals(heroDex.getHeroesStored(), 9);
+    assertEquals(heroDex.getHero("Superman").rating, 54);
+    assertEquals(heroDex.getHero("Normal man").description,
+        "Just an ordinary Human, nothing too special here.");
+    assertEquals(heroDex.ratingIndex.size(), 9);
+
+    // cuts the last hero in half
+    try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+      file.setLength(file.length() - 5);
+    }
+    boolean rejected = false;
+    try {
+      new HeroDex().initializeHeroDexFromSnapshot(snapshotFile.getPath());
+    } catch (IOException e) {
+      rejected = true;
+    }
+    assertEquals(rejected, true);
+
+    System.out.println("End of Test 14\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that the parallel loader reads the same heroes as initializeHeroDex, including records
+   * that straddle chunk borders, Windows line breaks and a missing final line break
+   */
+  public void jUnitTest15() throws IOException {
+    System.out.println("Start of Test 15\n---------------");
+
+    HeroDex sequential = new HeroDex();
+    sequential.initializeHeroDex("testFile2.txt");
+    List<String> messages = Collections.synchronizedList(new ArrayList<>());
+    HeroDex parallel = new HeroDex();
+    parallel.initializeHeroDexParallel("testFile2.txt", messages::add);
+    assertEquals(parallel.getHeroesStored(), sequential.getHeroesStored());
+    assertEquals(parallel.heroDex.toString(), sequential.heroDex.toString());
+    assertEquals(parallel.ratingIndex.size(), 9);
+    assertEquals(messages.get(messages.size() - 1).startsWith("merge: 9 heroes"), true);
+
+    File textFile = File.createTempFile("heroDexParallel", ".txt");
+    textFile.deleteOnExit();
+    try (Writer writer = new FileWriter(textFile)) {
+      for (int i = 0; i < 500; ++i) {
+        writer.write("Hero " + i + "\r\nNumber " + i + "\r\n" + i % 5 + "\r\n" + (50 + i % 50));
+        if (i < 499) {
+          writer.write("\r\n");
+        }
+      }
+    }
+    // small chunks so most records cross a chunk border
+    ParallelHeroLoader loader =
+        new ParallelHeroLoader(ForkJoinPool.commonPool(), 7, message -> {});
+    List<Hero> heroes = new ArrayList<>();
+    for (List<Hero> chunk : loader.parse(textFile.getPath())) {
+      heroes.addAll(chunk);
+    }
+    assertEquals(heroes.size(), 500);
+    assertEquals(heroes.get(0).name, "Hero 0");
+    assertEquals(heroes.get(499).name, "Hero 499");
+    assertEquals(heroes.get(123).description, "Number 123");
+    assertEquals(heroes.get(123).trait(), Hero.Traits.Stealth);
+    assertEquals(heroes.get(499).rating, 99);
+
+    System.out.println("End of Test 15\n---------------\n");
+  }
+
+  /**
+   * Returns a log replay that describes every record it receives, for the log tests
+   * 
+   * @param events list that receives "add name", "update name" or "remove name" per record
+   * @return replay filling events
+   */
+  private static HeroLog.Replay recordTo(List<String> events) {
+    return new HeroLog.Replay() {
+      public void add(Hero hero) {
+        events.add("add " + hero.name);
+      }
+
+      public void update(Hero hero) {
+        events.add("update " + hero.name);
+      }
+
+      public void remove(String name) {
+        events.add("remove " + name);
+      }
+    };
+  }
+
+  @Test
+  /**
+   * Checks that heroes appended to the write-ahead log are replayed on load, that a torn record at
+   * the end of the log is cut off, and that a group is committed once its window runs out
+   */
+  public void jUnitTest16() throws IOException, InterruptedException {
+    System.out.println("Start of Test 16\n---------------");
+
+    File textFile = File.createTempFile("heroDexLog", ".txt");
+    File logFile = new File(textFile.getPath() + HeroLog.EXTENSION);
+    textFile.deleteOnExit();
+    logFile.deleteOnExit();
+    try (HeroLog log = HeroLog.open(logFile.getPath(), 2, 1000, recordTo(new ArrayList<>()))) {
+      log.append(new Hero("Flash", "Fastest man alive", Hero.Traits.Speed, 90));
+      log.append(new Hero("Batman", "World's greatest detective", Hero.Traits.Intelligence, 85));
+      // commits the first group, the third hero waits in the buffer until close()
+      assertEquals(log.getCommittedRecords(), 2);
+      log.append(new Hero("Zatanna", "Backwards spells", Hero.Traits.Magic, 70));
+      assertEquals(log.getCommittedRecords(), 2);
+    }
+    long intactLength = logFile.length();
+    // a record cut short by a crash
+    try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+      file.seek(intactLength);
+      file.writeInt(40);
+      file.writeInt(12345);
+      file.write(new byte[] {HeroLog.ADD, 0, 0});
+    }
+
+    HeroDex heroDex = new HeroDex();
+    heroDex.initializeHeroDex(textFile.getPath());
+    assertEquals(heroDex.getHeroesStored(), 3);
+    assertEquals(heroDex.getHero("Batman").rating, 85);
+    assertEquals(heroDex.ratingIndex.first().name, "Flash");
+    assertEquals(logFile.length(), intactLength);
+    heroDex.closeLog();
+
+    List<String> replayed = new ArrayList<>();
+    try (HeroLog log = HeroLog.open(logFile.getPath(), 100, 5, recordTo(replayed))) {
+      assertEquals(replayed, Arrays.asList("add Flash", "add Batman", "add Zatanna"));
+      log.append(new Hero("Robin", "Sidekick", Hero.Traits.Stealth, 60));
+      // the group window commits the record without another append, however busy the machine
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (log.getCommittedRecords() < 4 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(log.getCommittedRecords(), 4);
+    }
+
+    System.out.println("End of Test 16\n---------------\n");
+  }
+
+  /**
+   * Counts the lines of a text file, for the compaction test
+   * 
+   * @param file file to read
+   * @return number of lines
+   * @throws IOException if the file cannot be read
+   */
+  private static int countLines(File file) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+      return (int) reader.lines().count();
+    }
+  }
+
+  @Test
+  /**
+   * Checks that deletes and updates survive a reload through the write-ahead log and that
+   * compaction rewrites the text file down to the live heroes and empties the log
+   */
+  public void jUnitTest17() throws IOException {
+    System.out.println("Start of Test 17\n---------------");
+
+    File textFile = File.createTempFile("heroDexCompact", ".txt");
+    File logFile = new File(textFile.getPath() + HeroLog.EXTENSION);
+    textFile.deleteOnExit();
+    logFile.deleteOnExit();
+    List<Hero> heroes = new ArrayList<>();
+    for (int i = 0; i < 10; ++i) {
+      heroes.add(new Hero("Hero " + i, "Hero number " + i, Hero.Traits.Speed, 50 + i));
+    }
+    writeTextFile(textFile.getPath(), heroes);
+
+    HeroDex heroDex = new HeroDex();
+    heroDex.initializeHeroDex(textFile.getPath());
+    heroDex.removeHero("Hero 3");
+    heroDex.updateHero(new Hero("Hero 4", "Updated hero", Hero.Traits.Magic, 99));
+    assertEquals(heroDex.removeHero("Nobody"), null);
+    heroDex.closeLog();
+
+    HeroDex reloaded = new HeroDex();
+    reloaded.initializeHeroDex(textFile.getPath());
+    assertEquals(reloaded.getHeroesStored(), 9);
+    assertEquals(reloaded.getHero("Hero 3"), null);
+    assertEquals(reloaded.getHero("Hero 4").description, "Updated hero");
+    assertEquals(reloaded.ratingIndex.first().name, "Hero 4");
+
+    // deleting Hero 6 leaves 7 of 14 stored records live, which starts a compaction
+    reloaded.compactionMinRecords = 4;
+    for (int i = 5; i < 9; ++i) {
+      reloaded.removeHero("Hero " + i);
+    }
+    reloaded.closeLog();
+    assertEquals(countLines(textFile), 7 * 4);
+
+    reloaded.compactLog();
+    reloaded.closeLog();
+    assertEquals(logFile.length(), HeroLog.HEADER_SIZE);
+    assertEquals(countLines(textFile), 5 * 4);
+
+    HeroDex compacted = new HeroDex();
+    compacted.initializeHeroDex(textFile.getPath());
+    assertEquals(compacted.getHeroesStored(), 5);
+    assertEquals(compacted.getHero("Hero 4").rating, 99);
+    assertEquals(compacted.getHero("Hero 9") != null, true);
+    compacted.closeLog();
+
+    System.out.println("End of Test 17\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that heroes imported from CSV and JSON lines keep their given fields, get generated
+   * ones otherwise, skip duplicate names, and reach the write-ahead log
+   */
+  public void jUnitTest18() throws IOException {
+    System.out.println("Start of Test 18\n---------------");
+
+    File textFile = File.createTempFile("heroDexImport", ".txt");
+    File logFile = new File(textFile.getPath() + HeroLog.EXTENSION);
+    File csvFile = File.createTempFile("heroDexImport", ".csv");
+    File jsonFile = File.createTempFile("heroDexImport", ".jsonl");
+    textFile.deleteOnExit();
+    logFile.deleteOnExit();
+    csvFile.deleteOnExit();
+    jsonFile.deleteOnExit();
+    try (Writer writer = new FileWriter(csvFile)) {
+      writer.write("name,description,trait,rating\n");
+      writer.write("Flash,\"Fastest man alive, by far\",Speed,90\n");
+      writer.write("Batman,World's greatest detective,1,\n");
+      writer.write("Flash,Duplicate in the same batch,Magic,60\n");
+      writer.write("Superman,Already stored,Strength,50\n");
+    }
+    try (Writer writer = new FileWriter(jsonFile)) {
+      writer.write("{\"name\": \"Zatanna\", \"description\": \"Says \\\"sdrawkcab\\\"\", "
+          + "\"trait\": \"magic\", \"rating\": 70}\n");
+      writer.write("{\"name\": \"Robin\", \"description\": \"Sidekick\", \"trait\": null}\n");
+    }
+
+    HeroDex heroDex = new HeroDex();
+    heroDex.initializeHeroDex(textFile.getPath());
+    heroDex.addHeroes(Arrays.asList(new HeroSpec("Superman", "Man of steel")));
+    assertEquals(heroDex.importHeroes(csvFile.getPath()), 2);
+    assertEquals(heroDex.importHeroes(jsonFile.getPath()), 2);
+    assertEquals(heroDex.getHeroesStored(), 5);
+    assertEquals(heroDex.getHero("Flash").description, "Fastest man alive, by far");
+    assertEquals(heroDex.getHero("Batman").trait(), Hero.Traits.Intelligence);
+    assertEquals(heroDex.getHero("Batman").rating >= 50 && heroDex.getHero("Batman").rating < 100,
+        true);
+    assertEquals(heroDex.getHero("Zatanna").description, "Says \"sdrawkcab\"");
+    assertEquals(heroDex.getHero("Zatanna").trait(), Hero.Traits.Magic);
+    assertEquals(heroDex.ratingIndex.size(), 5);
+    heroDex.closeLog();
+
+    HeroDex reloaded = new HeroDex();
+    reloaded.initializeHeroDex(textFile.getPath());
+    assertEquals(reloaded.getHeroesStored(), 5);
+    assertEquals(reloaded.getHero("Robin").description, "Sidekick");
+    reloaded.closeLog();
+
+    boolean rejected = false;
+    try {
+      HeroSpec.readCsv(new BufferedReader(new StringReader("Joker,Villain,Chaos,80\n")));
+    } catch (IOException e) {
+      rejected = true;
+    }
+    assertEquals(rejected, true);
+
+    System.out.println("End of Test 18\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that HeroBuilder reads the trait from its Scanner and generates a rating, and that
+   * heroes with equal descriptions share one String
+   */
+  public void jUnitTest19() {
+    System.out.println("Start of Test 19\n---------------");
+
+    Hero built = new HeroBuilder(new Scanner("7\n3\n")).build("Flash", "Fastest man alive");
+    assertEquals(built.trait(), Hero.Traits.Speed);
+    assertEquals(built.traitNumber, 2);
+    assertEquals(built.rating >= 50 && built.rating < 100, true);
+
+    String description = "A hero like many others";
+    Hero first = new Hero("First", new String(description), Hero.Traits.Magic, 60);
+    Hero second = new Hero("Second", new String(description), Hero.Traits.Stealth, 70);
+    assertEquals(first.description == second.description, true);
+    assertEquals(second.trait(), Hero.Traits.Stealth);
+    assertEquals(second.rating, 70);
+
+    System.out.println("End of Test 19\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that the rating index lists heroes by rating without being drained, answers top-k,
+   * rank and minimum rating queries, and stays correct across removes
+   */
+  public void jUnitTest20() throws IOException {
+    System.out.println("Start of Test 20\n---------------");
+
+    HeroDex heroDex = new HeroDex();
+    heroDex.initializeHeroDex("testFile2.txt");
+    List<Hero> sorted = heroDex.sortHeroesByRating();
+    assertEquals(sorted.size(), 9);
+    for (int i = 1; i < sorted.size(); ++i) {
+      assertEquals(sorted.get(i - 1).rating >= sorted.get(i).rating, true);
+    }
+    // listing again returns the same order since nothing was drained
+    assertEquals(heroDex.sortHeroesByRating(), sorted);
+    assertEquals(heroDex.ratingIndex.topK(3), sorted.subList(0, 3));
+    assertEquals(heroDex.ratingIndex.topK(20).size(), 9);
+
+    RatingIndex index = new RatingIndex();
+    index.add(new Hero("Flash", "Fast", Hero.Traits.Speed, 90));
+    index.add(new Hero("Batman", "Smart", Hero.Traits.Intelligence, 85));
+    Hero robin = new Hero("Robin", "Sidekick", Hero.Traits.Stealth, 85);
+    index.add(robin);
+    index.add(new Hero("Alfred", "Butler", Hero.Traits.Intelligence, 50));
+    assertEquals(index.first().name, "Flash");
+    assertEquals(index.rank(90), 1);
+    assertEquals(index.rank(85), 2);
+    assertEquals(index.rank(60), 4);
+    assertEquals(index.countAtLeast(85), 3);
+    List<String> names = new ArrayList<>();
+    for (Hero hero : index.atLeast(85)) {
+      names.add(hero.name);
+    }
+    assertEquals(names, Arrays.asList("Flash", "Batman", "Robin"));
+
+    // only the indexed instance is removed
+    assertEquals(index.remove(new Hero("Robin", "Impostor", Hero.Traits.Magic, 85)), false);
+    assertEquals(index.remove(robin), true);
+    assertEquals(index.size(), 3);
+    assertEquals(index.countAtLeast(85), 2);
+    index.clear();
+    assertEquals(index.isEmpty(), true);
+    assertEquals(index.first(), null);
+
+    System.out.println("End of Test 20\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that the trait index follows adds, updates, removes and clears, and hands out a view
+   * that cannot be modified
+   */
+  public void jUnitTest21() throws IOException {
+    System.out.println("Start of Test 21\n---------------");
+
+    // the changes below go to the log of a copy, not of the shared test file
+    File textFile = File.createTempFile("heroDexViews", ".txt");
+    File logFile = new File(textFile.getPath() + HeroLog.EXTENSION);
+    textFile.deleteOnExit();
+    logFile.deleteOnExit();
+    Files.copy(new File("testFile2.txt").toPath(), textFile.toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+
+    HeroDex heroDex = new HeroDex();
+    heroDex.initializeHeroDex(textFile.getPath());
+    Map<String, Hero> strength = heroDex.findMatchingTrait(1);
+    assertEquals(heroDex.traitIndex.count(Hero.Traits.Strength), 3);
+    assertEquals(new ArrayList<>(strength.keySet()),
+        Arrays.asList("Big Basketball Dude", "Roidman", "Superman"));
+
+    heroDex.addHeroes(Arrays.asList(new HeroSpec("Hulk", "Smash", Hero.Traits.Strength, 95)));
+    // the view follows the index
+    assertEquals(strength.size(), 4);
+    heroDex.updateHero(new Hero("Hulk", "Smart now", Hero.Traits.Intelligence, 95));
+    assertEquals(strength.containsKey("Hulk"), false);
+    assertEquals(heroDex.findMatchingTrait(2).containsKey("Hulk"), true);
+    heroDex.removeHero("Superman");
+    assertEquals(strength.size(), 2);
+
+    boolean rejected = false;
+    try {
+      strength.remove("Roidman");
+    } catch (UnsupportedOperationException e) {
+      rejected = true;
+    }
+    assertEquals(rejected, true);
+
+    heroDex.clearHeroDex();
+    assertEquals(strength.isEmpty(), true);
+    heroDex.closeLog();
+
+    System.out.println("End of Test 21\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that compound queries combine trait, rating, prefix and keyword predicates correctly,
+   * sort and limit their results, and follow removes
+   */
+  public void jUnitTest22() throws IOException {
+    System.out.println("Start of Test 22\n---------------");
+
+    HeroDex heroDex = new HeroDex();
+    List<HeroSpec> specs = new ArrayList<>();
+    for (int i = 0; i < 200; ++i) {
+      Hero.Traits trait = Hero.Traits.values()[i % 5];
+      specs.add(new HeroSpec((i % 2 == 0 ? "Sky " : "Night ") + i,
+          i % 3 == 0 ? "Flies over the city" : "Walks the streets", trait, 50 + i % 50));
+    }
+    heroDex.addHeroes(specs);
+
+    HeroQuery fastOrSneaky = HeroQuery.or(HeroQuery.trait(Hero.Traits.Speed),
+        HeroQuery.trait(Hero.Traits.Stealth));
+    HeroQuery where = HeroQuery.and(fastOrSneaky, HeroQuery.ratingAtLeast(80),
+        HeroQuery.namePrefix("Sky"), HeroQuery.not(HeroQuery.keywords("FLIES")));
+    // the same filter as a scan
+    List<Hero> expected = new ArrayList<>();
+    for (Hero hero : heroDex.heroDex.values()) {
+      if ((hero.trait() == Hero.Traits.Speed || hero.trait() == Hero.Traits.Stealth)
+          && hero.rating >= 80 && hero.name.startsWith("Sky")
+          && !hero.description.contains("Flies")) {
+        expected.add(hero);
+      }
+    }
+    expected.sort(HeroQuery.BY_RATING);
+    assertEquals(expected.isEmpty(), false);
+    assertEquals(heroDex.count(where), expected.size());
+    assertEquals(heroDex.query(where, HeroQuery.BY_RATING, 1000), expected);
+    assertEquals(heroDex.query(where, HeroQuery.BY_RATING, 3), expected.subList(0, 3));
+    assertEquals(heroDex.count(HeroQuery.and(HeroQuery.trait(Hero.Traits.Magic),
+        HeroQuery.trait(Hero.Traits.Speed))), 0);
+    assertEquals(heroDex.count(HeroQuery.all()), 200);
+
+    heroDex.removeHero(expected.get(0).name);
+    assertEquals(heroDex.count(where), expected.size() - 1);
+    // a re-added hero takes the freed id
+    heroDex.addHeroes(
+        Arrays.asList(new HeroSpec("Sky new", "Walks alone", Hero.Traits.Speed, 99)));
+    assertEquals(heroDex.query(where, HeroQuery.BY_RATING, 1).get(0).name, "Sky new");
+
+    System.out.println("End of Test 22\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that description searches find words, prefixes and phrases, rank rarer words and
+   * shorter descriptions higher, and follow updates and removes
+   */
+  public void jUnitTest23() throws IOException {
+    System.out.println("Start of Test 23\n---------------");
+
+    HeroDex heroDex = new HeroDex();
+    heroDex.addHeroes(Arrays.asList(
+        new HeroSpec("Flyer", "Flies over the city at night", Hero.Traits.Speed, 80),
+        new HeroSpec("Glider", "Glides over the sleeping city and flies home", Hero.Traits.Speed,
+            70),
+        new HeroSpec("Digger", "Digs under the city all day long", Hero.Traits.Strength, 60),
+        new HeroSpec("Owl", "Watches the night, the city, the night again", Hero.Traits.Stealth,
+            90)));
+
+    List<String> names = new ArrayList<>();
+    for (TextIndex.Hit hit : heroDex.searchDescriptions("CITY flies", 10)) {
+      names.add(hit.hero.name);
+    }
+    // the shorter description ranks first
+    assertEquals(names, Arrays.asList("Flyer", "Glider"));
+    assertEquals(heroDex.searchDescriptions("fl*", 10).size(), 2);
+    assertEquals(heroDex.searchDescriptions("\"over the city\"", 10).size(), 1);
+    assertEquals(heroDex.searchDescriptions("\"the city\"", 10).size(), 3);
+    // punctuation between words does not break a phrase
+    assertEquals(heroDex.searchDescriptions("\"city the\"", 10).get(0).hero.name, "Owl");
+    assertEquals(heroDex.searchDescriptions("\"city over\"", 10).size(), 0);
+    assertEquals(heroDex.searchDescriptions("unknown", 10).size(), 0);
+    // two occurrences beat one
+    assertEquals(heroDex.searchDescriptions("night", 1).get(0).hero.name, "Owl");
+
+    heroDex.updateHero(new Hero("Flyer", "Swims under the sea", Hero.Traits.Speed, 80));
+    assertEquals(heroDex.searchDescriptions("flies", 10).size(), 1);
+    assertEquals(heroDex.searchDescriptions("\"under the\"", 10).size(), 2);
+    heroDex.removeHero("Digger");
+    assertEquals(heroDex.searchDescriptions("\"under the\"", 10).get(0).hero.name, "Flyer");
+    assertEquals(heroDex.textIndex.size(), 3);
+
+    // a loaded file is indexed on the first search
+    HeroDex loaded = new HeroDex();
+    loaded.initializeHeroDex("testFile2.txt");
+    assertEquals(loaded.textIndex.size(), 0);
+    assertEquals(loaded.searchDescriptions("mighti*", 10).get(0).hero.name, "Superman");
+    assertEquals(loaded.textIndex.size(), 9);
+
+    System.out.println("End of Test 23\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that names are found ignoring case and accents, that prefixes complete to the best
+   * rated heroes and that misspelled names get suggestions
+   */
+  public void jUnitTest24() throws IOException {
+    System.out.println("Start of Test 24\n---------------");
+
+    HeroDex heroDex = new HeroDex();
+    heroDex.initializeHeroDex("testFile2.txt");
+    Hero found = heroDex.option3(new Scanner("3\nsUPERMAN\n"));
+    assertEquals(found.name, "Superman");
+    assertEquals(heroDex.findHero("Sup\u00e9rman").name, "Superman");
+    assertEquals(heroDex.findHero("Superma"), null);
+    assertEquals(heroDex.suggestHeroes("Supreman", 3).get(0).name, "Superman");
+    assertEquals(heroDex.suggestHeroes("xyzzy", 3).isEmpty(), true);
+
+    NameTrie names = new NameTrie();
+    for (int i = 0; i < 30; ++i) {
+      names.add(new Hero("Star " + i, "A star", Hero.Traits.Magic, 50 + i));
+    }
+    Hero stardust = new Hero("Stardust", "Dusty", Hero.Traits.Magic, 99);
+    names.add(stardust);
+    names.add(new Hero("Storm", "Windy", Hero.Traits.Magic, 98));
+    List<String> top = new ArrayList<>();
+    for (Hero hero : names.complete("STAR", 3)) {
+      top.add(hero.name);
+    }
+    assertEquals(top, Arrays.asList("Stardust", "Star 29", "Star 28"));
+    // more than the heroes kept per node
+    assertEquals(names.complete("star ", 25).size(), 25);
+    assertEquals(names.complete("star ", 25).get(24).name, "Star 5");
+    assertEquals(names.complete("st", 100).size(), 32);
+
+    names.remove(stardust);
+    assertEquals(names.complete("star", 1).get(0).name, "Star 29");
+    assertEquals(names.find("stardust").isEmpty(), true);
+    assertEquals(names.suggest("Strom", 2, 5).get(0).name, "Storm");
+    assertEquals(names.size(), 31);
+
+    System.out.println("End of Test 24\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks tournament win, loss and tie counts against battling every pair one by one, with
+   * several threads and blocks, and checks the bracket ranking
+   */
+  public void jUnitTest25() throws IOException {
+    System.out.println("Start of Test 25\n---------------");
+
+    List<Hero> heroes = new ArrayList<>();
+    Random random = new Random(25);
+    for (int i = 0; i < 300; ++i) {
+      heroes.add(new Hero("Hero " + i, "Fighter", Hero.Traits.values()[random.nextInt(5)],
+          60 + random.nextInt(5)));
+    }
+    // the first of two equal heroes wins, so battles between them count too
+    Tournament.BattleScorer firstWinsTies = (firstRating, firstTrait, secondRating,
+        secondTrait) -> firstRating == secondRating && firstTrait == secondTrait ? 1
+            : Tournament.TRAIT_MATCHUPS.battle(firstRating, firstTrait, secondRating,
+                secondTrait);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    Tournament.Result result = new Tournament(pool, firstWinsTies, 16).allPairs(heroes);
+    pool.shutdown();
+    for (int i = 0; i < heroes.size(); ++i) {
+      int wins = 0;
+      int losses = 0;
+      for (int j = 0; j < heroes.size(); ++j) {
+        Hero first = heroes.get(Math.min(i, j));
+        Hero second = heroes.get(Math.max(i, j));
+        int outcome = j == i ? 0
+            : firstWinsTies.battle(first.rating, first.trait(), second.rating, second.trait());
+        if (j > i ? outcome > 0 : outcome < 0) {
+          wins++;
+        } else if (j > i ? outcome < 0 : outcome > 0) {
+          losses++;
+        }
+      }
+      assertEquals(result.wins(i), wins);
+      assertEquals(result.losses(i), losses);
+      assertEquals(result.ties(i), heroes.size() - 1 - wins - losses);
+    }
+
+    HeroDex heroDex = new HeroDex();
+    heroDex.initializeHeroDex("testFile2.txt");
+    Tournament.Result byRating = heroDex.runTournament(Tournament.BY_RATING);
+    int winner = byRating.ranking()[0];
+    assertEquals(byRating.hero(winner), heroDex.ratingIndex.first());
+    assertEquals(byRating.wins(winner), 8);
+    List<Hero> bracket = heroDex.runBracket(Tournament.BY_RATING);
+    assertEquals(bracket.size(), 9);
+    assertEquals(bracket.get(0), heroDex.ratingIndex.first());
+    assertEquals(new HashSet<>(bracket).size(), 9);
+
+    System.out.println("End of Test 25\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Pages through every hero while the hash table grows and through the trait and rating
+   * listings while heroes are removed, and checks that the menu stops paging on q
+   */
+  public void jUnitTest26() throws IOException {
+    System.out.println("Start of Test 26\n---------------");
+
+    HeroDex heroDex = new HeroDex();
+    List<HeroSpec> specs = new ArrayList<>();
+    for (int i = 0; i < 300; ++i) {
+      specs.add(new HeroSpec("Hero " + i, "Stands guard", Hero.Traits.values()[i % 5],
+          50 + i % 40));
+    }
+    heroDex.addHeroes(specs);
+    Set<String> original = new HashSet<>();
+    heroDex.heroDex.values().forEach(hero -> original.add(hero.name));
+
+    // heroes added in between pages make the table grow several times
+    Set<String> listed = new HashSet<>();
+    HeroPage page = heroDex.listHeroes(null, 7);
+    int added = 0;
+    while (page.hasNext()) {
+      // only the last page of a scan can run out of heroes
+      assertEquals(page.heroes.size() >= 7, true);
+      page.heroes.forEach(hero -> listed.add(hero.name));
+      if (added < 2000) {
+        List<HeroSpec> more = new ArrayList<>();
+        for (int i = 0; i < 40; ++i) {
+          more.add(new HeroSpec("Late " + added++, "Arrives late", Hero.Traits.Speed, 60));
+        }
+        heroDex.addHeroes(more);
+      }
+      page = heroDex.listHeroes(page.next, 7);
+    }
+    page.heroes.forEach(hero -> listed.add(hero.name));
+    assertEquals(listed.containsAll(original), true);
+
+    // the hero a token names is removed before the next page is asked for
+    List<Hero> byName =
+        new ArrayList<>(heroDex.traitIndex.withTrait(Hero.Traits.Strength).values());
+    List<Hero> paged = new ArrayList<>();
+    page = heroDex.heroesWithTrait(Hero.Traits.Strength, null, 6);
+    paged.addAll(page.heroes);
+    while (page.hasNext()) {
+      heroDex.removeHero(page.heroes.get(page.heroes.size() - 1).name);
+      page = heroDex.heroesWithTrait(Hero.Traits.Strength, page.next, 6);
+      paged.addAll(page.heroes);
+    }
+    assertEquals(paged, byName);
+
+    List<Hero> byRating = new ArrayList<>();
+    heroDex.ratingIndex.atLeast(70).forEach(byRating::add);
+    paged.clear();
+    page = heroDex.heroesByRating(70, null, 9);
+    paged.addAll(page.heroes);
+    while (page.hasNext()) {
+      heroDex.removeHero(page.heroes.get(page.heroes.size() - 1).name);
+      page = heroDex.heroesByRating(70, page.next, 9);
+      paged.addAll(page.heroes);
+    }
+    assertEquals(paged, byRating);
+
+    // one more page is shown, then q stops the listing before the menu is read
+    heroDex.pageSize = 5;
+    Scanner scnr = new Scanner("\nq\n6\n");
+    heroDex.option2(scnr);
+    assertEquals(scnr.nextLine(), "6");
+
+    System.out.println("End of Test 26\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that cached query results are reused, and recomputed only once a hero they can hold
+   * is added or removed, and that the cache stays within its byte budget
+   */
+  public void jUnitTest27() throws IOException {
+    System.out.println("Start of Test 27\n---------------");
+
+    HeroDex heroDex = new HeroDex();
+    List<HeroSpec> specs = new ArrayList<>();
+    for (int i = 0; i < 100; ++i) {
+      specs.add(new HeroSpec("Hero " + i, "Keeps watch", Hero.Traits.values()[i % 5], 50 + i % 50));
+    }
+    heroDex.addHeroes(specs);
+    HeroQuery speed = HeroQuery.trait(Hero.Traits.Speed);
+    HeroQuery top = HeroQuery.ratingAtLeast(90);
+    HeroQuery weakStrength =
+        HeroQuery.and(HeroQuery.trait(Hero.Traits.Strength), HeroQuery.ratingBetween(50, 60));
+
+    List<Hero> speedHeroes = heroDex.query(speed, HeroQuery.BY_NAME, 100);
+    List<Hero> topHeroes = heroDex.query(top, HeroQuery.BY_RATING, 100);
+    int weakCount = heroDex.count(weakStrength);
+    // queries built the same way share their results
+    assertEquals(heroDex.query(HeroQuery.trait(Hero.Traits.Speed), HeroQuery.BY_NAME, 100)
+        == speedHeroes, true);
+    assertEquals(heroDex.query(top, HeroQuery.BY_RATING, 100) == topHeroes, true);
+    assertEquals(heroDex.queryCache.hits(), 2);
+    assertEquals(heroDex.queryCache.misses(), 3);
+
+    // a Strength hero rated 60 only changes the last query
+    heroDex.addHeroes(List.of(new HeroSpec("Brick", "Lifts", Hero.Traits.Strength, 60)));
+    assertEquals(heroDex.query(speed, HeroQuery.BY_NAME, 100) == speedHeroes, true);
+    assertEquals(heroDex.query(top, HeroQuery.BY_RATING, 100) == topHeroes, true);
+    assertEquals(heroDex.count(weakStrength), weakCount + 1);
+    assertEquals(heroDex.queryCache.invalidations(), 1);
+
+    // so does removing him, while a Magic hero rated 95 only changes the top heroes
+    heroDex.removeHero("Brick");
+    heroDex.addHeroes(List.of(new HeroSpec("Wizard", "Casts", Hero.Traits.Magic, 95)));
+    assertEquals(heroDex.count(weakStrength), weakCount);
+    assertEquals(heroDex.query(top, HeroQuery.BY_RATING, 100).contains(heroDex.getHero("Wizard")),
+        true);
+    assertEquals(heroDex.query(speed, HeroQuery.BY_NAME, 100) == speedHeroes, true);
+    assertEquals(heroDex.queryCache.hits(), 5);
+    assertEquals(heroDex.queryCache.misses(), 6);
+
+    // every cached result is dropped when the heroes are cleared
+    heroDex.clearHeroDex();
+    assertEquals(heroDex.queryCache.size(), 0);
+    assertEquals(heroDex.query(speed, HeroQuery.BY_NAME, 100).isEmpty(), true);
+
+    // the least recently used results go once the budget is reached
+    QueryCache cache = new QueryCache(2000);
+    for (int i = 0; i < 100; ++i) {
+      int rating = i;
+      cache.get(rating, QueryCache.everything(), () -> Collections.nCopies(rating, "x"));
+      assertEquals(cache.bytes() <= 2000, true);
+    }
+    assertEquals(cache.evictions() > 0, true);
+    assertEquals(cache.get(99, QueryCache.everything(), () -> null) != null, true);
+
+    System.out.println("End of Test 27\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Runs a batch script against a file and checks its results, that its adds are written to the
+   * log when it ends and that clear deletes the heroes added before it
+   */
+  public void jUnitTest28() throws IOException {
+    System.out.println("Start of Test 28\n---------------");
+
+    File textFile = File.createTempFile("heroDexBatch", ".txt");
+    File logFile = new File(textFile.getPath() + HeroLog.EXTENSION);
+    textFile.deleteOnExit();
+    logFile.deleteOnExit();
+    String fileName = textFile.getPath();
+    StringBuilder script = new StringBuilder("add\tGone\tSoon forgotten\tMagic\t70\nclear\n");
+    for (int i = 0; i < 1000; ++i) {
+      script.append("add\tHero ").append(i).append("\tKeeps watch\tSpeed\t").append(50 + i % 50)
+          .append('\n');
+    }
+    script.append("# reads see the adds before them\n")
+        .append("add\tHero 1\tTaken\nadd\tBrick\tLifts cars\tStrength\t99\n")
+        .append("get\tBrick\nget\tNobody\nfilter\tStrength\nfilter\t99\nsort\t2\n")
+        .append("compare\tBrick\tHero 0\ncompare\tHero 49\tBrick\ncompare\tBrick\tNobody\n")
+        .append("add\tBad\tRated too high\tMagic\t200\nfly\n");
+    StringWriter out = new StringWriter();
+    HeroDex heroDex = new HeroDex();
+    int commands = heroDex.runBatch(fileName,
+        new BufferedReader(new StringReader(script.toString())), new BufferedWriter(out));
+    assertEquals(commands, 1014);
+
+    List<String> lines = Arrays.asList(out.toString().split("\n"));
+    String brick = "hero\tBrick\tStrength\t99\tLifts cars";
+    assertEquals(lines.subList(0, 3), List.of("added\tGone", "cleared", "added\tHero 0"));
+    assertEquals(lines.subList(1002, 1008),
+        List.of("exists\tHero 1", "added\tBrick", brick, "missing\tNobody", brick, "count\t1"));
+    // Brick and the 20 Speed heroes rated 99, by name
+    assertEquals(lines.subList(1008, 1011),
+        List.of(brick, "hero\tHero 149\tSpeed\t99\tKeeps watch",
+            "hero\tHero 199\tSpeed\t99\tKeeps watch"));
+    assertEquals(lines.subList(1029, lines.size()), List.of("count\t21", brick,
+        "hero\tHero 149\tSpeed\t99\tKeeps watch", "count\t2", "winner\tBrick", "tie",
+        "missing\tNobody", "error\t1014\tinvalid rating 200 for hero Bad",
+        "error\t1015\tunknown command fly"));
+
+    // only the adds after the clear were logged
+    HeroDex reloaded = new HeroDex();
+    reloaded.initializeHeroDex(fileName);
+    assertEquals(reloaded.getHeroesStored(), 1001);
+    assertEquals(reloaded.getHero("Gone"), null);
+    assertEquals(reloaded.getHero("Hero 7").rating, 57);
+    reloaded.closeLog();
+
+    System.out.println("End of Test 28\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Serves heroes over HTTP and checks lookups, paged listings, comparisons and adds, then runs a
+   * short load test against the server
+   */
+  public void jUnitTest29() throws IOException, InterruptedException {
+    System.out.println("Start of Test 29\n---------------");
+
+    HeroDex heroDex = new HeroDex();
+    List<HeroSpec> specs = new ArrayList<>();
+    for (int i = 0; i < 50; ++i) {
+      specs.add(new HeroSpec("Hero " + i, "Guards the \"city\"", Hero.Traits.values()[i % 5],
+          50 + i));
+    }
+    heroDex.addHeroes(specs);
+    HeroServer server =
+        new HeroServer(new SharedHeroDex(heroDex), new InetSocketAddress("localhost", 0));
+    server.start();
+    URI base = URI.create("http://localhost:" + server.port());
+    HttpClient client = HttpClient.newHttpClient();
+    try {
+      HttpResponse<String> response = client.send(
+          HttpRequest.newBuilder(base.resolve("/heroes/hERO%207")).build(),
+          HttpResponse.BodyHandlers.ofString());
+      assertEquals(response.statusCode(), 200);
+      assertEquals(response.body(), "{\"name\":\"Hero 7\",\"trait\":\"Speed\",\"rating\":57,"
+          + "\"description\":\"Guards the \\\"city\\\"\"}");
+      response = client.send(HttpRequest.newBuilder(base.resolve("/heroes/Hero%2077")).build(),
+          HttpResponse.BodyHandlers.ofString());
+      assertEquals(response.statusCode(), 404);
+      assertEquals(response.body().contains("\"suggestions\":["), true);
+      assertEquals(response.body().contains("\"Hero 7\""), true);
+
+      // follows the next tokens through every Speed hero, three at a time
+      List<String> names = new ArrayList<>();
+      String after = "";
+      while (after != null) {
+        String page = "/heroes?trait=Speed&limit=3"
+            + (after.isEmpty() ? "" : "&after=" + URLEncoder.encode(after, StandardCharsets.UTF_8));
+        response = client.send(HttpRequest.newBuilder(base.resolve(page)).build(),
+            HttpResponse.BodyHandlers.ofString());
+        assertEquals(response.statusCode(), 200);
+        String body = response.body();
+        for (int at = body.indexOf("{\"name\":\""); at >= 0;
+            at = body.indexOf("{\"name\":\"", at + 1)) {
+          names.add(body.substring(at + 9, body.indexOf('"', at + 9)));
+        }
+        int next = body.indexOf("\"next\":") + 7;
+        after = body.startsWith("null", next) ? null
+            : body.substring(next + 1, body.indexOf('"', next + 1));
+      }
+      assertEquals(names,
+          new ArrayList<>(heroDex.traitIndex.withTrait(Hero.Traits.Speed).keySet()));
+
+      response = client.send(HttpRequest.newBuilder(base.resolve("/heroes?minRating=98")).build(),
+          HttpResponse.BodyHandlers.ofString());
+      assertEquals(response.body().startsWith("{\"heroes\":[{\"name\":\"Hero 49\""), true);
+      assertEquals(response.body().endsWith("\"next\":null}"), true);
+      response = client.send(
+          HttpRequest.newBuilder(base.resolve("/compare?first=Hero%203&second=Hero%204")).build(),
+          HttpResponse.BodyHandlers.ofString());
+      assertEquals(response.body().startsWith("{\"winner\":\"Hero 4\""), true);
+
+      HttpRequest add = HttpRequest.newBuilder(base.resolve("/heroes"))
+          .POST(HttpRequest.BodyPublishers.ofString(
+              "{\"name\":\"Brick\",\"description\":\"Lifts cars\",\"trait\":\"Strength\","
+                  + "\"rating\":99}\n"))
+          .build();
+      assertEquals(client.send(add, HttpResponse.BodyHandlers.ofString()).statusCode(), 201);
+      assertEquals(client.send(add, HttpResponse.BodyHandlers.ofString()).statusCode(), 409);
+      assertEquals(heroDex.getHero("Brick").rating, 99);
+      response = client.send(HttpRequest.newBuilder(base.resolve("/heroes?limit=x")).build(),
+          HttpResponse.BodyHandlers.ofString());
+      assertEquals(response.statusCode(), 400);
+      response = client.send(HttpRequest.newBuilder(base.resolve("/heroes?limit=0")).build(),
+          HttpResponse.BodyHandlers.ofString());
+      assertEquals(response.statusCode(), 400);
+      assertEquals(response.body().contains("limit must be a number 1 or more: 0"), true);
+
+      HeroLoadTest.Report report =
+          HeroLoadTest.run(base, HeroLoadTest.paths(50, 200, new Random(29)), 4);
+      assertEquals(report.requests, 200);
+      assertEquals(report.errors, 0);
+      assertEquals(report.p50Nanos <= report.p99Nanos, true);
+      System.out.println(report);
+    } finally {
+      server.stop();
+    }
+
+    System.out.println("End of Test 29\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that both text loaders reject a rating that does not fit in a byte instead of
+   * wrapping it, and that a hero cannot be created with one
+   */
+  public void jUnitTest30() throws IOException {
+    System.out.println("Start of Test 30\n---------------");
+
+    File textFile = File.createTempFile("heroDexRating", ".txt");
+    textFile.deleteOnExit();
+    try (Writer writer = new FileWriter(textFile)) {
+      writer.write("Superman\nMan of steel\n0\n54\nHulk\nSmash\n0\n150\n");
+    }
+    String sequential = null;
+    try {
+      new HeroDex().initializeHeroDex(textFile.getPath());
+    } catch (IOException e) {
+      sequential = e.getMessage();
+    }
+    assertEquals(sequential, "Invalid rating 150 at line 8");
+    String parallel = null;
+    try {
+      new HeroDex().initializeHeroDexParallel(textFile.getPath(), message -> {});
+    } catch (IOException e) {
+      parallel = e.getMessage();
+    }
+    assertEquals(parallel, "Invalid rating 150 at line 8");
+
+    boolean rejected = false;
+    try {
+      new Hero("Hulk", "Smash", Hero.Traits.Strength, Byte.MAX_VALUE + 1);
+    } catch (IllegalArgumentException e) {
+      rejected = true;
+    }
+    assertEquals(rejected, true);
+
+    System.out.println("End of Test 30\n---------------\n");
+  }
+
+  @Test
+  /**
+   * Checks that once a commit of the log fails, every later call throws instead of appending
+   * after the failed group, and that opening the log again keeps the records committed before
+   */
+  public void jUnitTest31() throws IOException {
+    System.out.println("Start of Test 31\n---------------");
+
+    File logFile = File.createTempFile("heroDexFailedLog", HeroLog.EXTENSION);
+    logFile.delete();
+    logFile.deleteOnExit();
+    HeroLog log = HeroLog.open(logFile.getPath(), 100, 1000, recordTo(new ArrayList<>()));
+    log.append(new Hero("Flash", "Fastest man alive", Hero.Traits.Speed, 90));
+    log.commit();
+    log.append(new Hero("Batman", "World's greatest detective", Hero.Traits.Intelligence, 85));
+    // an interrupted thread closes the file channel it writes to, which fails the commit
+    Thread.currentThread().interrupt();
+    IOException failure = null;
+    try {
+      log.commit();
+    } catch (IOException e) {
+      failure = e;
+    } finally {
+      Thread.interrupted();
+    }
+    assertEquals(failure instanceof ClosedByInterruptException, true);
+    for (int i = 0; i < 2; ++i) {
+      IOException later = null;
+      try {
+        log.append(new Hero("Robin", "Sidekick", Hero.Traits.Stealth, 60));
+      } catch (IOException e) {
+        later = e;
+      }
+      assertEquals(later.getCause(), failure);
+    }
+    assertEquals(log.getCommittedRecords(), 1);
+    log.close();
+
+    List<String> replayed = new ArrayList<>();
+    HeroLog.open(logFile.getPath(), recordTo(replayed)).close();
+    assertEquals(replayed, Arrays.asList("add Flash"));
+
+    System.out.println("End of Test 31\n---------------\n");
+  }
+
 
   /**
    * Calls runHeroDex() method for user to interact with the program
@@ -640,8 +2693,49 @@ public class HeroDex {
    * @param args
    */
   public static void main(String[] args) {
-    Scanner scnr = new Scanner(System.in);
     HeroDex heroDex = new HeroDex();
+    // java HeroDex --batch [script] runs the commands of script, or of standard input
+    if (args.length > 0 && args[0].equals("--batch")) {
+      try (BufferedReader script = new BufferedReader(args.length > 1 ? new FileReader(args[1])
+          : new InputStreamReader(System.in), 1 << 16)) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        heroDex.runBatch("heroDex.txt", script, out);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      return;
+    }
+    // java HeroDex --serve [port] serves the HeroDex over HTTP until the process is stopped
+    if (args.length > 0 && args[0].equals("--serve")) {
+      try {
+        heroDex.initializeHeroDex("heroDex.txt");
+        SharedHeroDex shared = new SharedHeroDex(heroDex);
+        HeroServer server = new HeroServer(shared, new InetSocketAddress(
+            args.length > 1 ? Integer.parseInt(args[1]) : HeroServer.DEFAULT_PORT));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+          server.stop();
+          try {
+            shared.close();
+          } catch (IOException e) {
+            e.printStackTrace();
+          }
+        }));
+        server.start();
+        System.out.println("HeroDex is serving " + shared.size() + " heroes on http://localhost:"
+            + server.port() + "/heroes");
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      return;
+    }
+    try {
+      // lets the hash table statistics be watched from JConsole while the HeroDex runs
+      heroDex.heroDex.registerMBean("heroDex");
+    } catch (JMException e) {
+      // the HeroDex works the same without its statistics
+      System.err.println("Hash table statistics are not available in JConsole: " + e);
+    }
+    Scanner scnr = new Scanner(System.in);
     try {
       heroDex.runHeroDex(scnr, "heroDex.txt");
     } catch (IOException e) {
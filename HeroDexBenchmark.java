@@ -0,0 +1,411 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Microbenchmarks for the MapADT implementations and the main HeroDex operations. Each benchmark
+ * is warmed up, then timed over several iterations with its setup kept out of the measurement, and
+ * results are sinked so the JIT cannot drop the measured work. Results are reported in
+ * nanoseconds per operation so runs before and after a change can be compared line by line.
+ *
+ * Usage: java HeroDexBenchmark [sizes] [filter], for example
+ * java HeroDexBenchmark 10,1000,10000000 get
+ */
+public class HeroDexBenchmark {
+
+  // iterations run before measuring so the JIT has compiled the code under test
+  private static final int WARMUP_ITERATIONS = 5;
+  private static final int MEASURED_ITERATIONS = 10;
+  // minimum number of operations per timed iteration, small sizes are repeated to reach it
+  private static final int MIN_OPS_PER_ITERATION = 100_000;
+  // results of every benchmark end up here so no work can be optimized away
+  private static volatile long sink;
+
+  /**
+   * One benchmark. setup() runs before every iteration and is not timed, run() is timed.
+   */
+  private abstract static class Trial {
+    void setup() {}
+
+    abstract long run();
+  }
+
+  /**
+   * Adapts java.util.HashMap to MapADT so it can be measured next to the HeroDex maps
+   */
+  private static class HashMapAdapter<K, V> implements MapADT<K, V> {
+    private final HashMap<K, V> map;
+
+    HashMapAdapter(int capacity) {
+      map = new HashMap<>(capacity);
+    }
+
+    public boolean put(K key, V value) {
+      return key != null && map.putIfAbsent(key, value) == null;
+    }
+
+    public V get(K key) throws NoSuchElementException {
+      V value = map.get(key);
+      if (value == null && !map.containsKey(key)) {
+        throw new NoSuchElementException();
+      }
+      return value;
+    }
+
+    public int size() {
+      return map.size();
+    }
+
+    public boolean containsKey(K key) {
+      return map.containsKey(key);
+    }
+
+    public V remove(K key) {
+      return map.remove(key);
+    }
+
+    public void clear() {
+      map.clear();
+    }
+  }
+
+  private final int[] sizes;
+  private final String filter;
+  private final PrintWriter out = new PrintWriter(System.out, true);
+
+  /**
+   * @param sizes  numbers of entries to run each benchmark with
+   * @param filter only benchmarks whose name contains this are run, empty for all
+   */
+  public HeroDexBenchmark(int[] sizes, String filter) {
+    this.sizes = sizes;
+    this.filter = filter;
+  }
+
+  /**
+   * Times a trial and prints its average and best time per operation
+   *
+   * @param name  name of the benchmark
+   * @param impl  implementation being measured
+   * @param size  number of entries
+   * @param ops   operations performed by one call to run()
+   * @param trial trial to measure
+   */
+  private void measure(String name, String impl, int size, long ops, Trial trial) {
+    if (!name.contains(filter)) {
+      return;
+    }
+    int repeats = (int) Math.max(1, MIN_OPS_PER_ITERATION / ops);
+    long best = Long.MAX_VALUE;
+    long total = 0;
+    for (int i = 0; i < WARMUP_ITERATIONS + MEASURED_ITERATIONS; ++i) {
+      long elapsed = 0;
+      for (int r = 0; r < repeats; ++r) {
+        trial.setup();
+        long start = System.nanoTime();
+        sink ^= trial.run();
+        elapsed += System.nanoTime() - start;
+      }
+      if (i >= WARMUP_ITERATIONS) {
+        total += elapsed;
+        best = Math.min(best, elapsed);
+      }
+    }
+    double opsPerIteration = (double) ops * repeats;
+    double average = total / (opsPerIteration * MEASURED_ITERATIONS);
+    out.printf(Locale.ROOT, "%-26s %-28s %10d %12.2f %12.2f %14.0f%n", name, impl, size, average,
+        best / opsPerIteration, 1e9 / average);
+  }
+
+  /**
+   * Runs the put, get, containsKey, remove and resize benchmarks for one map implementation
+   *
+   * @param impl    name of the implementation
+   * @param factory creates an empty map with the given initial capacity
+   */
+  private void benchmarkMap(String impl, IntFunction<MapADT<String, Integer>> factory) {
+    for (int size : sizes) {
+      String[] keys = new String[size];
+      String[] missing = new String[size];
+      Integer[] values = new Integer[size];
+      for (int i = 0; i < size; ++i) {
+        keys[i] = "hero" + i;
+        missing[i] = "villain" + i;
+        values[i] = i;
+      }
+      // presized so put measures inserts without any resize
+      int presized = (int) (size / HashTableMap.DEFAULT_LOAD_FACTOR) + 2;
+
+      measure("map.put", impl, size, size, new Trial() {
+        MapADT<String, Integer> map;
+
+        void setup() {
+          map = factory.apply(presized);
+        }
+
+        long run() {
+          long added = 0;
+          for (int i = 0; i < keys.length; ++i) {
+            added += map.put(keys[i], values[i]) ? 1 : 0;
+          }
+          return added;
+        }
+      });
+
+      measure("map.resize", impl, size, size, new Trial() {
+        MapADT<String, Integer> map;
+
+        void setup() {
+          map = factory.apply(16);
+        }
+
+        long run() {
+          long added = 0;
+          for (int i = 0; i < keys.length; ++i) {
+            added += map.put(keys[i], values[i]) ? 1 : 0;
+          }
+          return added;
+        }
+      });
+
+      MapADT<String, Integer> filled = factory.apply(presized);
+      for (int i = 0; i < size; ++i) {
+        filled.put(keys[i], values[i]);
+      }
+      int[] order = shuffledIndexes(size);
+
+      measure("map.get", impl, size, size, new Trial() {
+        long run() {
+          long total = 0;
+          for (int i : order) {
+            total += filled.get(keys[i]);
+          }
+          return total;
+        }
+      });
+
+      measure("map.containsKey.hit", impl, size, size, new Trial() {
+        long run() {
+          long found = 0;
+          for (int i : order) {
+            found += filled.containsKey(keys[i]) ? 1 : 0;
+          }
+          return found;
+        }
+      });
+
+      measure("map.containsKey.miss", impl, size, size, new Trial() {
+        long run() {
+          long found = 0;
+          for (int i : order) {
+            found += filled.containsKey(missing[i]) ? 1 : 0;
+          }
+          return found;
+        }
+      });
+
+      measure("map.remove", impl, size, size, new Trial() {
+        MapADT<String, Integer> map;
+
+        void setup() {
+          map = factory.apply(presized);
+          for (int i = 0; i < keys.length; ++i) {
+            map.put(keys[i], values[i]);
+          }
+        }
+
+        long run() {
+          long total = 0;
+          for (int i : order) {
+            total += map.remove(keys[i]);
+          }
+          return total;
+        }
+      });
+    }
+  }
+
+  /**
+   * Runs the end-to-end HeroDex benchmarks on generated hero files
+   *
+   * @throws IOException if the hero file cannot be written
+   */
+  private void benchmarkHeroDex() throws IOException {
+    for (int size : sizes) {
+      File file = File.createTempFile("heroDexBench", ".txt");
+      file.deleteOnExit();
+      writeHeroFile(file, size);
+      String fileName = file.getPath();
+
+      measure("heroDex.initialize", "HeroDex", size, size, new Trial() {
+        long run() {
+          HeroDex dex = new HeroDex();
+          try {
+            dex.initializeHeroDex(fileName);
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+          return dex.getHeroesStored();
+        }
+      });
+
+      measure("heroDex.initializeParallel", "HeroDex", size, size, new Trial() {
+        long run() {
+          HeroDex dex = new HeroDex();
+          try {
+            dex.initializeHeroDexParallel(fileName, message -> {});
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+          return dex.getHeroesStored();
+        }
+      });
+
+      File snapshot = File.createTempFile("heroDexBench", ".hdx");
+      snapshot.deleteOnExit();
+      HeroSnapshot.convert(fileName, snapshot.getPath());
+
+      measure("heroDex.initializeSnapshot", "HeroDex", size, size, new Trial() {
+        long run() {
+          HeroDex dex = new HeroDex();
+          try {
+            dex.initializeHeroDexFromSnapshot(snapshot.getPath());
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+          return dex.getHeroesStored();
+        }
+      });
+
+      List<HeroSpec> specs = new ArrayList<>(size);
+      for (int i = 0; i < size; ++i) {
+        specs.add(new HeroSpec("Hero " + i, "Imported hero number " + i));
+      }
+
+      measure("heroDex.addHeroes", "HeroDex", size, size, new Trial() {
+        long run() {
+          HeroDex dex = new HeroDex();
+          try {
+            return dex.addHeroes(specs);
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        }
+      });
+
+      HeroDex dex = new HeroDex();
+      dex.initializeHeroDex(fileName);
+
+      measure("heroDex.findMatchingTrait", "HeroDex", size, size, new Trial() {
+        int trait = 0;
+
+        long run() {
+          trait = trait % Hero.Traits.values().length + 1;
+          return dex.findMatchingTrait(trait).size();
+        }
+      });
+
+      measure("heroDex.sortByRating", "HeroDex", size, size, new Trial() {
+        long run() {
+          return dex.sortHeroesByRating().size();
+        }
+      });
+
+      measure("heroDex.searchDescriptions", "HeroDex", size, 1000, new Trial() {
+        int next = 0;
+
+        long run() {
+          long found = 0;
+          for (int i = 0; i < 1000; ++i) {
+            // a rare word in a phrase of words every hero has
+            next = (next + 7919) % size;
+            found += dex.searchDescriptions("\"hero number " + next + "\" long*", 10).size();
+          }
+          return found;
+        }
+      });
+    }
+  }
+
+  /**
+   * Writes a hero file in the 4 line format read by HeroDex.initializeHeroDex
+   *
+   * @param file  file to write
+   * @param count number of heroes
+   * @throws IOException if the file cannot be written
+   */
+  static void writeHeroFile(File file, int count) throws IOException {
+    Random random = new Random(42);
+    try (PrintWriter writer = new PrintWriter(file)) {
+      for (int i = 0; i < count; ++i) {
+        writer.println("Hero " + i);
+        writer.println("Benchmark hero number " + i + " with a long enough description");
+        writer.println(random.nextInt(Hero.Traits.values().length));
+        writer.println(50 + random.nextInt(50));
+      }
+    }
+  }
+
+  /**
+   * Returns 0 to size - 1 in random order so lookups do not follow insertion order
+   *
+   * @param size number of indexes
+   * @return shuffled indexes
+   */
+  private static int[] shuffledIndexes(int size) {
+    Random random = new Random(7);
+    int[] order = new int[size];
+    for (int i = 0; i < size; ++i) {
+      order[i] = i;
+    }
+    for (int i = size - 1; i > 0; --i) {
+      int j = random.nextInt(i + 1);
+      int temp = order[i];
+      order[i] = order[j];
+      order[j] = temp;
+    }
+    return order;
+  }
+
+  /**
+   * Runs every benchmark
+   *
+   * @throws IOException if a hero file cannot be written
+   */
+  public void run() throws IOException {
+    out.printf(Locale.ROOT, "%-26s %-28s %10s %12s %12s %14s%n", "benchmark", "implementation",
+        "size", "avg ns/op", "best ns/op", "ops/s");
+    benchmarkMap("HashTableMap", capacity -> new HashTableMap<>(capacity));
+    benchmarkMap("HashTableMap(incremental)",
+        capacity -> new HashTableMap<>(capacity, HashTableMap.DEFAULT_LOAD_FACTOR,
+            HashTableMap.DEFAULT_GROWTH_FACTOR, true));
+    benchmarkMap("OpenAddressingHashTableMap",
+        capacity -> new OpenAddressingHashTableMap<>(capacity));
+    benchmarkMap("ConcurrentHashTableMap", capacity -> new ConcurrentHashTableMap<>(capacity));
+    benchmarkMap("java.util.HashMap", capacity -> new HashMapAdapter<>(capacity));
+    benchmarkHeroDex();
+  }
+
+  /**
+   * Parses the sizes and filter and runs the benchmarks
+   *
+   * @param args optional comma separated sizes and benchmark name filter
+   */
+  public static void main(String[] args) throws IOException {
+    String sizeList = args.length > 0 ? args[0] : "10,1000,100000,1000000";
+    String filter = args.length > 1 ? args[1] : "";
+    String[] parts = sizeList.split(",");
+    int[] sizes = new int[parts.length];
+    for (int i = 0; i < parts.length; ++i) {
+      sizes[i] = Integer.parseInt(parts[i].trim());
+    }
+    new HeroDexBenchmark(sizes, filter).run();
+  }
+}
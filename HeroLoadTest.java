@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends GET requests to a HeroServer from several threads and reports the latency percentiles and
+ * throughput. Run as
+ *
+ * <pre>
+ * java HeroLoadTest [heroes] [threads] [requests] [url]
+ * </pre>
+ *
+ * Without a url, a server over that many generated heroes is started on a free local port for
+ * the run. Requests cycle through lookups of existing and unknown names, trait and rating pages
+ * and comparisons, and every response body is read to its end.
+ */
+public class HeroLoadTest {
+
+  /**
+   * Latencies and throughput of one run
+   */
+  public static class Report {
+    public final int requests;
+    // responses with a status of 500 or more, or requests that failed
+    public final int errors;
+    public final long p50Nanos;
+    public final long p99Nanos;
+    public final long maxNanos;
+    public final double requestsPerSecond;
+
+    Report(long[] latencies, int errors, long elapsedNanos) {
+      long[] sorted = latencies.clone();
+      Arrays.sort(sorted);
+      this.requests = sorted.length;
+      this.errors = errors;
+      this.p50Nanos = percentile(sorted, 0.50);
+      this.p99Nanos = percentile(sorted, 0.99);
+      this.maxNanos = sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+      this.requestsPerSecond = sorted.length * 1e9 / Math.max(1, elapsedNanos);
+    }
+
+    /**
+     * @param sorted   latencies in increasing order
+     * @param fraction share of the latencies at or below the result
+     * @return nearest-rank percentile, 0 without latencies
+     */
+    private static long percentile(long[] sorted, double fraction) {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      int rank = (int) Math.ceil(fraction * sorted.length);
+      return sorted[Math.max(0, rank - 1)];
+    }
+
+    @Override
+    /**
+     * Returns the report in one line, latencies in milliseconds
+     */
+    public String toString() {
+      return String.format("%d requests, %d errors, p50 %.3f ms, p99 %.3f ms, max %.3f ms, "
+          + "%.0f requests/s", requests, errors, p50Nanos / 1e6, p99Nanos / 1e6, maxNanos / 1e6,
+          requestsPerSecond);
+    }
+  }
+
+  /**
+   * Returns the paths requested for a server holding heroes named "Hero 0" to "Hero n-1"
+   *
+   * @param heroes number of heroes, at least 1
+   * @param count  number of paths
+   * @param random source of the hero numbers
+   * @return paths with query strings
+   */
+  static List<String> paths(int heroes, int count, Random random) {
+    List<String> paths = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      int hero = random.nextInt(heroes);
+      switch (i % 5) {
+        case 0:
+        case 1:
+          paths.add("/heroes/Hero%20" + hero);
+          break;
+        case 2:
+          paths.add("/heroes?trait=" + Hero.Traits.values()[hero % 5] + "&limit=20");
+          break;
+        case 3:
+          paths.add("/heroes?minRating=" + (50 + hero % 50) + "&limit=20");
+          break;
+        default:
+          paths.add(i % 10 == 4 ? "/heroes/Nobody%20" + hero
+              : "/compare?first=Hero%20" + hero + "&second=Hero%20" + (hero + 1) % heroes);
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Sends every path once, spread over several threads
+   *
+   * @param base    address of the server, such as http://localhost:8080
+   * @param paths   paths to request
+   * @param threads number of threads sending requests
+   * @return latencies and throughput
+   * @throws InterruptedException if interrupted while waiting for the threads
+   */
+  public static Report run(URI base, List<String> paths, int threads)
+      throws InterruptedException {
+    HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    long[] latencies = new long[paths.size()];
+    AtomicInteger next = new AtomicInteger();
+    AtomicInteger errors = new AtomicInteger();
+    Runnable worker = () -> {
+      byte[] discard = new byte[1 << 13];
+      for (int i = next.getAndIncrement(); i < paths.size(); i = next.getAndIncrement()) {
+        HttpRequest request = HttpRequest.newBuilder(base.resolve(paths.get(i))).build();
+        long start = System.nanoTime();
+        try {
+          HttpResponse<InputStream> response =
+              client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+          try (InputStream body = response.body()) {
+            while (body.read(discard) >= 0) {
+              // reads the whole response
+            }
+          }
+          if (response.statusCode() >= 500) {
+            errors.incrementAndGet();
+          }
+        } catch (IOException e) {
+          errors.incrementAndGet();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        latencies[i] = System.nanoTime() - start;
+      }
+    };
+    long start = System.nanoTime();
+    List<Thread> running = new ArrayList<>(threads);
+    for (int t = 0; t < threads; ++t) {
+      Thread thread = new Thread(worker, "HeroLoadTest-" + t);
+      thread.start();
+      running.add(thread);
+    }
+    for (Thread thread : running) {
+      thread.join();
+    }
+    return new Report(latencies, errors.get(), System.nanoTime() - start);
+  }
+
+  /**
+   * Runs a warm-up and a measured round of requests and prints the report of the measured one
+   *
+   * @param args number of heroes, threads and requests, and the url of a running server
+   * @throws IOException          if the local server cannot be started
+   * @throws InterruptedException if interrupted
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int heroes = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+    int requests = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+    HeroServer server = null;
+    URI base;
+    if (args.length > 3) {
+      base = URI.create(args[3]);
+    } else {
+      HeroDex heroDex = new HeroDex();
+      List<HeroSpec> specs = new ArrayList<>(heroes);
+      for (int i = 0; i < heroes; ++i) {
+        specs.add(new HeroSpec("Hero " + i, "Guards district " + i % 97 + " of the city",
+            Hero.Traits.values()[i % 5], 50 + i % 50));
+      }
+      heroDex.addHeroes(specs);
+      server = new HeroServer(new SharedHeroDex(heroDex), new InetSocketAddress("localhost", 0));
+      server.start();
+      base = URI.create("http://localhost:" + server.port());
+    }
+    Random random = new Random(42);
+    try {
+      System.out.println("warm-up: " + run(base, paths(heroes, requests / 5, random), threads));
+      System.out.println("measured: " + run(base, paths(heroes, requests, random), threads));
+    } finally {
+      if (server != null) {
+        server.stop();
+      }
+    }
+  }
+}
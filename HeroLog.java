@@ -0,0 +1,566 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead log of hero additions, updates and deletions. The log starts with a
+ * header holding a magic number and the format version, followed by one record per change:
+ *
+ * <pre>
+ * int payload length, int CRC32C of the payload,
+ * payload: byte record type, int name length, name in UTF-8, and for additions and updates
+ * int description length, description in UTF-8, byte trait number, byte rating
+ * </pre>
+ *
+ * A deletion only stores the name of the hero, as a tombstone that hides the hero from the text
+ * file and from earlier records.
+ *
+ * Records are buffered and written with a single write and fsync once a group of records has
+ * built up or the oldest buffered record has waited for the group window, whichever comes first.
+ * Opening a log replays every intact record and truncates the log at the first record that is cut
+ * short or fails its checksum, which is what a crash in the middle of a write leaves behind.
+ * Once a write or fsync fails, every later call on the log throws, as the group may be partly on
+ * disk; opening the log again recovers the records that are intact.
+ */
+public class HeroLog implements Closeable {
+
+  /**
+   * Receives the records of a log while it is opened
+   */
+  public interface Replay {
+    /**
+     * Called for every hero added to the log, in log order
+     *
+     * @param hero added hero
+     * @throws IOException if the hero cannot be applied
+     */
+    void add(Hero hero) throws IOException;
+
+    /**
+     * Called for every hero replaced by a new version, in log order
+     *
+     * @param hero new version of the hero
+     * @throws IOException if the hero cannot be applied
+     */
+    void update(Hero hero) throws IOException;
+
+    /**
+     * Called for every deleted hero, in log order
+     *
+     * @param name name of the deleted hero
+     * @throws IOException if the deletion cannot be applied
+     */
+    void remove(String name) throws IOException;
+  }
+
+  // appended to the name of the text file the log belongs to
+  public static final String EXTENSION = ".wal";
+  // records written per fsync unless the group window runs out first
+  public static final int DEFAULT_GROUP_SIZE = 32;
+  // longest time a record waits in the buffer before it is written
+  public static final long DEFAULT_GROUP_WINDOW_MILLIS = 10;
+
+  // "HWAL" in ASCII
+  static final int MAGIC = 0x4857414c;
+  static final short VERSION = 1;
+  // magic, version and reserved flags
+  static final int HEADER_SIZE = 4 + 2 + 2;
+  static final byte ADD = 1;
+  static final byte UPDATE = 2;
+  static final byte DELETE = 3;
+  // payload length and checksum in front of every record
+  private static final int RECORD_HEADER_SIZE = 4 + 4;
+  // longer payloads can only come from a corrupt length
+  private static final int MAX_PAYLOAD_SIZE = 1 << 20;
+
+  // one daemon thread commits the groups of every open log when their window runs out
+  private static final ScheduledExecutorService FLUSHER =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "HeroLog-flusher");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private final Path path;
+  private FileChannel channel;
+  private final int groupSize;
+  private final long groupWindowMillis;
+  // encoded records waiting for the next commit
+  private ByteBuffer pending = ByteBuffer.allocate(1 << 12);
+  private int pendingRecords = 0;
+  private ScheduledFuture<?> scheduledCommit;
+  // set when a commit fails, and the cause of the exception of every later call
+  private IOException failure;
+  private long committedRecords = 0;
+  // records in the log file, including the ones still buffered
+  private long recordCount = 0;
+  private long truncatedBytes = 0;
+  private final CRC32C crc = new CRC32C();
+
+  /**
+   * Opens a log, creating it if it does not exist, and replays its records
+   *
+   * @param fileName          log file
+   * @param groupSize         records written per fsync, 1 to fsync every record
+   * @param groupWindowMillis longest time a record waits before it is written
+   * @param replay            receives every intact record of the log
+   * @return log positioned after its last intact record
+   * @throws IOException if the file cannot be used or is not a HeroDex log
+   */
+  public static HeroLog open(String fileName, int groupSize, long groupWindowMillis,
+      Replay replay) throws IOException {
+    if (groupSize < 1 || groupWindowMillis < 0) {
+      throw new IllegalArgumentException("invalid group commit policy");
+    }
+    FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      return new HeroLog(Paths.get(fileName), channel, groupSize, groupWindowMillis, replay);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens a log with the default group commit policy
+   *
+   * @param fileName log file
+   * @param replay   receives every intact record of the log
+   * @return log positioned after its last intact record
+   * @throws IOException if the file cannot be used or is not a HeroDex log
+   */
+  public static HeroLog open(String fileName, Replay replay) throws IOException {
+    return open(fileName, DEFAULT_GROUP_SIZE, DEFAULT_GROUP_WINDOW_MILLIS, replay);
+  }
+
+  /**
+   * Recovers the log and positions the channel for appending
+   *
+   * @param path              log file
+   * @param channel           open log file
+   * @param groupSize         records written per fsync
+   * @param groupWindowMillis longest time a record waits before it is written
+   * @param replay            receives every intact record of the log
+   * @throws IOException if the file cannot be used or is not a HeroDex log
+   */
+  private HeroLog(Path path, FileChannel channel, int groupSize, long groupWindowMillis,
+      Replay replay) throws IOException {
+    this.path = path;
+    this.channel = channel;
+    this.groupSize = groupSize;
+    this.groupWindowMillis = groupWindowMillis;
+    long size = channel.size();
+    long end = size < HEADER_SIZE ? 0 : recover(replay);
+    if (end < size) {
+      truncatedBytes = size - end;
+      channel.truncate(end);
+      channel.force(false);
+    }
+    if (end == 0) {
+      // a new log, or one whose header was torn before any record made it to disk
+      writeFully(header(), 0);
+      channel.force(false);
+      end = HEADER_SIZE;
+    }
+    channel.position(end);
+  }
+
+  /**
+   * Returns the header every log starts with
+   *
+   * @return header ready to be written
+   */
+  private static ByteBuffer header() {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).flip();
+    return header;
+  }
+
+  /**
+   * Replays every intact record
+   *
+   * @param replay receives every intact record
+   * @return length of the log up to its last intact record
+   * @throws IOException if the header is not a supported HeroDex log header
+   */
+  private long recover(Replay replay) throws IOException {
+    DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16));
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a HeroDex log");
+    }
+    short version = in.readShort();
+    if (version != VERSION) {
+      throw new IOException("Unsupported HeroDex log version " + version);
+    }
+    in.readShort();
+    long end = HEADER_SIZE;
+    byte[] payload = new byte[256];
+    while (true) {
+      ByteBuffer record;
+      try {
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length < 1 || length > MAX_PAYLOAD_SIZE) {
+          break;
+        }
+        if (length > payload.length) {
+          payload = new byte[Math.max(length, payload.length * 2)];
+        }
+        in.readFully(payload, 0, length);
+        crc.reset();
+        crc.update(payload, 0, length);
+        if ((int) crc.getValue() != checksum) {
+          break;
+        }
+        record = ByteBuffer.wrap(payload, 0, length);
+      } catch (EOFException e) {
+        break;
+      }
+      byte type = record.get();
+      if (type == DELETE) {
+        String name = readString(record);
+        if (name == null || record.hasRemaining()) {
+          break;
+        }
+        replay.remove(name);
+      } else {
+        Hero hero = type == ADD || type == UPDATE ? decode(record) : null;
+        if (hero == null) {
+          break;
+        }
+        if (type == ADD) {
+          replay.add(hero);
+        } else {
+          replay.update(hero);
+        }
+      }
+      end += RECORD_HEADER_SIZE + record.limit();
+      committedRecords++;
+      recordCount++;
+    }
+    return end;
+  }
+
+  /**
+   * Decodes the hero of an addition or update whose checksum matched
+   *
+   * @param payload record payload after the record type
+   * @return hero of the record, null if the payload is malformed
+   */
+  private static Hero decode(ByteBuffer payload) {
+    String name = readString(payload);
+    String description = name == null ? null : readString(payload);
+    if (description == null || payload.remaining() != 2) {
+      return null;
+    }
+    int traitNumber = payload.get();
+    int rating = payload.get();
+    if (traitNumber < 0 || traitNumber >= Hero.Traits.values().length || rating < 0) {
+      return null;
+    }
+    return new Hero(name, description, Hero.Traits.values()[traitNumber], rating);
+  }
+
+  /**
+   * Decodes one length-prefixed UTF-8 string
+   *
+   * @param payload record payload
+   * @return decoded string, null if the length is invalid
+   */
+  private static String readString(ByteBuffer payload) {
+    if (payload.remaining() < 4) {
+      return null;
+    }
+    int length = payload.getInt();
+    if (length < 0 || length > payload.remaining()) {
+      return null;
+    }
+    String string = new String(payload.array(), payload.arrayOffset() + payload.position(),
+        length, StandardCharsets.UTF_8);
+    payload.position(payload.position() + length);
+    return string;
+  }
+
+  /**
+   * Buffers a record for a hero that was added. The record is durable once the group it belongs
+   * to is committed, or after commit() returns.
+   *
+   * @param hero added hero
+   * @throws IOException if writing an earlier group failed
+   */
+  public void append(Hero hero) throws IOException {
+    appendRecord(ADD, hero.name, hero);
+  }
+
+  /**
+   * Buffers a record replacing a hero with a new version
+   *
+   * @param hero new version of the hero
+   * @throws IOException if writing an earlier group failed
+   */
+  public void update(Hero hero) throws IOException {
+    appendRecord(UPDATE, hero.name, hero);
+  }
+
+  /**
+   * Buffers a tombstone for a deleted hero
+   *
+   * @param name name of the deleted hero
+   * @throws IOException if writing an earlier group failed
+   */
+  public void remove(String name) throws IOException {
+    appendRecord(DELETE, name, null);
+  }
+
+  /**
+   * Writes records for many added heroes with one write and one fsync, whatever the group size
+   *
+   * @param heroes added heroes
+   * @throws IOException if the records cannot be written
+   */
+  public synchronized void appendAll(Collection<Hero> heroes) throws IOException {
+    checkOpen();
+    for (Hero hero : heroes) {
+      encode(ADD, hero.name, hero);
+    }
+    commit();
+  }
+
+  /**
+   * Encodes a record into the pending buffer and commits the group if it is full
+   *
+   * @param type record type
+   * @param name name of the hero
+   * @param hero hero to store, null for a deletion
+   * @throws IOException if writing an earlier group failed
+   */
+  private synchronized void appendRecord(byte type, String name, Hero hero) throws IOException {
+    checkOpen();
+    encode(type, name, hero);
+    if (pendingRecords >= groupSize || groupWindowMillis == 0) {
+      commit();
+    } else if (scheduledCommit == null) {
+      scheduledCommit =
+          FLUSHER.schedule(this::scheduledCommit, groupWindowMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Encodes a record into the pending buffer
+   *
+   * @param type record type
+   * @param name name of the hero
+   * @param hero hero to store, null for a deletion
+   * @throws IOException if the record is too large
+   */
+  private void encode(byte type, String name, Hero hero) throws IOException {
+    byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+    byte[] description =
+        hero == null ? new byte[0] : hero.description.getBytes(StandardCharsets.UTF_8);
+    int length = 1 + 4 + nameBytes.length + (hero == null ? 0 : 4 + description.length + 2);
+    if (length > MAX_PAYLOAD_SIZE) {
+      throw new IOException("Hero is too large for the HeroDex log: " + name);
+    }
+    reserve(RECORD_HEADER_SIZE + length);
+    int start = pending.position();
+    pending.position(start + RECORD_HEADER_SIZE);
+    pending.put(type).putInt(nameBytes.length).put(nameBytes);
+    if (hero != null) {
+      pending.putInt(description.length).put(description).put(hero.traitNumber).put(hero.rating);
+    }
+    crc.reset();
+    crc.update(pending.array(), start + RECORD_HEADER_SIZE, length);
+    pending.putInt(start, length).putInt(start + 4, (int) crc.getValue());
+    pendingRecords++;
+    recordCount++;
+  }
+
+  /**
+   * Makes sure the pending buffer can hold another bytes
+   *
+   * @param bytes size of the next record
+   */
+  private void reserve(int bytes) {
+    if (pending.remaining() < bytes) {
+      ByteBuffer larger =
+          ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+      pending.flip();
+      larger.put(pending);
+      pending = larger;
+    }
+  }
+
+  /**
+   * Commits the pending group when its window runs out
+   */
+  private synchronized void scheduledCommit() {
+    scheduledCommit = null;
+    try {
+      if (channel.isOpen()) {
+        commit();
+      }
+    } catch (IOException e) {
+      // kept in failure and reported by the next call
+    }
+  }
+
+  /**
+   * Writes every buffered record and waits until it is on disk
+   *
+   * @throws IOException if the records cannot be written
+   */
+  public synchronized void commit() throws IOException {
+    checkOpen();
+    if (scheduledCommit != null) {
+      scheduledCommit.cancel(false);
+      scheduledCommit = null;
+    }
+    if (pendingRecords == 0) {
+      return;
+    }
+    pending.flip();
+    try {
+      writeFully(pending, channel.position());
+      channel.position(channel.position() + pending.limit());
+      channel.force(false);
+    } catch (IOException e) {
+      // part of the group may be on disk, so nothing can be appended safely after it
+      failure = e;
+      throw e;
+    }
+    committedRecords += pendingRecords;
+    pendingRecords = 0;
+    pending.clear();
+  }
+
+  /**
+   * Commits the buffered records and returns the position after the last one, so records written
+   * up to here can later be dropped with discardBefore()
+   *
+   * @return current end of the log
+   * @throws IOException if the buffered records cannot be written
+   */
+  public synchronized long mark() throws IOException {
+    commit();
+    return channel.position();
+  }
+
+  /**
+   * Drops every record before a mark once their changes are stored elsewhere, for example in a
+   * compacted text file. The records after the mark are copied into a new log that then replaces
+   * this one with an atomic move, so a crash leaves either the old or the new log behind.
+   *
+   * @param mark  position returned by mark()
+   * @param count number of records before the mark
+   * @throws IOException if the new log cannot be written
+   */
+  public synchronized void discardBefore(long mark, long count) throws IOException {
+    commit();
+    Path temp = Files.createTempFile(path.toAbsolutePath().getParent(),
+        path.getFileName().toString(), ".tmp");
+    try {
+      long end = channel.position();
+      try (FileChannel copy = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        ByteBuffer header = header();
+        while (header.hasRemaining()) {
+          copy.write(header);
+        }
+        for (long copied = mark; copied < end;) {
+          copied += channel.transferTo(copied, end - copied, copy);
+        }
+        copy.force(false);
+      }
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    long end = HEADER_SIZE + channel.position() - mark;
+    channel.close();
+    channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    channel.position(end);
+    recordCount -= count;
+  }
+
+  /**
+   * Writes a whole buffer at a position of the file
+   *
+   * @param buffer   bytes to write
+   * @param position file position of the first byte
+   * @throws IOException if the bytes cannot be written
+   */
+  private void writeFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  /**
+   * Throws if an earlier commit failed or the log is closed
+   *
+   * @throws IOException if an earlier commit failed or the log is closed
+   */
+  private void checkOpen() throws IOException {
+    if (failure != null) {
+      throw new IOException("HeroDex log failed to commit, open it again to recover", failure);
+    }
+    if (!channel.isOpen()) {
+      throw new IOException("HeroDex log is closed");
+    }
+  }
+
+  /**
+   * @return number of records replayed or committed since the log was opened
+   */
+  public synchronized long getCommittedRecords() {
+    return committedRecords;
+  }
+
+  /**
+   * @return number of records in the log, including the ones not committed yet
+   */
+  public synchronized long getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * @return number of bytes cut off the end of the log when it was opened
+   */
+  public long getTruncatedBytes() {
+    return truncatedBytes;
+  }
+
+  @Override
+  /**
+   * Commits the buffered records and closes the log
+   */
+  public synchronized void close() throws IOException {
+    if (!channel.isOpen()) {
+      return;
+    }
+    try {
+      commit();
+    } finally {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,27 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a hero listing returned by HeroDex, with the token that resumes the listing after
+ * its last hero. Tokens hold a position in the listing rather than an offset, so a page costs
+ * the same however deep into the listing it is, and heroes added or removed in between calls do
+ * not shift the heroes that are still to come.
+ */
+public class HeroPage {
+
+  public final List<Hero> heroes;
+  // token to pass back for the next page, null on the last page
+  public final String next;
+
+  HeroPage(List<Hero> heroes, String next) {
+    this.heroes = Collections.unmodifiableList(heroes);
+    this.next = next;
+  }
+
+  /**
+   * @return true if another page follows this one
+   */
+  public boolean hasNext() {
+    return next != null;
+  }
+}
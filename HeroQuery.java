@@ -0,0 +1,391 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Filter over the heroes of a HeroDex, built from predicates on trait, rating range, name prefix
+ * and description keywords combined with and(), or() and not(). A query is evaluated on the
+ * bitmaps of a QueryIndex: trait, rating and prefix predicates read their bitmaps directly, and
+ * an and() runs its predicates from the most selective one, so later predicates and the keyword
+ * checks only look at the heroes that are still candidates.
+ *
+ * Every query also has a key, equal for queries built the same way, and a footprint of the
+ * trait and rating cells its matches can come from, which QueryCache uses to keep results.
+ */
+public abstract class HeroQuery {
+
+  // highest rating first, then by name
+  public static final Comparator<Hero> BY_RATING =
+      Comparator.comparingInt((Hero hero) -> -hero.rating).thenComparing(hero -> hero.name);
+  public static final Comparator<Hero> BY_NAME = Comparator.comparing(hero -> hero.name);
+
+  // estimate of predicates that have to look at every candidate
+  private static final int SCAN = Integer.MAX_VALUE;
+
+  // the name of the factory followed by its arguments
+  final List<Object> key;
+
+  /**
+   * @param key name of the factory and its arguments, which must be immutable
+   */
+  HeroQuery(Object... key) {
+    this.key = Arrays.asList(key);
+  }
+
+  /**
+   * Returns the trait and rating cells of QueryCache holding every hero this query can match
+   *
+   * @return new bitmap of cells
+   */
+  abstract BitSet footprint();
+
+  /**
+   * Returns an upper bound on the number of matching heroes, used to order the predicates of an
+   * and(). SCAN marks predicates that check candidates one by one.
+   *
+   * @param index index to estimate against
+   * @return estimated number of matches
+   */
+  abstract int estimate(QueryIndex index);
+
+  /**
+   * Returns the ids of the matching heroes among the candidates
+   *
+   * @param index      index to evaluate against
+   * @param candidates ids still in question, not modified
+   * @return new bitmap of the matching candidates
+   */
+  abstract BitSet evaluate(QueryIndex index, BitSet candidates);
+
+  /**
+   * Returns the ids of every hero matching this query
+   *
+   * @param index index to evaluate against
+   * @return new bitmap of the matching ids
+   */
+  BitSet evaluate(QueryIndex index) {
+    return evaluate(index, index.live());
+  }
+
+  /**
+   * Returns the matching heroes
+   *
+   * @param index index to evaluate against
+   * @param order order of the results, null for index order
+   * @param limit maximum number of results
+   * @return up to limit matching heroes
+   */
+  List<Hero> run(QueryIndex index, Comparator<? super Hero> order, int limit) {
+    BitSet matches = evaluate(index);
+    int count = matches.cardinality();
+    List<Hero> results;
+    if (order != null && limit < count) {
+      // keeps the best limit heroes in a heap whose head is the worst of them
+      PriorityQueue<Hero> best = new PriorityQueue<>(Math.max(1, limit), order.reversed());
+      for (int id = matches.nextSetBit(0); id >= 0 && limit > 0; id = matches.nextSetBit(id + 1)) {
+        Hero hero = index.hero(id);
+        if (best.size() < limit) {
+          best.add(hero);
+        } else if (order.compare(hero, best.peek()) < 0) {
+          best.poll();
+          best.add(hero);
+        }
+      }
+      results = new ArrayList<>(best);
+    } else {
+      results = new ArrayList<>(Math.min(limit, count));
+      for (int id = matches.nextSetBit(0); id >= 0 && results.size() < limit;
+          id = matches.nextSetBit(id + 1)) {
+        results.add(index.hero(id));
+      }
+    }
+    if (order != null) {
+      results.sort(order);
+    }
+    return results;
+  }
+
+  /**
+   * @return query matching every hero
+   */
+  public static HeroQuery all() {
+    return new HeroQuery("all") {
+      BitSet footprint() {
+        return QueryCache.everything();
+      }
+
+      int estimate(QueryIndex index) {
+        return index.size();
+      }
+
+      BitSet evaluate(QueryIndex index, BitSet candidates) {
+        return (BitSet) candidates.clone();
+      }
+    };
+  }
+
+  /**
+   * @param trait trait to match
+   * @return query matching the heroes with this trait
+   */
+  public static HeroQuery trait(Hero.Traits trait) {
+    return new HeroQuery("trait", trait) {
+      BitSet footprint() {
+        BitSet cells = new BitSet(QueryCache.CELLS);
+        cells.set(QueryCache.cell(trait, 0), QueryCache.cell(trait, RatingIndex.MAX_RATING) + 1);
+        return cells;
+      }
+
+      int estimate(QueryIndex index) {
+        return index.traitCount(trait);
+      }
+
+      BitSet evaluate(QueryIndex index, BitSet candidates) {
+        BitSet result = (BitSet) index.trait(trait).clone();
+        result.and(candidates);
+        return result;
+      }
+    };
+  }
+
+  /**
+   * @param minimum lowest rating matched
+   * @param maximum highest rating matched
+   * @return query matching the heroes rated from minimum to maximum
+   */
+  public static HeroQuery ratingBetween(int minimum, int maximum) {
+    int low = Math.max(0, minimum);
+    int high = Math.min(RatingIndex.MAX_RATING, maximum);
+    return new HeroQuery("rating", low, high) {
+      BitSet footprint() {
+        BitSet cells = new BitSet(QueryCache.CELLS);
+        if (low <= high) {
+          for (Hero.Traits trait : Hero.Traits.values()) {
+            cells.set(QueryCache.cell(trait, low), QueryCache.cell(trait, high) + 1);
+          }
+        }
+        return cells;
+      }
+
+      int estimate(QueryIndex index) {
+        int count = 0;
+        for (int rating = low; rating <= high; ++rating) {
+          count += index.ratingCount(rating);
+        }
+        return count;
+      }
+
+      BitSet evaluate(QueryIndex index, BitSet candidates) {
+        BitSet result = new BitSet();
+        for (int rating = low; rating <= high; ++rating) {
+          result.or(index.rating(rating));
+        }
+        result.and(candidates);
+        return result;
+      }
+    };
+  }
+
+  /**
+   * @param minimum lowest rating matched
+   * @return query matching the heroes rated minimum or higher
+   */
+  public static HeroQuery ratingAtLeast(int minimum) {
+    return ratingBetween(minimum, RatingIndex.MAX_RATING);
+  }
+
+  /**
+   * @param prefix start of the names to match, case-sensitive
+   * @return query matching the heroes whose name starts with prefix
+   */
+  public static HeroQuery namePrefix(String prefix) {
+    return new HeroQuery("prefix", prefix) {
+      BitSet footprint() {
+        return QueryCache.everything();
+      }
+
+      int estimate(QueryIndex index) {
+        return index.prefixCount(prefix);
+      }
+
+      BitSet evaluate(QueryIndex index, BitSet candidates) {
+        BitSet result = index.withPrefix(prefix);
+        result.and(candidates);
+        return result;
+      }
+    };
+  }
+
+  /**
+   * @param keywords words that must all appear in the description, ignoring case
+   * @return query matching the heroes whose description contains every keyword
+   */
+  public static HeroQuery keywords(String... keywords) {
+    String[] words = keywords.clone();
+    return new HeroQuery("keywords", Arrays.asList(words)) {
+      BitSet footprint() {
+        return QueryCache.everything();
+      }
+
+      int estimate(QueryIndex index) {
+        return SCAN;
+      }
+
+      BitSet evaluate(QueryIndex index, BitSet candidates) {
+        BitSet result = new BitSet();
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+          if (containsAll(index.hero(id).description, words)) {
+            result.set(id);
+          }
+        }
+        return result;
+      }
+    };
+  }
+
+  /**
+   * Checks whether a text contains every word, ignoring case, without copying the text
+   *
+   * @param text  text to search
+   * @param words words to find
+   * @return true if every word occurs in text
+   */
+  private static boolean containsAll(String text, String[] words) {
+    for (String word : words) {
+      boolean found = false;
+      for (int i = 0; i + word.length() <= text.length() && !found; ++i) {
+        found = text.regionMatches(true, i, word, 0, word.length());
+      }
+      if (!found) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Combines queries that must all match. The query with the smallest estimate runs first on
+   * every candidate, and each following query only sees the heroes that matched so far.
+   *
+   * @param queries queries to combine
+   * @return query matching the heroes matched by every query
+   */
+  public static HeroQuery and(HeroQuery... queries) {
+    List<HeroQuery> parts = Arrays.asList(queries.clone());
+    return new HeroQuery("and", keys(parts)) {
+      BitSet footprint() {
+        // a match matches every part
+        BitSet cells = QueryCache.everything();
+        for (HeroQuery part : parts) {
+          cells.and(part.footprint());
+        }
+        return cells;
+      }
+
+      int estimate(QueryIndex index) {
+        int estimate = SCAN;
+        for (HeroQuery part : parts) {
+          estimate = Math.min(estimate, part.estimate(index));
+        }
+        return estimate;
+      }
+
+      BitSet evaluate(QueryIndex index, BitSet candidates) {
+        // the plan: most selective predicate first, scans last
+        int[] estimates = new int[parts.size()];
+        List<Integer> plan = new ArrayList<>(parts.size());
+        for (int i = 0; i < parts.size(); ++i) {
+          estimates[i] = parts.get(i).estimate(index);
+          plan.add(i);
+        }
+        plan.sort(Comparator.comparingInt(i -> estimates[i]));
+        BitSet result = candidates;
+        for (int i : plan) {
+          result = parts.get(i).evaluate(index, result);
+          if (result.isEmpty()) {
+            break;
+          }
+        }
+        return result == candidates ? (BitSet) candidates.clone() : result;
+      }
+    };
+  }
+
+  /**
+   * Combines queries of which at least one must match
+   *
+   * @param queries queries to combine
+   * @return query matching the heroes matched by any query
+   */
+  public static HeroQuery or(HeroQuery... queries) {
+    List<HeroQuery> parts = Arrays.asList(queries.clone());
+    return new HeroQuery("or", keys(parts)) {
+      BitSet footprint() {
+        BitSet cells = new BitSet(QueryCache.CELLS);
+        for (HeroQuery part : parts) {
+          cells.or(part.footprint());
+        }
+        return cells;
+      }
+
+      int estimate(QueryIndex index) {
+        long estimate = 0;
+        for (HeroQuery part : parts) {
+          estimate += part.estimate(index);
+        }
+        return (int) Math.min(estimate, SCAN);
+      }
+
+      BitSet evaluate(QueryIndex index, BitSet candidates) {
+        BitSet result = new BitSet();
+        BitSet remaining = (BitSet) candidates.clone();
+        for (HeroQuery part : parts) {
+          // heroes already matched are not checked again
+          BitSet matched = part.evaluate(index, remaining);
+          result.or(matched);
+          remaining.andNot(matched);
+        }
+        return result;
+      }
+    };
+  }
+
+  /**
+   * @param query query to negate
+   * @return query matching the heroes that query does not match
+   */
+  public static HeroQuery not(HeroQuery query) {
+    return new HeroQuery("not", query.key) {
+      BitSet footprint() {
+        // heroes outside the footprint of query match
+        return QueryCache.everything();
+      }
+
+      int estimate(QueryIndex index) {
+        // the complement of a scan still needs the scan
+        return query.estimate(index) == SCAN ? SCAN : index.size();
+      }
+
+      BitSet evaluate(QueryIndex index, BitSet candidates) {
+        BitSet result = (BitSet) candidates.clone();
+        result.andNot(query.evaluate(index, candidates));
+        return result;
+      }
+    };
+  }
+
+  /**
+   * @param parts queries
+   * @return keys of the queries, in order
+   */
+  private static List<Object> keys(List<HeroQuery> parts) {
+    List<Object> keys = new ArrayList<>(parts.size());
+    for (HeroQuery part : parts) {
+      keys.add(part.key);
+    }
+    return keys;
+  }
+}
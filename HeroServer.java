@@ -0,0 +1,390 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves a SharedHeroDex over HTTP with JSON responses:
+ *
+ * <pre>
+ * GET  /heroes/NAME                      the hero, or 404 with suggestions
+ * GET  /heroes?trait=T&amp;after=&amp;limit=      heroes with trait T by name, a page at a time
+ * GET  /heroes?minRating=R&amp;after=&amp;limit=  heroes rated R or more, highest first
+ * GET  /compare?first=A&amp;second=B          which of two heroes would win a fight
+ * POST /heroes                           adds the heroes of a JSON lines body, as HeroSpec reads
+ * </pre>
+ *
+ * A listing returns {"heroes": [...], "next": token} where token, null on the last page, is
+ * passed as after to get the next page. Each request runs on its own virtual thread when the JDK
+ * has them, and on a thread of a cached pool otherwise. Listings take their page from the HeroDex
+ * under the read lock and write it hero by hero to the response, so neither the lock nor the
+ * memory of a request grows with the number of heroes.
+ */
+public class HeroServer {
+
+  public static final int DEFAULT_PORT = 8080;
+  public static final int DEFAULT_PAGE_SIZE = 20;
+  public static final int MAX_PAGE_SIZE = 1000;
+  // heroes suggested for a name without a hero
+  private static final int SUGGESTIONS = 5;
+
+  static {
+    // small responses would otherwise wait for the delayed ACK of the previous packet
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+  }
+
+  private final SharedHeroDex heroes;
+  private final HttpServer server;
+  private final ExecutorService executor = newThreadPerRequestExecutor();
+
+  /**
+   * Creates a server, which only accepts requests once started
+   *
+   * @param heroes  heroes to serve
+   * @param address address to listen on, port 0 for any free port
+   * @throws IOException if the address cannot be bound
+   */
+  public HeroServer(SharedHeroDex heroes, InetSocketAddress address) throws IOException {
+    this.heroes = heroes;
+    server = HttpServer.create(address, 0);
+    server.createContext("/heroes", this::handleHeroes);
+    server.createContext("/compare", this::handleCompare);
+    server.setExecutor(executor);
+  }
+
+  /**
+   * Returns an executor starting a virtual thread per task, or a cached pool of daemon threads
+   * on JDKs without virtual threads. The JDK 21 factory is looked up at run time so the HeroDex
+   * still builds and runs on JDK 17.
+   *
+   * @return executor for the requests
+   */
+  static ExecutorService newThreadPerRequestExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException e) {
+      // missing before JDK 19, and unsupported without preview features on 19 and 20
+      return Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "HeroServer-request");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * Starts accepting requests
+   */
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * Stops accepting requests and waits up to a second for the running ones
+   */
+  public void stop() {
+    server.stop(1);
+    executor.shutdown();
+  }
+
+  /**
+   * @return port the server listens on
+   */
+  public int port() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Handles lookups, listings and adds
+   *
+   * @param exchange request and response
+   * @throws IOException if the response cannot be written
+   */
+  private void handleHeroes(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      String path = exchange.getRequestURI().getPath();
+      String name = path.length() > "/heroes/".length() ? path.substring("/heroes/".length())
+          : null;
+      String method = exchange.getRequestMethod();
+      try {
+        if (method.equals("GET") && name != null) {
+          lookup(exchange, name);
+        } else if (method.equals("GET")) {
+          list(exchange, parameters(exchange));
+        } else if (method.equals("POST") && name == null) {
+          add(exchange);
+        } else {
+          sendError(exchange, 405, method + " is not supported on " + path);
+        }
+      } catch (IllegalArgumentException e) {
+        // thrown before any of the response was sent
+        sendError(exchange, 400, e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * @param exchange request and response
+   * @param name     name of the hero to send
+   * @throws IOException if the response cannot be written
+   */
+  private void lookup(HttpExchange exchange, String name) throws IOException {
+    Hero hero = heroes.find(name);
+    StringBuilder json = new StringBuilder();
+    if (hero != null) {
+      appendHero(json, hero);
+      send(exchange, 200, json);
+      return;
+    }
+    json.append("{\"error\":");
+    appendString(json, "There is no hero named " + name);
+    json.append(",\"suggestions\":[");
+    List<Hero> suggestions = heroes.suggest(name, SUGGESTIONS);
+    for (int i = 0; i < suggestions.size(); ++i) {
+      if (i > 0) {
+        json.append(',');
+      }
+      appendString(json, suggestions.get(i).name);
+    }
+    send(exchange, 404, json.append("]}"));
+  }
+
+  /**
+   * Sends one page of heroes with a trait, or of heroes by rating
+   *
+   * @param exchange   request and response
+   * @param parameters query parameters
+   * @throws IOException if the response cannot be written
+   */
+  private void list(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+    int limit = Math.min(MAX_PAGE_SIZE,
+        intParameter(parameters, "limit", 1, DEFAULT_PAGE_SIZE));
+    String after = parameters.get("after");
+    HeroPage page;
+    if (parameters.containsKey("trait")) {
+      page = heroes.withTrait(trait(parameters.get("trait")), after, limit);
+    } else {
+      page = heroes.byRating(intParameter(parameters, "minRating", 0, 0), after, limit);
+    }
+
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    // length 0 streams the body in chunks
+    exchange.sendResponseHeaders(200, 0);
+    Writer out = new BufferedWriter(
+        new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 1 << 13);
+    StringBuilder row = new StringBuilder();
+    out.write("{\"heroes\":[");
+    for (int i = 0; i < page.heroes.size(); ++i) {
+      row.setLength(0);
+      if (i > 0) {
+        row.append(',');
+      }
+      appendHero(row, page.heroes.get(i));
+      out.append(row);
+    }
+    row.setLength(0);
+    row.append("],\"next\":");
+    appendString(row, page.next);
+    out.append(row.append('}'));
+    out.flush();
+  }
+
+  /**
+   * Adds the heroes of a JSON lines body
+   *
+   * @param exchange request and response
+   * @throws IOException if the body cannot be read or the heroes cannot be logged
+   */
+  private void add(HttpExchange exchange) throws IOException {
+    List<HeroSpec> specs;
+    try {
+      specs = HeroSpec.readJsonLines(new BufferedReader(
+          new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)));
+    } catch (IOException e) {
+      sendError(exchange, 400, e.getMessage());
+      return;
+    }
+    int added = heroes.add(specs);
+    StringBuilder json = new StringBuilder();
+    json.append("{\"added\":").append(added).append(",\"skipped\":").append(specs.size() - added)
+        .append('}');
+    // nothing new, every name was taken
+    send(exchange, added > 0 || specs.isEmpty() ? 201 : 409, json);
+  }
+
+  /**
+   * Handles comparisons of two heroes
+   *
+   * @param exchange request and response
+   * @throws IOException if the response cannot be written
+   */
+  private void handleCompare(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      Map<String, String> parameters = parameters(exchange);
+      String firstName = parameters.get("first");
+      String secondName = parameters.get("second");
+      if (firstName == null || secondName == null) {
+        sendError(exchange, 400, "first and second hero are needed");
+        return;
+      }
+      Hero[] both = heroes.findBoth(firstName, secondName);
+      if (both[0] == null || both[1] == null) {
+        sendError(exchange, 404,
+            "There is no hero named " + (both[0] == null ? firstName : secondName));
+        return;
+      }
+      int result = both[0].compareTo(both[1]);
+      StringBuilder json = new StringBuilder("{\"winner\":");
+      appendString(json, result < 0 ? both[0].name : result > 0 ? both[1].name : null);
+      json.append(",\"first\":");
+      appendHero(json, both[0]);
+      json.append(",\"second\":");
+      appendHero(json, both[1]);
+      send(exchange, 200, json.append('}'));
+    }
+  }
+
+  /**
+   * Reads the query parameters of a request
+   *
+   * @param exchange request
+   * @return decoded parameters by name, the last value for a repeated name
+   */
+  private static Map<String, String> parameters(HttpExchange exchange) {
+    Map<String, String> parameters = new HashMap<>();
+    String query = exchange.getRequestURI().getRawQuery();
+    if (query != null) {
+      for (String parameter : query.split("&")) {
+        int equals = parameter.indexOf('=');
+        if (equals > 0) {
+          parameters.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+              URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+      }
+    }
+    return parameters;
+  }
+
+  /**
+   * @param parameters   query parameters
+   * @param name         name of the parameter
+   * @param minimum      smallest value allowed
+   * @param defaultValue value if the parameter is missing
+   * @return value of the parameter
+   * @throws IllegalArgumentException if the value is not a number of at least minimum
+   */
+  private static int intParameter(Map<String, String> parameters, String name, int minimum,
+      int defaultValue) {
+    String value = parameters.get(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      int number = Integer.parseInt(value);
+      if (number >= minimum) {
+        return number;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException(
+        name + " must be a number " + minimum + " or more: " + value);
+  }
+
+  /**
+   * @param name trait name or number
+   * @return trait
+   * @throws IllegalArgumentException if there is no such trait
+   */
+  private static Hero.Traits trait(String name) {
+    Hero.Traits trait = HeroSpec.parseTrait(name);
+    if (trait == null) {
+      throw new IllegalArgumentException("trait must not be empty");
+    }
+    return trait;
+  }
+
+  /**
+   * Appends a hero as a JSON object
+   *
+   * @param json builder to append to
+   * @param hero hero to append
+   */
+  static void appendHero(StringBuilder json, Hero hero) {
+    json.append("{\"name\":");
+    appendString(json, hero.name);
+    json.append(",\"trait\":\"").append(hero.trait()).append("\",\"rating\":").append(hero.rating)
+        .append(",\"description\":");
+    appendString(json, hero.description);
+    json.append('}');
+  }
+
+  /**
+   * Appends a JSON string, escaping quotes, backslashes and control characters
+   *
+   * @param json  builder to append to
+   * @param value string to append, null for JSON null
+   */
+  static void appendString(StringBuilder json, String value) {
+    if (value == null) {
+      json.append("null");
+      return;
+    }
+    json.append('"');
+    for (int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    json.append('"');
+  }
+
+  /**
+   * @param exchange request and response
+   * @param status   HTTP status
+   * @param message  error message
+   * @throws IOException if the response cannot be written
+   */
+  private static void sendError(HttpExchange exchange, int status, String message)
+      throws IOException {
+    StringBuilder json = new StringBuilder("{\"error\":");
+    appendString(json, message);
+    send(exchange, status, json.append('}'));
+  }
+
+  /**
+   * Sends a complete JSON response
+   *
+   * @param exchange request and response
+   * @param status   HTTP status
+   * @param json     response body
+   * @throws IOException if the response cannot be written
+   */
+  private static void send(HttpExchange exchange, int status, CharSequence json)
+      throws IOException {
+    byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, body.length);
+    exchange.getResponseBody().write(body);
+  }
+}
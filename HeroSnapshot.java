@@ -0,0 +1,220 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads and writes the binary snapshot format of the HeroDex. A snapshot starts with a header
+ * holding a magic number, the format version and the number of heroes, followed by one record
+ * per hero:
+ *
+ * <pre>
+ * int name length, name in UTF-8, int description length, description in UTF-8,
+ * byte trait number, byte rating
+ * </pre>
+ *
+ * All numbers are big-endian. Snapshots are read through a memory-mapped buffer, so loading does
+ * not copy the file through read calls and the record count lets the hash table be sized once.
+ */
+public class HeroSnapshot {
+
+  // "HDEX" in ASCII
+  static final int MAGIC = 0x48444558;
+  static final short VERSION = 1;
+  // magic, version, reserved flags and record count
+  static final int HEADER_SIZE = 4 + 2 + 2 + 4;
+
+  private final MappedByteBuffer buffer;
+  private final int count;
+  private int read = 0;
+  // reused for every string so decoding allocates only the String itself
+  private byte[] scratch = new byte[256];
+
+  /**
+   * Maps a snapshot file and checks its header
+   *
+   * @param buffer mapped contents of the file
+   * @throws IOException if the header is not a supported HeroDex snapshot header
+   */
+  private HeroSnapshot(MappedByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+      throw new IOException("Not a HeroDex snapshot");
+    }
+    short version = buffer.getShort();
+    if (version != VERSION) {
+      throw new IOException("Unsupported HeroDex snapshot version " + version);
+    }
+    buffer.getShort();
+    count = buffer.getInt();
+    if (count < 0) {
+      throw new IOException("Corrupt HeroDex snapshot header");
+    }
+  }
+
+  /**
+   * Opens a snapshot file for reading
+   *
+   * @param fileName snapshot file
+   * @return snapshot positioned at its first hero
+   * @throws IOException if the file cannot be read or is not a HeroDex snapshot
+   */
+  public static HeroSnapshot open(String fileName) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("HeroDex snapshot is larger than 2 GB: " + fileName);
+      }
+      // the mapping stays valid after the channel is closed
+      return new HeroSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Returns the number of heroes stored in the snapshot, as written in its header
+   *
+   * @return number of heroes
+   */
+  public int count() {
+    return count;
+  }
+
+  /**
+   * Returns whether there are heroes left to read
+   *
+   * @return true if next() will return another hero
+   */
+  public boolean hasNext() {
+    return read < count;
+  }
+
+  /**
+   * Decodes the next hero
+   *
+   * @return next hero in the snapshot
+   * @throws IOException if the record is truncated or holds an invalid trait
+   */
+  public Hero next() throws IOException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    try {
+      String name = readString();
+      String description = readString();
+      int traitNumber = buffer.get();
+      int rating = buffer.get();
+      if (traitNumber < 0 || traitNumber >= Hero.Traits.values().length) {
+        throw new IOException("Invalid trait " + traitNumber + " for hero " + name);
+      }
+      if (rating < 0) {
+        throw new IOException("Invalid rating " + rating + " for hero " + name);
+      }
+      read++;
+      return new Hero(name, description, Hero.Traits.values()[traitNumber], rating);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("HeroDex snapshot is truncated after " + read + " heroes", e);
+    }
+  }
+
+  /**
+   * Decodes one length-prefixed UTF-8 string
+   *
+   * @return decoded string
+   * @throws IOException if the length is invalid
+   */
+  private String readString() throws IOException {
+    int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining()) {
+      throw new IOException("Corrupt string length " + length + " in HeroDex snapshot");
+    }
+    if (length > scratch.length) {
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+    }
+    buffer.get(scratch, 0, length);
+    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes heroes to a snapshot file. The snapshot is written next to the target and then moved
+   * over it, so a crash never leaves a partly written snapshot behind.
+   *
+   * @param fileName snapshot file to write
+   * @param heroes   heroes to store
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(String fileName, Collection<Hero> heroes) throws IOException {
+    Path target = Paths.get(fileName).toAbsolutePath();
+    Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(0);
+        out.writeInt(heroes.size());
+        for (Hero hero : heroes) {
+          writeString(out, hero.name);
+          writeString(out, hero.description);
+          out.writeByte(hero.traitNumber);
+          out.writeByte(hero.rating);
+        }
+      }
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Writes one length-prefixed UTF-8 string
+   *
+   * @param out    stream to write to
+   * @param string string to write
+   * @throws IOException if the stream cannot be written
+   */
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Converts a HeroDex text file, 4 lines per hero, and its write-ahead log to a snapshot
+   *
+   * @param textFile     text file to read
+   * @param snapshotFile snapshot file to write
+   * @return number of heroes written
+   * @throws IOException if either file cannot be used
+   */
+  public static int convert(String textFile, String snapshotFile) throws IOException {
+    HeroDex heroDex = new HeroDex();
+    heroDex.initializeHeroDex(textFile);
+    heroDex.closeLog();
+    write(snapshotFile, heroDex.heroDex.values());
+    return heroDex.getHeroesStored();
+  }
+
+  /**
+   * Converts a text file to a snapshot from the command line
+   *
+   * @param args text file and snapshot file
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.out.println("Usage: java HeroSnapshot <text file> <snapshot file>");
+      return;
+    }
+    int count = convert(args[0], args[1]);
+    System.out.println("Wrote " + count + " heroes to " + args[1]);
+  }
+}
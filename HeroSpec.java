@@ -0,0 +1,356 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes a hero to import without a terminal: name and description, plus a trait and rating
+ * that are generated when left out. Specs can be read from CSV files with the columns
+ *
+ * <pre>
+ * name,description,trait,rating
+ * </pre>
+ *
+ * or from JSON lines files holding one object per line with the same keys. The trait is given by
+ * name or by its 0 based number as in the HeroDex text file, and both trait and rating may be
+ * empty or missing.
+ */
+public class HeroSpec {
+
+  // marks a rating that is generated when the hero is built
+  public static final int GENERATED = -1;
+
+  final String name;
+  final String description;
+  // null if the trait is generated
+  final Hero.Traits trait;
+  final int rating;
+
+  /**
+   * Constructor with specified trait and rating
+   *
+   * @param name        name of the hero
+   * @param description description of the hero
+   * @param trait       trait of the hero, null to pick one at random
+   * @param rating      rating of the hero, GENERATED to pick one as for interactive heroes
+   * @throws IllegalArgumentException if a field cannot be stored in the HeroDex files
+   */
+  public HeroSpec(String name, String description, Hero.Traits trait, int rating) {
+    if (name == null || name.isEmpty() || description == null) {
+      throw new IllegalArgumentException("a hero needs a name and a description");
+    }
+    // the text file stores one field per line
+    if (name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0 || description.indexOf('\n') >= 0
+        || description.indexOf('\r') >= 0) {
+      throw new IllegalArgumentException("line break in hero " + name);
+    }
+    // snapshots and logs store the rating as a byte
+    if (rating != GENERATED && (rating < 0 || rating > Byte.MAX_VALUE)) {
+      throw new IllegalArgumentException("invalid rating " + rating + " for hero " + name);
+    }
+    this.name = name;
+    this.description = description;
+    this.trait = trait;
+    this.rating = rating;
+  }
+
+  /**
+   * Constructor with generated trait and rating
+   *
+   * @param name        name of the hero
+   * @param description description of the hero
+   */
+  public HeroSpec(String name, String description) {
+    this(name, description, null, GENERATED);
+  }
+
+  /**
+   * Builds the hero, generating the trait and rating if they were left out
+   *
+   * @return new hero
+   */
+  public Hero toHero() {
+    return new Hero(name, description, trait != null ? trait : HeroBuilder.randomTrait(),
+        rating != GENERATED ? rating : HeroBuilder.randomRating());
+  }
+
+  /**
+   * Reads specs from CSV. Fields may be quoted with double quotes, a quote inside a quoted field
+   * is written twice, and a first line naming the columns is skipped.
+   *
+   * @param reader CSV input
+   * @return specs in input order
+   * @throws IOException if the input cannot be read or a line is malformed
+   */
+  public static List<HeroSpec> readCsv(BufferedReader reader) throws IOException {
+    List<HeroSpec> specs = new ArrayList<>();
+    String line;
+    int lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      if (line.isBlank()) {
+        continue;
+      }
+      List<String> fields = splitCsv(line, lineNumber);
+      if (lineNumber == 1 && fields.get(0).trim().equalsIgnoreCase("name")) {
+        continue;
+      }
+      if (fields.size() < 2 || fields.size() > 4) {
+        throw new IOException("Expected 2 to 4 fields at line " + lineNumber);
+      }
+      specs.add(create(fields.get(0), fields.get(1), fields.size() > 2 ? fields.get(2) : null,
+          fields.size() > 3 ? fields.get(3) : null, lineNumber));
+    }
+    return specs;
+  }
+
+  /**
+   * Splits one CSV line into fields
+   *
+   * @param line       CSV line
+   * @param lineNumber line number for error messages
+   * @return fields of the line
+   * @throws IOException if a quoted field is not closed
+   */
+  private static List<String> splitCsv(String line, int lineNumber) throws IOException {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); ++i) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          field.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    if (quoted) {
+      throw new IOException("Unclosed quote at line " + lineNumber);
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  /**
+   * Reads specs from JSON lines, one flat object per line with the keys name, description, trait
+   * and rating. Other keys are ignored.
+   *
+   * @param reader JSON lines input
+   * @return specs in input order
+   * @throws IOException if the input cannot be read or a line is malformed
+   */
+  public static List<HeroSpec> readJsonLines(BufferedReader reader) throws IOException {
+    List<HeroSpec> specs = new ArrayList<>();
+    String line;
+    int lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      if (line.isBlank()) {
+        continue;
+      }
+      String[] values = parseJsonObject(line, lineNumber);
+      specs.add(create(values[0], values[1], values[2], values[3], lineNumber));
+    }
+    return specs;
+  }
+
+  /**
+   * Parses a flat JSON object whose values are strings, numbers or null
+   *
+   * @param line       JSON object
+   * @param lineNumber line number for error messages
+   * @return values of name, description, trait and rating, null where missing
+   * @throws IOException if the object is malformed
+   */
+  private static String[] parseJsonObject(String line, int lineNumber) throws IOException {
+    String[] keys = {"name", "description", "trait", "rating"};
+    String[] values = new String[keys.length];
+    JsonCursor cursor = new JsonCursor(line, lineNumber);
+    cursor.expect('{');
+    if (!cursor.consume('}')) {
+      do {
+        String key = cursor.string();
+        cursor.expect(':');
+        String value = cursor.value();
+        for (int i = 0; i < keys.length; ++i) {
+          if (keys[i].equals(key)) {
+            values[i] = value;
+          }
+        }
+      } while (cursor.consume(','));
+      cursor.expect('}');
+    }
+    cursor.end();
+    return values;
+  }
+
+  /**
+   * Walks through one line of JSON
+   */
+  private static class JsonCursor {
+    private final String text;
+    private final int lineNumber;
+    private int position = 0;
+
+    JsonCursor(String text, int lineNumber) {
+      this.text = text;
+      this.lineNumber = lineNumber;
+    }
+
+    private IOException error(String expected) {
+      return new IOException("Expected " + expected + " at line " + lineNumber + ", column "
+          + (position + 1));
+    }
+
+    private void skipSpaces() {
+      while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+        position++;
+      }
+    }
+
+    boolean consume(char c) {
+      skipSpaces();
+      if (position < text.length() && text.charAt(position) == c) {
+        position++;
+        return true;
+      }
+      return false;
+    }
+
+    void expect(char c) throws IOException {
+      if (!consume(c)) {
+        throw error("'" + c + "'");
+      }
+    }
+
+    void end() throws IOException {
+      skipSpaces();
+      if (position < text.length()) {
+        throw error("end of line");
+      }
+    }
+
+    String string() throws IOException {
+      expect('"');
+      StringBuilder builder = new StringBuilder();
+      while (position < text.length()) {
+        char c = text.charAt(position++);
+        if (c == '"') {
+          return builder.toString();
+        }
+        if (c != '\\') {
+          builder.append(c);
+          continue;
+        }
+        if (position >= text.length()) {
+          break;
+        }
+        char escaped = text.charAt(position++);
+        switch (escaped) {
+          case 'b':
+            builder.append('\b');
+            break;
+          case 'f':
+            builder.append('\f');
+            break;
+          case 'n':
+            builder.append('\n');
+            break;
+          case 'r':
+            builder.append('\r');
+            break;
+          case 't':
+            builder.append('\t');
+            break;
+          case 'u':
+            if (position + 4 > text.length()) {
+              throw error("4 hex digits");
+            }
+            try {
+              builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+            } catch (NumberFormatException e) {
+              throw error("4 hex digits");
+            }
+            position += 4;
+            break;
+          default:
+            builder.append(escaped);
+        }
+      }
+      throw error("closing quote");
+    }
+
+    String value() throws IOException {
+      skipSpaces();
+      if (position < text.length() && text.charAt(position) == '"') {
+        return string();
+      }
+      int start = position;
+      while (position < text.length() && ",} \t".indexOf(text.charAt(position)) < 0) {
+        position++;
+      }
+      String literal = text.substring(start, position);
+      if (literal.equals("null")) {
+        return null;
+      }
+      if (literal.isEmpty()) {
+        throw error("a value");
+      }
+      return literal;
+    }
+  }
+
+  /**
+   * Creates a spec from text fields
+   *
+   * @param name        name field
+   * @param description description field
+   * @param trait       trait name or number, null or empty to generate
+   * @param rating      rating, null or empty to generate
+   * @param lineNumber  line number for error messages
+   * @return new spec
+   * @throws IOException if a field is invalid
+   */
+  private static HeroSpec create(String name, String description, String trait, String rating,
+      int lineNumber) throws IOException {
+    try {
+      return new HeroSpec(name, description, parseTrait(trait),
+          rating == null || rating.isBlank() ? GENERATED : Integer.parseInt(rating.trim()));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid hero at line " + lineNumber + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Parses a trait given by name or by its 0 based number
+   *
+   * @param trait trait name or number, null or empty to generate
+   * @return trait, null if it is generated
+   * @throws IllegalArgumentException if there is no such trait
+   */
+  static Hero.Traits parseTrait(String trait) {
+    if (trait == null || trait.isBlank()) {
+      return null;
+    }
+    trait = trait.trim();
+    for (Hero.Traits value : Hero.Traits.values()) {
+      if (value.name().equalsIgnoreCase(trait)
+          || Integer.toString(value.ordinal()).equals(trait)) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("unknown trait " + trait);
+  }
+}
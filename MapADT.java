@@ -4,6 +4,8 @@
 // Notes to Grader: <optional extra notes>
 
 import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 public interface MapADT<KeyType, ValueType> {
 
@@ -13,5 +15,96 @@ public interface MapADT<KeyType, ValueType> {
 	public boolean containsKey(KeyType key);
 	public ValueType remove(KeyType key);
 	public void clear();
+
+	/**
+	 * Adds key-value pair only if key is not stored yet. Implementations shared between threads
+	 * override this so the check and the add happen as one atomic step.
+	 * 
+	 * @return value already stored for key, null if the new value was added
+	 */
+	public default ValueType putIfAbsent(KeyType key, ValueType value) {
+		if (containsKey(key)) {
+			return get(key);
+		}
+		put(key, value);
+		return null;
+	}
+
+	/**
+	 * Returns value stored for key, computing and adding it first if key is not stored yet. A null
+	 * result from mappingFunction adds nothing. Implementations shared between threads override
+	 * this so the check and the add happen as one atomic step.
+	 * 
+	 * @return value stored for key after the call, null if mappingFunction returned null
+	 */
+	public default ValueType computeIfAbsent(KeyType key,
+			Function<? super KeyType, ? extends ValueType> mappingFunction) {
+		if (containsKey(key)) {
+			return get(key);
+		}
+		ValueType value = mappingFunction.apply(key);
+		if (value != null) {
+			put(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns value stored for key, or defaultValue if key is not stored, without throwing.
+	 * 
+	 * @return value stored for key, defaultValue if key is not found
+	 */
+	public default ValueType getOrDefault(KeyType key, ValueType defaultValue) {
+		return containsKey(key) ? get(key) : defaultValue;
+	}
+
+	/**
+	 * Replaces the value stored for key, only if key is already stored.
+	 * 
+	 * @return previous value stored for key, null if key was not found
+	 */
+	public default ValueType replace(KeyType key, ValueType value) {
+		if (!containsKey(key)) {
+			return null;
+		}
+		ValueType previous = remove(key);
+		put(key, value);
+		return previous;
+	}
+
+	/**
+	 * Stores the result of remappingFunction applied to key and its current value (null if key is
+	 * not stored). A null result removes key.
+	 * 
+	 * @return new value stored for key, null if key is no longer stored
+	 */
+	public default ValueType compute(KeyType key,
+			BiFunction<? super KeyType, ? super ValueType, ? extends ValueType> remappingFunction) {
+		boolean present = containsKey(key);
+		ValueType value = remappingFunction.apply(key, present ? get(key) : null);
+		if (present) {
+			remove(key);
+		}
+		if (value != null) {
+			put(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Stores value for key if key is not stored yet, otherwise stores the result of
+	 * remappingFunction applied to the current value and value. A null result removes key.
+	 * 
+	 * @return new value stored for key, null if key is no longer stored
+	 */
+	public default ValueType merge(KeyType key, ValueType value,
+			BiFunction<? super ValueType, ? super ValueType, ? extends ValueType> remappingFunction) {
+		ValueType previous = containsKey(key) ? remove(key) : null;
+		ValueType merged = previous == null ? value : remappingFunction.apply(previous, value);
+		if (merged != null) {
+			put(key, merged);
+		}
+		return merged;
+	}
 	
 }
@@ -0,0 +1,396 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Radix tree over hero names for lookups that ignore case and accents, completion of a prefix
+ * and suggestions for misspelled names. Names are normalized before they are stored, so
+ * "Superman", "superman" and "Sup&eacute;rman" all reach the same node. Every edge holds a run of
+ * characters rather than one, so the tree has about two nodes per name.
+ *
+ * Each node remembers the best rated heroes below it, so completing a prefix walks down the
+ * prefix and reads that list, whatever the number of heroes in the tree. Suggestions walk the
+ * tree with one row of the edit distance table per character and leave every branch that is
+ * already too far from the name.
+ */
+public class NameTrie {
+
+  // heroes remembered per node for completions
+  public static final int TOP = 10;
+
+  private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+  private static final Node[] NO_CHILDREN = new Node[0];
+  private static final Hero[] NO_HEROES = new Hero[0];
+
+  /**
+   * Node of the tree, reached from its parent over the characters in label
+   */
+  private static final class Node {
+    String label;
+    // sorted by the first character of their label
+    Node[] children = NO_CHILDREN;
+    // heroes whose normalized name ends here
+    Hero[] heroes = NO_HEROES;
+    // best rated heroes in this subtree, best first
+    Hero[] top = NO_HEROES;
+    int topCount = 0;
+
+    Node(String label) {
+      this.label = label;
+    }
+
+    /**
+     * Adds a hero to the best rated heroes if it is good enough
+     *
+     * @param hero hero added below this node
+     */
+    void offer(Hero hero) {
+      if (topCount == TOP && HeroQuery.BY_RATING.compare(hero, top[TOP - 1]) >= 0) {
+        return;
+      }
+      if (topCount < TOP && topCount == top.length) {
+        top = Arrays.copyOf(top, Math.min(TOP, Math.max(1, topCount * 2)));
+      }
+      int at = topCount < TOP ? topCount++ : TOP - 1;
+      while (at > 0 && HeroQuery.BY_RATING.compare(hero, top[at - 1]) < 0) {
+        top[at] = top[at - 1];
+        at--;
+      }
+      top[at] = hero;
+    }
+
+    /**
+     * Recomputes the best rated heroes from the heroes here and the lists of the children
+     */
+    void refreshTop() {
+      List<Hero> candidates = new ArrayList<>(Arrays.asList(heroes));
+      for (Node child : children) {
+        candidates.addAll(Arrays.asList(child.top).subList(0, child.topCount));
+      }
+      candidates.sort(HeroQuery.BY_RATING);
+      topCount = Math.min(TOP, candidates.size());
+      top = candidates.subList(0, topCount).toArray(new Hero[0]);
+    }
+
+    /**
+     * @param c first character of the label
+     * @return index of the child, or -(insertion point) - 1 if there is none
+     */
+    int child(char c) {
+      int low = 0;
+      int high = children.length - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        char first = children[middle].label.charAt(0);
+        if (first < c) {
+          low = middle + 1;
+        } else if (first > c) {
+          high = middle - 1;
+        } else {
+          return middle;
+        }
+      }
+      return -low - 1;
+    }
+  }
+
+  private final Node root = new Node("");
+  private int size = 0;
+
+  /**
+   * Folds a name for comparison: accents are dropped and letters are lower case
+   *
+   * @param name name to fold
+   * @return normalized name
+   */
+  public static String normalize(String name) {
+    for (int i = 0; i < name.length(); ++i) {
+      if (name.charAt(i) >= 0x80) {
+        // splits accented letters into letter and accent, then drops the accents
+        name = COMBINING_MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD))
+            .replaceAll("");
+        break;
+      }
+    }
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Adds a hero under its normalized name
+   *
+   * @param hero hero to add
+   */
+  public void add(Hero hero) {
+    String key = normalize(hero.name);
+    Node node = root;
+    node.offer(hero);
+    int i = 0;
+    while (i < key.length()) {
+      int c = node.child(key.charAt(i));
+      if (c < 0) {
+        Node leaf = new Node(key.substring(i));
+        leaf.heroes = new Hero[] {hero};
+        leaf.offer(hero);
+        Node[] children = new Node[node.children.length + 1];
+        int at = -c - 1;
+        System.arraycopy(node.children, 0, children, 0, at);
+        children[at] = leaf;
+        System.arraycopy(node.children, at, children, at + 1, node.children.length - at);
+        node.children = children;
+        size++;
+        return;
+      }
+      Node child = node.children[c];
+      int common = 1;
+      while (common < child.label.length() && i + common < key.length()
+          && child.label.charAt(common) == key.charAt(i + common)) {
+        common++;
+      }
+      if (common < child.label.length()) {
+        // the name leaves the edge part way, so the edge is split where it does
+        Node middle = new Node(child.label.substring(0, common));
+        child.label = child.label.substring(common);
+        middle.children = new Node[] {child};
+        middle.top = Arrays.copyOf(child.top, child.topCount);
+        middle.topCount = child.topCount;
+        node.children[c] = middle;
+        child = middle;
+      }
+      child.offer(hero);
+      node = child;
+      i += common;
+    }
+    node.heroes = Arrays.copyOf(node.heroes, node.heroes.length + 1);
+    node.heroes[node.heroes.length - 1] = hero;
+    size++;
+  }
+
+  /**
+   * Removes a hero if this exact hero is stored
+   *
+   * @param hero hero to remove
+   * @return true if the hero was removed
+   */
+  public boolean remove(Hero hero) {
+    String key = normalize(hero.name);
+    List<Node> path = new ArrayList<>();
+    Node node = root;
+    path.add(node);
+    int i = 0;
+    while (i < key.length()) {
+      int c = node.child(key.charAt(i));
+      if (c < 0 || !key.startsWith(node.children[c].label, i)) {
+        return false;
+      }
+      node = node.children[c];
+      path.add(node);
+      i += node.label.length();
+    }
+    int at = -1;
+    for (int h = 0; h < node.heroes.length; ++h) {
+      if (node.heroes[h] == hero) {
+        at = h;
+      }
+    }
+    if (at < 0) {
+      return false;
+    }
+    Hero[] heroes = new Hero[node.heroes.length - 1];
+    System.arraycopy(node.heroes, 0, heroes, 0, at);
+    System.arraycopy(node.heroes, at + 1, heroes, at, heroes.length - at);
+    node.heroes = heroes;
+    for (int p = path.size() - 1; p >= 0; --p) {
+      Node current = path.get(p);
+      if (p > 0 && current.heroes.length == 0 && current.children.length == 0) {
+        // drops the leaf that is now empty
+        Node parent = path.get(p - 1);
+        int c = parent.child(current.label.charAt(0));
+        Node[] children = new Node[parent.children.length - 1];
+        System.arraycopy(parent.children, 0, children, 0, c);
+        System.arraycopy(parent.children, c + 1, children, c, children.length - c);
+        parent.children = children;
+      } else if (Arrays.asList(current.top).subList(0, current.topCount).contains(hero)) {
+        current.refreshTop();
+      }
+    }
+    size--;
+    return true;
+  }
+
+  /**
+   * Removes every hero
+   */
+  public void clear() {
+    root.children = NO_CHILDREN;
+    root.heroes = NO_HEROES;
+    root.top = NO_HEROES;
+    root.topCount = 0;
+    size = 0;
+  }
+
+  /**
+   * @return number of heroes stored
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Walks down the tree along a normalized key
+   *
+   * @param key   normalized key
+   * @param whole true to only stop at a node ending exactly at the key
+   * @return node at the key or, if whole is false, the first node below it, null if there is none
+   */
+  private Node walk(String key, boolean whole) {
+    Node node = root;
+    int i = 0;
+    while (i < key.length()) {
+      int c = node.child(key.charAt(i));
+      if (c < 0) {
+        return null;
+      }
+      Node child = node.children[c];
+      if (key.startsWith(child.label, i)) {
+        i += child.label.length();
+      } else if (!whole && child.label.startsWith(key.substring(i))) {
+        // the key ends part way along this edge
+        return child;
+      } else {
+        return null;
+      }
+      node = child;
+    }
+    return node;
+  }
+
+  /**
+   * Finds the heroes whose name matches, ignoring case and accents
+   *
+   * @param name name to look up
+   * @return matching heroes, usually at most one
+   */
+  public List<Hero> find(String name) {
+    Node node = walk(normalize(name), true);
+    return node == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(node.heroes));
+  }
+
+  /**
+   * Completes a prefix, ignoring case and accents. Up to TOP heroes are read from the node the
+   * prefix leads to; longer lists visit the whole subtree.
+   *
+   * @param prefix start of the names
+   * @param limit  maximum number of heroes
+   * @return heroes whose name starts with prefix, highest rating first
+   */
+  public List<Hero> complete(String prefix, int limit) {
+    Node node = walk(normalize(prefix), false);
+    if (node == null) {
+      return new ArrayList<>();
+    }
+    if (limit <= node.topCount || node.topCount < TOP) {
+      return new ArrayList<>(Arrays.asList(node.top).subList(0, Math.min(limit, node.topCount)));
+    }
+    // keeps the best limit heroes in a heap whose head is the worst of them
+    PriorityQueue<Hero> best = new PriorityQueue<>(limit, HeroQuery.BY_RATING.reversed());
+    List<Node> pending = new ArrayList<>();
+    pending.add(node);
+    while (!pending.isEmpty()) {
+      Node current = pending.remove(pending.size() - 1);
+      for (Hero hero : current.heroes) {
+        best.add(hero);
+        if (best.size() > limit) {
+          best.poll();
+        }
+      }
+      pending.addAll(Arrays.asList(current.children));
+    }
+    List<Hero> results = new ArrayList<>(best);
+    results.sort(HeroQuery.BY_RATING);
+    return results;
+  }
+
+  /**
+   * Suggests heroes whose name is at most maxEdits insertions, deletions or substitutions away
+   * from a name, ignoring case and accents
+   *
+   * @param name     name that may be misspelled
+   * @param maxEdits largest edit distance suggested
+   * @param limit    maximum number of heroes
+   * @return closest heroes first, higher rating first among equally close ones
+   */
+  public List<Hero> suggest(String name, int maxEdits, int limit) {
+    String key = normalize(name);
+    int[] row = new int[key.length() + 1];
+    for (int i = 0; i < row.length; ++i) {
+      row[i] = i;
+    }
+    List<Hero> found = new ArrayList<>();
+    List<Integer> distances = new ArrayList<>();
+    for (Hero hero : root.heroes) {
+      if (key.length() <= maxEdits) {
+        found.add(hero);
+        distances.add(key.length());
+      }
+    }
+    for (Node child : root.children) {
+      suggest(child, key, row, maxEdits, found, distances);
+    }
+    Integer[] order = new Integer[found.size()];
+    for (int i = 0; i < order.length; ++i) {
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparingInt((Integer i) -> distances.get(i))
+        .thenComparing(i -> found.get(i), HeroQuery.BY_RATING));
+    List<Hero> results = new ArrayList<>(Math.min(limit, order.length));
+    for (int i = 0; i < order.length && results.size() < limit; ++i) {
+      results.add(found.get(order[i]));
+    }
+    return results;
+  }
+
+  /**
+   * Extends the edit distance table along the label of a node and its subtree
+   *
+   * @param node      node to visit
+   * @param key       normalized name
+   * @param parentRow distances from the prefixes of key to the name above node
+   * @param maxEdits  largest edit distance suggested
+   * @param found     receives the heroes close enough
+   * @param distances receives their distances
+   */
+  private static void suggest(Node node, String key, int[] parentRow, int maxEdits,
+      List<Hero> found, List<Integer> distances) {
+    int[] row = parentRow;
+    for (int l = 0; l < node.label.length(); ++l) {
+      char c = node.label.charAt(l);
+      int[] next = new int[row.length];
+      next[0] = row[0] + 1;
+      int smallest = next[0];
+      for (int i = 1; i < row.length; ++i) {
+        int substitute = row[i - 1] + (key.charAt(i - 1) == c ? 0 : 1);
+        next[i] = Math.min(substitute, Math.min(row[i] + 1, next[i - 1] + 1));
+        smallest = Math.min(smallest, next[i]);
+      }
+      if (smallest > maxEdits) {
+        // every name below is even further away
+        return;
+      }
+      row = next;
+    }
+    if (row[key.length()] <= maxEdits) {
+      for (Hero hero : node.heroes) {
+        found.add(hero);
+        distances.add(row[key.length()]);
+      }
+    }
+    for (Node child : node.children) {
+      suggest(child, key, row, maxEdits, found, distances);
+    }
+  }
+}
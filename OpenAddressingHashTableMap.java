@@ -0,0 +1,448 @@
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Implements the Hash Table data structure using open addressing. Keys and values are kept in
+ * parallel arrays and collisions are resolved with Robin Hood linear probing, so every operation
+ * runs a single probe sequence and no per-entry objects are allocated.
+ *
+ * @param <KeyType>
+ * @param <ValueType>
+ */
+public class OpenAddressingHashTableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+  // maximum load before the arrays are doubled
+  private static final double MAX_LOAD = 0.85;
+
+  private int capacity;
+  private int size = 0;
+  // capacity - 1, capacity is always a power of two
+  private int mask;
+  // number of entries allowed before resizing
+  private int threshold;
+  // parallel arrays holding each entry, a null key marks an empty slot
+  private Object[] keys;
+  private Object[] values;
+  // spread hash codes of the stored keys, used to find each entry's home slot
+  private int[] hashes;
+
+  /**
+   * Constructor with specified capacity, rounded up to the next power of two
+   *
+   * @param capacity
+   */
+  public OpenAddressingHashTableMap(int capacity) {
+    allocate(tableSizeFor(capacity));
+  }
+
+  /**
+   * Constructor with default capacity 16
+   */
+  public OpenAddressingHashTableMap() {
+    this(16);
+  }
+
+  /**
+   * Returns the smallest power of two that is greater than or equal to capacity
+   *
+   * @param capacity requested capacity
+   * @return power of two capacity
+   */
+  private static int tableSizeFor(int capacity) {
+    int n = 2;
+    while (n < capacity && n < (1 << 30)) {
+      n <<= 1;
+    }
+    return n;
+  }
+
+  /**
+   * Spreads the higher bits of the hash code into the lower bits used for masking
+   *
+   * @param key key to hash
+   * @return spread hash code
+   */
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Creates empty arrays with the given capacity
+   *
+   * @param newCapacity power of two capacity
+   */
+  private void allocate(int newCapacity) {
+    capacity = newCapacity;
+    mask = newCapacity - 1;
+    threshold = (int) (newCapacity * MAX_LOAD);
+    keys = new Object[newCapacity];
+    values = new Object[newCapacity];
+    hashes = new int[newCapacity];
+  }
+
+  /**
+   * Returns how far the entry in a slot is from its home slot
+   *
+   * @param slot index of an occupied slot
+   * @return probe distance of the entry
+   */
+  private int distance(int slot) {
+    return (slot - (hashes[slot] & mask)) & mask;
+  }
+
+  /**
+   * Returns the slot holding key, or a negative value encoding the slot where key belongs if it is
+   * not stored. Robin Hood ordering lets the probe stop as soon as it passes an entry that is
+   * closer to its home slot than the key would be.
+   *
+   * @param h   spread hash of key
+   * @param key key to look for
+   * @return slot index, or -(insertion slot + 1) if key is not stored
+   */
+  private int probe(int h, Object key) {
+    int slot = h & mask;
+    for (int dist = 0; keys[slot] != null; ++dist) {
+      if (distance(slot) < dist) {
+        break;
+      }
+      if (hashes[slot] == h && keys[slot].equals(key)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -(slot + 1);
+  }
+
+  /**
+   * Returns the slot holding key, or -1 if the key is not stored
+   *
+   * @param key key to look for
+   * @return slot index or -1
+   */
+  private int find(Object key) {
+    if (key == null) {
+      return -1;
+    }
+    int slot = probe(hash(key), key);
+    return slot < 0 ? -1 : slot;
+  }
+
+  /**
+   * Places an entry known not to be in the table, swapping with richer entries along the way
+   *
+   * @param h     spread hash of key
+   * @param key   key to insert
+   * @param value value to insert
+   * @param slot  slot to start probing from
+   * @param dist  probe distance of slot from the home slot of key
+   */
+  private void insert(int h, Object key, Object value, int slot, int dist) {
+    while (keys[slot] != null) {
+      int existing = distance(slot);
+      if (existing < dist) {
+        // the resident is closer to home than the new entry, so it gives up its slot
+        int tempHash = hashes[slot];
+        Object tempKey = keys[slot];
+        Object tempValue = values[slot];
+        hashes[slot] = h;
+        keys[slot] = key;
+        values[slot] = value;
+        h = tempHash;
+        key = tempKey;
+        value = tempValue;
+        dist = existing;
+      }
+      slot = (slot + 1) & mask;
+      dist++;
+    }
+    hashes[slot] = h;
+    keys[slot] = key;
+    values[slot] = value;
+  }
+
+  @Override
+  /**
+   * Returns true if key-value pair is successfully added to the table
+   *
+   * @return true if add is successful, false if key is null or already stored
+   */
+  public boolean put(KeyType key, ValueType value) {
+    if (key == null) {
+      return false;
+    }
+    int h = hash(key);
+    int slot = probe(h, key);
+    if (slot >= 0) {
+      return false;
+    }
+    addAt(h, key, value, slot);
+    return true;
+  }
+
+  /**
+   * Adds an entry for a key that a probe did not find, continuing from where the probe stopped
+   * unless the table has to be resized first
+   *
+   * @param h     spread hash of key
+   * @param key   key to add
+   * @param value value to add
+   * @param miss  negative result of probe() for key
+   */
+  private void addAt(int h, Object key, Object value, int miss) {
+    int slot = -(miss + 1);
+    if (size + 1 > threshold) {
+      resize();
+      slot = h & mask;
+    }
+    insert(h, key, value, slot, (slot - (h & mask)) & mask);
+    size++;
+  }
+
+  /**
+   * Doubles capacity of the arrays and reinserts every entry using its cached hash
+   */
+  private void resize() {
+    Object[] oldKeys = keys;
+    Object[] oldValues = values;
+    int[] oldHashes = hashes;
+    allocate(capacity * 2);
+    for (int i = 0; i < oldKeys.length; ++i) {
+      if (oldKeys[i] != null) {
+        insert(oldHashes[i], oldKeys[i], oldValues[i], oldHashes[i] & mask, 0);
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  /**
+   * Returns value associated with a unique key in the table
+   *
+   * @return ValueType value - associated with key
+   */
+  public ValueType get(KeyType key) throws NoSuchElementException {
+    int slot = find(key);
+    if (slot < 0) {
+      throw new NoSuchElementException();
+    }
+    return (ValueType) values[slot];
+  }
+
+  @Override
+  /**
+   * Returns current number of entries in the table
+   *
+   * @return int size - entries in table
+   */
+  public int size() {
+    return size;
+  }
+
+  @Override
+  /**
+   * Checks if the table contains a certain key
+   *
+   * @return true if key is found, false otherwise
+   */
+  public boolean containsKey(KeyType key) {
+    return find(key) >= 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  /**
+   * Removes key-value pair from the table
+   *
+   * @return value that was removed, null if key was not found
+   */
+  public ValueType remove(KeyType key) {
+    int slot = find(key);
+    if (slot < 0) {
+      return null;
+    }
+    ValueType removed = (ValueType) values[slot];
+    removeAt(slot);
+    return removed;
+  }
+
+  /**
+   * Empties a slot, shifting the following entries back so no tombstones are left behind
+   *
+   * @param slot occupied slot to empty
+   */
+  private void removeAt(int slot) {
+    int next = (slot + 1) & mask;
+    while (keys[next] != null && distance(next) > 0) {
+      hashes[slot] = hashes[next];
+      keys[slot] = keys[next];
+      values[slot] = values[next];
+      slot = next;
+      next = (next + 1) & mask;
+    }
+    keys[slot] = null;
+    values[slot] = null;
+    hashes[slot] = 0;
+    size--;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  /**
+   * Returns value associated with key, or defaultValue if key is not stored
+   *
+   * @return value associated with key, defaultValue if key is not found
+   */
+  public ValueType getOrDefault(KeyType key, ValueType defaultValue) {
+    int slot = find(key);
+    return slot < 0 ? defaultValue : (ValueType) values[slot];
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  /**
+   * Adds key-value pair only if key is not stored yet, with a single probe
+   *
+   * @return value already stored for key, null if the new value was added
+   */
+  public ValueType putIfAbsent(KeyType key, ValueType value) {
+    if (key == null) {
+      return null;
+    }
+    int h = hash(key);
+    int slot = probe(h, key);
+    if (slot >= 0) {
+      return (ValueType) values[slot];
+    }
+    addAt(h, key, value, slot);
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  /**
+   * Replaces the value associated with key, only if key is already stored
+   *
+   * @return previous value associated with key, null if key was not found
+   */
+  public ValueType replace(KeyType key, ValueType value) {
+    int slot = find(key);
+    if (slot < 0) {
+      return null;
+    }
+    ValueType previous = (ValueType) values[slot];
+    values[slot] = value;
+    return previous;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  /**
+   * Returns value associated with key, computing and adding it first if key is not stored yet
+   *
+   * @return value associated with key after the call, null if mappingFunction returned null
+   */
+  public ValueType computeIfAbsent(KeyType key,
+      Function<? super KeyType, ? extends ValueType> mappingFunction) {
+    if (key == null) {
+      return null;
+    }
+    int h = hash(key);
+    int slot = probe(h, key);
+    if (slot >= 0) {
+      return (ValueType) values[slot];
+    }
+    ValueType value = mappingFunction.apply(key);
+    if (value != null) {
+      addAt(h, key, value, slot);
+    }
+    return value;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  /**
+   * Associates key with the result of remappingFunction applied to key and its current value
+   * (null if not stored). A null result removes key.
+   *
+   * @return new value associated with key, null if key is no longer stored
+   */
+  public ValueType compute(KeyType key,
+      BiFunction<? super KeyType, ? super ValueType, ? extends ValueType> remappingFunction) {
+    if (key == null) {
+      return null;
+    }
+    int h = hash(key);
+    int slot = probe(h, key);
+    ValueType value =
+        remappingFunction.apply(key, slot < 0 ? null : (ValueType) values[slot]);
+    return store(h, key, slot, value);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  /**
+   * Associates key with value if key is not stored yet, otherwise with the result of
+   * remappingFunction applied to the current value and value. A null result removes key.
+   *
+   * @return new value associated with key, null if key is no longer stored
+   */
+  public ValueType merge(KeyType key, ValueType value,
+      BiFunction<? super ValueType, ? super ValueType, ? extends ValueType> remappingFunction) {
+    if (key == null) {
+      return null;
+    }
+    int h = hash(key);
+    int slot = probe(h, key);
+    ValueType merged = slot < 0 || values[slot] == null ? value
+        : remappingFunction.apply((ValueType) values[slot], value);
+    return store(h, key, slot, merged);
+  }
+
+  /**
+   * Applies the result of compute() or merge() to the slot that was probed: updates it in place,
+   * adds a new entry, or removes it when value is null
+   *
+   * @param h     spread hash of key
+   * @param key   key being updated
+   * @param slot  result of probe() for key
+   * @param value new value, null to remove key
+   * @return value
+   */
+  private ValueType store(int h, KeyType key, int slot, ValueType value) {
+    if (slot >= 0 && value != null) {
+      values[slot] = value;
+    } else if (slot >= 0) {
+      removeAt(slot);
+    } else if (value != null) {
+      addAt(h, key, value, slot);
+    }
+    return value;
+  }
+
+  @Override
+  /**
+   * Clears all key-value pairs stored in this collection
+   */
+  public void clear() {
+    allocate(capacity);
+    size = 0;
+  }
+
+  @Override
+  /**
+   * Converts values stored in the table to formatted String
+   *
+   * @return String formatted String of table
+   */
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < capacity; ++i) {
+      if (keys[i] != null) {
+        builder.append(values[i]).append('\n');
+      }
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,317 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Parses a HeroDex text file, 4 lines per hero, on a fork-join pool. The file is memory-mapped
+ * and cut into byte ranges. A first parallel pass counts the line breaks in every range, which
+ * tells each range the line number it starts at, so a second parallel pass can skip ahead to the
+ * first record that starts inside its range and parse records until the next range begins. Each
+ * range is parsed into its own list, and the lists are returned in file order.
+ */
+public class ParallelHeroLoader {
+
+  // default number of bytes handed to one task
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+  // lines that make up one hero record
+  private static final int LINES_PER_HERO = 4;
+
+  private final ForkJoinPool pool;
+  private final int chunkSize;
+  private final Consumer<String> progress;
+  // results of the last parse()
+  private int heroCount;
+  private long countNanos;
+  private long parseNanos;
+
+  /**
+   * Constructor with specified pool, chunk size and progress listener
+   *
+   * @param pool      pool to run the count and parse tasks on
+   * @param chunkSize number of bytes handed to one task
+   * @param progress  receives progress and timing messages, called from pool threads
+   */
+  public ParallelHeroLoader(ForkJoinPool pool, int chunkSize, Consumer<String> progress) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+    }
+    this.pool = pool;
+    this.chunkSize = chunkSize;
+    this.progress = progress;
+  }
+
+  /**
+   * Constructor using the common pool and default chunk size
+   *
+   * @param progress receives progress and timing messages, called from pool threads
+   */
+  public ParallelHeroLoader(Consumer<String> progress) {
+    this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE, progress);
+  }
+
+  /**
+   * Parses every hero in a text file
+   *
+   * @param fileName text file to read
+   * @return heroes of each chunk, in file order
+   * @throws IOException if the file cannot be read, is larger than 2 GB, or has a malformed
+   *                     record
+   */
+  public List<List<Hero>> parse(String fileName) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Text file is larger than 2 GB, use a snapshot instead: " + fileName);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    int size = buffer.capacity();
+    int chunks = Math.max(1, (int) (((long) size + chunkSize - 1) / chunkSize));
+
+    // phase 1: count line breaks per chunk
+    long start = System.nanoTime();
+    List<Callable<Integer>> countTasks = new ArrayList<>(chunks);
+    for (int i = 0; i < chunks; ++i) {
+      int from = (int) Math.min(size, (long) i * chunkSize);
+      int to = (int) Math.min(size, (long) from + chunkSize);
+      countTasks.add(() -> countLineBreaks(buffer, from, to));
+    }
+    List<Integer> lineBreaks = runAll(countTasks);
+    countNanos = System.nanoTime() - start;
+    progress.accept(String.format("count: %d chunks of %d bytes in %.1f ms", chunks, chunkSize,
+        countNanos / 1e6));
+
+    // phase 2: parse the records starting in each chunk
+    start = System.nanoTime();
+    AtomicInteger parsed = new AtomicInteger();
+    List<Callable<List<Hero>>> parseTasks = new ArrayList<>(chunks);
+    long linesBefore = 0;
+    for (int i = 0; i < chunks; ++i) {
+      int from = (int) Math.min(size, (long) i * chunkSize);
+      int to = (int) Math.min(size, (long) from + chunkSize);
+      long firstLine = linesBefore;
+      parseTasks.add(() -> {
+        List<Hero> heroes = parseChunk(buffer, from, to, firstLine);
+        int done = parsed.incrementAndGet();
+        // reports roughly every tenth of the chunks
+        if (done * 10L / chunks != (done - 1) * 10L / chunks) {
+          progress.accept("parse: " + done + "/" + chunks + " chunks");
+        }
+        return heroes;
+      });
+      linesBefore += lineBreaks.get(i);
+    }
+    List<List<Hero>> heroes = runAll(parseTasks);
+    parseNanos = System.nanoTime() - start;
+    heroCount = 0;
+    for (List<Hero> chunk : heroes) {
+      heroCount += chunk.size();
+    }
+    progress.accept(String.format("parse: %d heroes in %.1f ms", heroCount, parseNanos / 1e6));
+    return heroes;
+  }
+
+  /**
+   * Runs tasks on the pool and returns their results in task order
+   *
+   * @param tasks tasks to run
+   * @return result of each task
+   * @throws IOException if a task failed with an IOException
+   */
+  private <T> List<T> runAll(List<Callable<T>> tasks) throws IOException {
+    List<T> results = new ArrayList<>(tasks.size());
+    try {
+      for (Future<T> future : pool.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while loading heroes", e);
+    } catch (ExecutionException e) {
+      // a fork-join pool wraps the exception of a task in RuntimeExceptions
+      for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+      }
+      throw new IOException("Failed to load heroes", e.getCause());
+    }
+    return results;
+  }
+
+  /**
+   * Counts line breaks in a byte range
+   *
+   * @param buffer mapped file
+   * @param from   first byte of the range
+   * @param to     end of the range, exclusive
+   * @return number of '\n' bytes in the range
+   */
+  private static int countLineBreaks(MappedByteBuffer buffer, int from, int to) {
+    int count = 0;
+    for (int i = from; i < to; ++i) {
+      if (buffer.get(i) == '\n') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Parses every record whose first line starts inside a byte range. The last record may run
+   * past the end of the range.
+   *
+   * @param buffer       mapped file
+   * @param from         first byte of the range
+   * @param to           end of the range, exclusive
+   * @param breaksBefore number of line breaks before the range
+   * @return heroes of the records starting in the range
+   * @throws IOException if a record is incomplete or has a malformed number
+   */
+  private static List<Hero> parseChunk(MappedByteBuffer buffer, int from, int to,
+      long breaksBefore) throws IOException {
+    int size = buffer.capacity();
+    List<Hero> heroes = new ArrayList<>();
+    // finds the first line starting at or after from, and its line number
+    int position = from;
+    long line = breaksBefore;
+    if (from > 0 && buffer.get(from - 1) != '\n') {
+      position = nextLine(buffer, from);
+      line++;
+    }
+    // skips lines until the start of a record
+    while (line % LINES_PER_HERO != 0 && position < to) {
+      position = nextLine(buffer, position);
+      line++;
+    }
+
+    int[] bounds = new int[2 * LINES_PER_HERO];
+    while (position < to && position < size) {
+      for (int i = 0; i < LINES_PER_HERO; ++i) {
+        if (position >= size) {
+          throw new IOException("Incomplete hero record at line " + (line + 1));
+        }
+        int end = nextLine(buffer, position);
+        bounds[2 * i] = position;
+        // excludes the line break and a carriage return before it
+        int contentEnd = end;
+        if (contentEnd > position && buffer.get(contentEnd - 1) == '\n') {
+          contentEnd--;
+        }
+        if (contentEnd > position && buffer.get(contentEnd - 1) == '\r') {
+          contentEnd--;
+        }
+        bounds[2 * i + 1] = contentEnd;
+        position = end;
+      }
+      String name = decode(buffer, bounds[0], bounds[1]);
+      String description = decode(buffer, bounds[2], bounds[3]);
+      int traitNumber = parseInt(buffer, bounds[4], bounds[5], line + 3);
+      int rating = parseInt(buffer, bounds[6], bounds[7], line + 4);
+      if (traitNumber < 0 || traitNumber >= Hero.Traits.values().length) {
+        throw new IOException("Invalid trait " + traitNumber + " at line " + (line + 3));
+      }
+      if (rating < 0 || rating > RatingIndex.MAX_RATING) {
+        throw new IOException("Invalid rating " + rating + " at line " + (line + 4));
+      }
+      heroes.add(new Hero(name, description, Hero.Traits.values()[traitNumber], rating));
+      line += LINES_PER_HERO;
+    }
+    return heroes;
+  }
+
+  /**
+   * Returns the position just after the next line break, or the end of the file
+   *
+   * @param buffer   mapped file
+   * @param position position inside a line
+   * @return start of the following line
+   */
+  private static int nextLine(MappedByteBuffer buffer, int position) {
+    int size = buffer.capacity();
+    while (position < size && buffer.get(position) != '\n') {
+      position++;
+    }
+    return Math.min(size, position + 1);
+  }
+
+  /**
+   * Decodes a UTF-8 byte range
+   *
+   * @param buffer mapped file
+   * @param from   first byte
+   * @param to     end, exclusive
+   * @return decoded string
+   */
+  private static String decode(MappedByteBuffer buffer, int from, int to) {
+    byte[] bytes = new byte[to - from];
+    buffer.get(from, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Parses a decimal integer from a byte range, ignoring surrounding spaces
+   *
+   * @param buffer mapped file
+   * @param from   first byte
+   * @param to     end, exclusive
+   * @param line   line number for error messages
+   * @return parsed number
+   * @throws IOException if the range is not a number
+   */
+  private static int parseInt(MappedByteBuffer buffer, int from, int to, long line)
+      throws IOException {
+    while (from < to && buffer.get(from) == ' ') {
+      from++;
+    }
+    while (to > from && buffer.get(to - 1) == ' ') {
+      to--;
+    }
+    boolean negative = from < to && buffer.get(from) == '-';
+    int i = negative ? from + 1 : from;
+    if (i >= to || to - i > 9) {
+      throw new IOException("Expected a number at line " + line);
+    }
+    int value = 0;
+    for (; i < to; ++i) {
+      byte digit = buffer.get(i);
+      if (digit < '0' || digit > '9') {
+        throw new IOException("Expected a number at line " + line);
+      }
+      value = value * 10 + (digit - '0');
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * @return number of heroes parsed by the last parse()
+   */
+  public int getHeroCount() {
+    return heroCount;
+  }
+
+  /**
+   * @return nanoseconds the last parse() spent counting line breaks
+   */
+  public long getCountNanos() {
+    return countNanos;
+  }
+
+  /**
+   * @return nanoseconds the last parse() spent parsing records
+   */
+  public long getParseNanos() {
+    return parseNanos;
+  }
+}
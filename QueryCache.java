@@ -0,0 +1,256 @@
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Cache of query results kept in front of HeroDex.query() and the other query paths, evicting
+ * the least recently used results once their estimated size passes a budget in bytes.
+ *
+ * Every pair of trait and rating is a cell with its own version stamp, moved on by every hero
+ * added to or removed from that cell. A result is stored with its footprint, the cells holding
+ * every hero that can match the query, and is only used while none of those stamps has moved.
+ * Adding a Strength hero rated 60 thus keeps the results of "Speed heroes" and "rating 90 or
+ * more", and only the results that hero could appear in are computed again.
+ */
+public class QueryCache {
+
+  // number of ratings and of cells
+  static final int RATINGS = RatingIndex.MAX_RATING + 1;
+  static final int CELLS = Hero.Traits.values().length * RATINGS;
+
+  public static final long DEFAULT_MAX_BYTES = 1 << 20;
+
+  // estimated bytes of an entry with its key, footprint and map node, besides its result
+  private static final long ENTRY_BYTES = 256;
+
+  private final long[] stamps = new long[CELLS];
+  // moved on with every stamp, so entries can be checked without adding up their stamps
+  private long version = 0;
+  private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final long maxBytes;
+  private long bytes = 0;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long invalidations;
+
+  /**
+   * A cached result with the stamps it was computed at
+   */
+  private static class Entry {
+    final Object result;
+    final BitSet footprint;
+    final long stampSum;
+    final long bytes;
+    // version at which the stamps of the footprint were last checked
+    long checked;
+
+    Entry(Object result, BitSet footprint, long stampSum, long bytes, long checked) {
+      this.result = result;
+      this.footprint = footprint;
+      this.stampSum = stampSum;
+      this.bytes = bytes;
+      this.checked = checked;
+    }
+  }
+
+  /**
+   * Constructor for a cache holding about DEFAULT_MAX_BYTES of results
+   */
+  public QueryCache() {
+    this(DEFAULT_MAX_BYTES);
+  }
+
+  /**
+   * @param maxBytes estimated size of the results kept, at least one result is always kept
+   */
+  public QueryCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @param trait  trait of the cell
+   * @param rating rating of the cell
+   * @return index of the cell
+   */
+  static int cell(Hero.Traits trait, int rating) {
+    return trait.ordinal() * RATINGS + rating;
+  }
+
+  /**
+   * @return footprint of a query any hero can match
+   */
+  static BitSet everything() {
+    BitSet cells = new BitSet(CELLS);
+    cells.set(0, CELLS);
+    return cells;
+  }
+
+  /**
+   * Returns the cached result for a key if no hero was added to or removed from its footprint
+   * since, or computes and caches it otherwise
+   *
+   * @param <T>       type of the result, which must not be modified once cached
+   * @param key       key of the query, compared with equals()
+   * @param footprint cells holding every hero that can match the query
+   * @param compute   computes the result
+   * @return cached or computed result
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, BitSet footprint, Supplier<T> compute) {
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      if (entry.checked == version || stampSum(entry.footprint) == entry.stampSum) {
+        entry.checked = version;
+        hits++;
+        return (T) entry.result;
+      }
+      entries.remove(key);
+      bytes -= entry.bytes;
+      invalidations++;
+    }
+    misses++;
+    T result = compute.get();
+    entry = new Entry(result, footprint, stampSum(footprint), ENTRY_BYTES + bytesOf(result),
+        version);
+    entries.put(key, entry);
+    bytes += entry.bytes;
+    evict();
+    return result;
+  }
+
+  /**
+   * Adds up the stamps of the cells of a footprint
+   *
+   * @param footprint cells to add up
+   * @return sum of the stamps, which only grows
+   */
+  private long stampSum(BitSet footprint) {
+    long sum = 0;
+    for (int cell = footprint.nextSetBit(0); cell >= 0; cell = footprint.nextSetBit(cell + 1)) {
+      sum += stamps[cell];
+    }
+    return sum;
+  }
+
+  /**
+   * Estimates the size of a result. Heroes are shared with the HeroDex and only count as
+   * references.
+   *
+   * @param result result to measure
+   * @return estimated size in bytes
+   */
+  private static long bytesOf(Object result) {
+    if (result instanceof Collection) {
+      return 32 + 8L * ((Collection<?>) result).size();
+    }
+    return 16;
+  }
+
+  /**
+   * Drops the least recently used results until the cache fits its budget again
+   */
+  private void evict() {
+    Iterator<Map.Entry<Object, Entry>> eldest = entries.entrySet().iterator();
+    while (bytes > maxBytes && entries.size() > 1) {
+      bytes -= eldest.next().getValue().bytes;
+      eldest.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Records that a hero was added to or removed from the HeroDex, so the results whose footprint
+   * holds its cell are computed again
+   *
+   * @param hero hero added or removed
+   */
+  public void changed(Hero hero) {
+    stamps[cell(hero.trait(), hero.rating)]++;
+    version++;
+  }
+
+  /**
+   * Drops every result, for example after the heroes were cleared or loaded again
+   */
+  public void clear() {
+    invalidations += entries.size();
+    entries.clear();
+    bytes = 0;
+    version++;
+  }
+
+  /**
+   * @return number of results cached
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return estimated size of the results cached
+   */
+  public long bytes() {
+    return bytes;
+  }
+
+  /**
+   * @return number of lookups answered from the cache
+   */
+  public long hits() {
+    return hits;
+  }
+
+  /**
+   * @return number of lookups that computed their result
+   */
+  public long misses() {
+    return misses;
+  }
+
+  /**
+   * @return share of the lookups answered from the cache, 0 before the first lookup
+   */
+  public double hitRate() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  /**
+   * @return number of results dropped to stay within the budget
+   */
+  public long evictions() {
+    return evictions;
+  }
+
+  /**
+   * @return number of results dropped because a hero of their footprint changed
+   */
+  public long invalidations() {
+    return invalidations;
+  }
+
+  /**
+   * Clears the lookup counters
+   */
+  public void resetCounters() {
+    hits = 0;
+    misses = 0;
+    evictions = 0;
+    invalidations = 0;
+  }
+
+  @Override
+  /**
+   * Returns the counters and size of the cache in one line
+   */
+  public String toString() {
+    return String.format("%d results, %d bytes, %d hits, %d misses (%.1f%% hit rate), "
+        + "%d evicted, %d invalidated", size(), bytes, hits, misses, 100 * hitRate(), evictions,
+        invalidations);
+  }
+}
@@ -0,0 +1,225 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+
+/**
+ * Bitmap index used by HeroQuery. Every hero gets a small integer id, reused after the hero is
+ * removed so ids stay dense, and each trait and each rating has a bitmap of the ids holding it.
+ * Queries combine these bitmaps with word-at-a-time AND, OR and AND NOT instead of looking at
+ * heroes one by one. Names are only sorted when a prefix query follows the addition of new names,
+ * so loading many heroes does not pay for a sorted map.
+ */
+public class QueryIndex {
+
+  // heroes by id, null for free ids
+  private Hero[] heroes = new Hero[16];
+  private final HashMap<String, Integer> ids = new HashMap<>();
+  // every name in order, may hold removed names; null after new names were added
+  private String[] sortedNames = null;
+  private final BitSet live = new BitSet();
+  private final BitSet free = new BitSet();
+  private int nextId = 0;
+
+  private final EnumMap<Hero.Traits, BitSet> traits = new EnumMap<>(Hero.Traits.class);
+  private final int[] traitCounts = new int[Hero.Traits.values().length];
+  private final BitSet[] ratings = new BitSet[RatingIndex.MAX_RATING + 1];
+  private final int[] ratingCounts = new int[RatingIndex.MAX_RATING + 1];
+
+  /**
+   * Constructor creating an empty bitmap per trait and rating
+   */
+  public QueryIndex() {
+    for (Hero.Traits trait : Hero.Traits.values()) {
+      traits.put(trait, new BitSet());
+    }
+    for (int rating = 0; rating < ratings.length; ++rating) {
+      ratings[rating] = new BitSet();
+    }
+  }
+
+  /**
+   * Adds a hero, replacing a hero with the same name
+   *
+   * @param hero hero to add
+   */
+  public void add(Hero hero) {
+    Integer existing = ids.get(hero.name);
+    if (existing != null) {
+      clearBits(existing);
+    }
+    int id;
+    if (existing != null) {
+      id = existing;
+    } else if (!free.isEmpty()) {
+      id = free.nextSetBit(0);
+      free.clear(id);
+    } else {
+      id = nextId++;
+    }
+    if (id >= heroes.length) {
+      Hero[] larger = new Hero[heroes.length * 2];
+      System.arraycopy(heroes, 0, larger, 0, heroes.length);
+      heroes = larger;
+    }
+    heroes[id] = hero;
+    if (existing == null) {
+      ids.put(hero.name, id);
+      sortedNames = null;
+    }
+    live.set(id);
+    traits.get(hero.trait()).set(id);
+    traitCounts[hero.traitNumber]++;
+    ratings[hero.rating].set(id);
+    ratingCounts[hero.rating]++;
+  }
+
+  /**
+   * Removes a hero if this exact hero is indexed
+   *
+   * @param hero hero to remove
+   * @return true if the hero was removed
+   */
+  public boolean remove(Hero hero) {
+    Integer id = ids.get(hero.name);
+    if (id == null || heroes[id] != hero) {
+      return false;
+    }
+    clearBits(id);
+    ids.remove(hero.name);
+    heroes[id] = null;
+    live.clear(id);
+    free.set(id);
+    return true;
+  }
+
+  /**
+   * Clears the trait and rating bits of an id
+   *
+   * @param id id of an indexed hero
+   */
+  private void clearBits(int id) {
+    Hero hero = heroes[id];
+    traits.get(hero.trait()).clear(id);
+    traitCounts[hero.traitNumber]--;
+    ratings[hero.rating].clear(id);
+    ratingCounts[hero.rating]--;
+  }
+
+  /**
+   * Removes every hero
+   */
+  public void clear() {
+    heroes = new Hero[16];
+    ids.clear();
+    sortedNames = null;
+    live.clear();
+    free.clear();
+    nextId = 0;
+    for (BitSet bitmap : traits.values()) {
+      bitmap.clear();
+    }
+    for (BitSet bitmap : ratings) {
+      bitmap.clear();
+    }
+    Arrays.fill(traitCounts, 0);
+    Arrays.fill(ratingCounts, 0);
+  }
+
+  /**
+   * @return number of heroes indexed
+   */
+  public int size() {
+    return ids.size();
+  }
+
+  /**
+   * @param id id of an indexed hero
+   * @return hero with that id
+   */
+  Hero hero(int id) {
+    return heroes[id];
+  }
+
+  /**
+   * @return bitmap of every indexed id, not to be modified
+   */
+  BitSet live() {
+    return live;
+  }
+
+  /**
+   * @param trait trait to match
+   * @return bitmap of the heroes with the trait, not to be modified
+   */
+  BitSet trait(Hero.Traits trait) {
+    return traits.get(trait);
+  }
+
+  /**
+   * @param trait trait to match
+   * @return number of heroes with the trait
+   */
+  int traitCount(Hero.Traits trait) {
+    return traitCounts[trait.ordinal()];
+  }
+
+  /**
+   * @param rating rating to match
+   * @return bitmap of the heroes with exactly this rating, not to be modified
+   */
+  BitSet rating(int rating) {
+    return ratings[rating];
+  }
+
+  /**
+   * @param rating rating to match
+   * @return number of heroes with exactly this rating
+   */
+  int ratingCount(int rating) {
+    return ratingCounts[rating];
+  }
+
+  /**
+   * Finds the range of sorted names starting with a prefix, sorting the names first if needed
+   *
+   * @param prefix start of the names to match
+   * @return first index and end index of the range
+   */
+  private int[] prefixRange(String prefix) {
+    if (sortedNames == null) {
+      sortedNames = ids.keySet().toArray(new String[0]);
+      Arrays.sort(sortedNames);
+    }
+    // every name starting with prefix sorts below prefix followed by the highest char
+    int from = Arrays.binarySearch(sortedNames, prefix);
+    int to = Arrays.binarySearch(sortedNames, prefix + Character.MAX_VALUE);
+    return new int[] {from >= 0 ? from : -from - 1, to >= 0 ? to : -to - 1};
+  }
+
+  /**
+   * @param prefix start of the names to match
+   * @return upper bound on the number of heroes whose name starts with prefix
+   */
+  int prefixCount(String prefix) {
+    int[] range = prefixRange(prefix);
+    return range[1] - range[0];
+  }
+
+  /**
+   * @param prefix start of the names to match
+   * @return bitmap of the heroes whose name starts with prefix
+   */
+  BitSet withPrefix(String prefix) {
+    int[] range = prefixRange(prefix);
+    BitSet result = new BitSet();
+    for (int i = range[0]; i < range[1]; ++i) {
+      // removed names stay in the array until it is sorted again
+      Integer id = ids.get(sortedNames[i]);
+      if (id != null) {
+        result.set(id);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Index of heroes by rating, kept up to date on every add and remove. Ratings are stored in a
+ * byte, so there is one bucket per possible rating, each holding its heroes sorted by name.
+ * Iterating from the highest bucket down lists heroes from highest to lowest rating without
+ * touching the hash table, and counting the heroes above a rating adds up at most 128 bucket
+ * sizes.
+ */
+public class RatingIndex implements Iterable<Hero> {
+
+  // highest rating a hero can have
+  public static final int MAX_RATING = Byte.MAX_VALUE;
+
+  private final List<TreeMap<String, Hero>> buckets = new ArrayList<>(MAX_RATING + 1);
+  private int size = 0;
+
+  /**
+   * Constructor creating one empty bucket per rating
+   */
+  public RatingIndex() {
+    for (int rating = 0; rating <= MAX_RATING; ++rating) {
+      buckets.add(new TreeMap<>());
+    }
+  }
+
+  /**
+   * Adds a hero, replacing a hero with the same name and rating
+   *
+   * @param hero hero to add
+   */
+  public void add(Hero hero) {
+    if (buckets.get(hero.rating).put(hero.name, hero) == null) {
+      size++;
+    }
+  }
+
+  /**
+   * Removes a hero if this exact hero is indexed
+   *
+   * @param hero hero to remove
+   * @return true if the hero was removed
+   */
+  public boolean remove(Hero hero) {
+    if (buckets.get(hero.rating).remove(hero.name, hero)) {
+      size--;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Removes every hero
+   */
+  public void clear() {
+    for (TreeMap<String, Hero> bucket : buckets) {
+      bucket.clear();
+    }
+    size = 0;
+  }
+
+  /**
+   * @return number of heroes indexed
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return true if no hero is indexed
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the hero with the highest rating, the first by name among ties
+   *
+   * @return highest rated hero, null if there is none
+   */
+  public Hero first() {
+    Iterator<Hero> iterator = iterator();
+    return iterator.hasNext() ? iterator.next() : null;
+  }
+
+  /**
+   * Returns the k highest rated heroes in O(k) plus at most one step per rating
+   *
+   * @param k number of heroes
+   * @return up to k heroes, highest rating first
+   */
+  public List<Hero> topK(int k) {
+    List<Hero> top = new ArrayList<>(Math.min(k, size));
+    Iterator<Hero> iterator = iterator();
+    while (top.size() < k && iterator.hasNext()) {
+      top.add(iterator.next());
+    }
+    return top;
+  }
+
+  /**
+   * Returns the position a hero with this rating has in the ranking
+   *
+   * @param rating rating to rank
+   * @return 1 plus the number of heroes rated higher
+   */
+  public int rank(int rating) {
+    return countAbove(rating) + 1;
+  }
+
+  /**
+   * Counts the heroes rated at least minimumRating
+   *
+   * @param minimumRating lowest rating counted
+   * @return number of heroes rated minimumRating or higher
+   */
+  public int countAtLeast(int minimumRating) {
+    return countAbove(minimumRating - 1);
+  }
+
+  /**
+   * Counts the heroes rated higher than rating
+   *
+   * @param rating rating to compare with
+   * @return number of heroes rated strictly higher
+   */
+  private int countAbove(int rating) {
+    int count = 0;
+    for (int r = MAX_RATING; r > rating && r >= 0; --r) {
+      count += buckets.get(r).size();
+    }
+    return count;
+  }
+
+  /**
+   * Returns the heroes rated at least minimumRating, highest rating first
+   *
+   * @param minimumRating lowest rating included
+   * @return view of the matching heroes
+   */
+  public Iterable<Hero> atLeast(int minimumRating) {
+    return () -> iterator(minimumRating);
+  }
+
+  /**
+   * Returns the heroes that come after a hero in the ranking, down to minimumRating. Only the
+   * rating and name of that hero are used, so it does not need to be indexed any more.
+   *
+   * @param rating        rating of the hero to start after
+   * @param name          name of the hero to start after
+   * @param minimumRating lowest rating included
+   * @return view of the heroes ranked below (rating, name), highest rating first
+   */
+  public Iterable<Hero> after(int rating, String name, int minimumRating) {
+    return () -> iterator(minimumRating, rating, name);
+  }
+
+  /**
+   * Returns the heroes with exactly one rating, sorted by name
+   *
+   * @param rating rating to list
+   * @return view of the bucket of that rating
+   */
+  public Iterable<Hero> withRating(int rating) {
+    return buckets.get(rating).values();
+  }
+
+  @Override
+  /**
+   * Iterates over every hero, highest rating first and by name among ties
+   */
+  public Iterator<Hero> iterator() {
+    return iterator(0);
+  }
+
+  /**
+   * Iterates over the heroes rated at least minimumRating
+   *
+   * @param minimumRating lowest rating included
+   * @return iterator, highest rating first
+   */
+  private Iterator<Hero> iterator(int minimumRating) {
+    return iterator(minimumRating, MAX_RATING + 1, null);
+  }
+
+  /**
+   * Iterates over the heroes rated at least minimumRating that are ranked below (rating, name)
+   *
+   * @param minimumRating lowest rating included
+   * @param fromRating    rating to start in, MAX_RATING + 1 to start at the top
+   * @param afterName     first name of the starting rating that is skipped, with every name
+   *                      before it
+   * @return iterator, highest rating first
+   */
+  private Iterator<Hero> iterator(int minimumRating, int fromRating, String afterName) {
+    int lowest = Math.max(0, minimumRating);
+    int start = Math.min(MAX_RATING + 1, fromRating);
+    return new Iterator<Hero>() {
+      private int rating = start;
+      private Iterator<Hero> bucket = start <= MAX_RATING && start >= lowest
+          ? buckets.get(start).tailMap(afterName, false).values().iterator()
+          : null;
+
+      public boolean hasNext() {
+        while (bucket == null || !bucket.hasNext()) {
+          if (rating <= lowest) {
+            return false;
+          }
+          bucket = buckets.get(--rating).values().iterator();
+        }
+        return true;
+      }
+
+      public Hero next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return bucket.next();
+      }
+    };
+  }
+}
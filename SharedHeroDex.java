@@ -0,0 +1,153 @@
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Gives several threads access to one HeroDex. Lookups, listings and comparisons only read the
+ * hash table, the rating and trait indexes and the name trie, so they hold a shared read lock
+ * and run side by side; adds hold the write lock. The indexes a HeroDex builds on first use are
+ * built up front, as building them from a lookup would change them under the read lock.
+ *
+ * Only the operations below are safe to share. Queries through HeroDex.query() update the query
+ * cache and must not be mixed in, and the hash table has to keep its default of rehashing all
+ * at once with lookup counting off, as both change the table on a lookup.
+ */
+public class SharedHeroDex {
+
+  private final HeroDex heroDex;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Lock read = lock.readLock();
+  private final Lock write = lock.writeLock();
+
+  /**
+   * @param heroDex HeroDex to share, not to be used directly any more
+   */
+  public SharedHeroDex(HeroDex heroDex) {
+    this.heroDex = heroDex;
+    write.lock();
+    try {
+      heroDex.buildIndexes();
+    } finally {
+      write.unlock();
+    }
+  }
+
+  /**
+   * @param name name of the hero, ignoring case and accents if no hero has it exactly
+   * @return hero with that name, null if there is none or several match
+   */
+  public Hero find(String name) {
+    read.lock();
+    try {
+      return heroDex.findHero(name);
+    } finally {
+      read.unlock();
+    }
+  }
+
+  /**
+   * @param name  name that did not match a hero
+   * @param limit maximum number of heroes
+   * @return heroes whose name starts with or is close to name
+   */
+  public List<Hero> suggest(String name, int limit) {
+    read.lock();
+    try {
+      return heroDex.suggestHeroes(name, limit);
+    } finally {
+      read.unlock();
+    }
+  }
+
+  /**
+   * @param trait    trait to match
+   * @param token    null for the first page, otherwise the next token of the previous page
+   * @param pageSize number of heroes per page
+   * @return page of the heroes with the trait, sorted by name
+   * @see HeroDex#heroesWithTrait(Hero.Traits, String, int)
+   */
+  public HeroPage withTrait(Hero.Traits trait, String token, int pageSize) {
+    read.lock();
+    try {
+      return heroDex.heroesWithTrait(trait, token, pageSize);
+    } finally {
+      read.unlock();
+    }
+  }
+
+  /**
+   * @param minimumRating lowest rating listed
+   * @param token         null for the first page, otherwise the next token of the previous page
+   * @param pageSize      number of heroes per page
+   * @return page of the heroes, highest rating first
+   * @see HeroDex#heroesByRating(int, String, int)
+   */
+  public HeroPage byRating(int minimumRating, String token, int pageSize) {
+    read.lock();
+    try {
+      return heroDex.heroesByRating(minimumRating, token, pageSize);
+    } finally {
+      read.unlock();
+    }
+  }
+
+  /**
+   * Finds two heroes under one lock, so both come from the same state of the HeroDex
+   *
+   * @param firstName  name of the first hero
+   * @param secondName name of the second hero
+   * @return both heroes, null for a name without a hero
+   */
+  public Hero[] findBoth(String firstName, String secondName) {
+    read.lock();
+    try {
+      return new Hero[] {heroDex.findHero(firstName), heroDex.findHero(secondName)};
+    } finally {
+      read.unlock();
+    }
+  }
+
+  /**
+   * Adds heroes and writes them to the log of the loaded file, if any
+   *
+   * @param specs heroes to add
+   * @return number of heroes added, specs whose name is taken are skipped
+   * @throws IOException if the log cannot be written
+   */
+  public int add(Collection<HeroSpec> specs) throws IOException {
+    write.lock();
+    try {
+      return heroDex.addHeroes(specs);
+    } finally {
+      write.unlock();
+    }
+  }
+
+  /**
+   * @return number of heroes stored
+   */
+  public int size() {
+    read.lock();
+    try {
+      return heroDex.getHeroesStored();
+    } finally {
+      read.unlock();
+    }
+  }
+
+  /**
+   * Closes the log once no add is running
+   *
+   * @throws IOException if the log cannot be closed
+   */
+  public void close() throws IOException {
+    write.lock();
+    try {
+      heroDex.closeLog();
+    } finally {
+      write.unlock();
+    }
+  }
+}
@@ -0,0 +1,660 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Inverted index over hero descriptions. Descriptions are split into lower case words, and every
+ * word keeps a posting list of the heroes using it together with the positions it appears at, so
+ * a search only reads the lists of its own words:
+ *
+ * <pre>
+ * fly             heroes whose description contains "fly"
+ * fly* city       heroes with a word starting with "fly" and the word "city"
+ * "over the city" heroes whose description contains the phrase
+ * </pre>
+ *
+ * Every part of a search has to match, and results are ranked with BM25, which favors rare words
+ * and short descriptions. Words are kept in a hash map and only sorted when a prefix search
+ * follows the addition of new words. Heroes get increasing ids, so posting lists stay sorted by
+ * id when heroes are added one by one. Removed heroes are only marked as deleted until they make
+ * up most of the index, which is then rebuilt.
+ */
+public class TextIndex {
+
+  // BM25 term frequency saturation and length normalization
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+  // deleted documents tolerated before the index is rebuilt
+  private static final int MIN_REBUILD = 1024;
+
+  /**
+   * Hero found by a search with its relevance score
+   */
+  public static class Hit {
+    public final Hero hero;
+    public final double score;
+
+    Hit(Hero hero, double score) {
+      this.hero = hero;
+      this.score = score;
+    }
+
+    @Override
+    /**
+     * Returns the hero name and score
+     */
+    public String toString() {
+      return hero.name + " (" + String.format("%.3f", score) + ")";
+    }
+  }
+
+  // best score first, then by name
+  private static final Comparator<Hit> BY_SCORE =
+      Comparator.comparingDouble((Hit hit) -> -hit.score).thenComparing(hit -> hit.hero.name);
+
+  /**
+   * Posting list of one word. For every document it holds the id, the number of occurrences and
+   * the positions of the occurrences, in increasing order of id. The offset of every document
+   * entry is kept as well, so a document can be found by binary search.
+   */
+  private static final class Postings {
+    int[] data = new int[8];
+    int size = 0;
+    int[] entries = new int[2];
+    int entryCount = 0;
+    // documents not deleted that contain the word
+    int documents = 0;
+
+    void add(int document, int position) {
+      if (entryCount == 0 || data[entries[entryCount - 1]] != document) {
+        if (entryCount == entries.length) {
+          entries = Arrays.copyOf(entries, entryCount * 2);
+        }
+        ensure(3);
+        entries[entryCount++] = size;
+        data[size++] = document;
+        data[size++] = 0;
+        documents++;
+      } else {
+        ensure(1);
+      }
+      data[size++] = position;
+      data[entries[entryCount - 1] + 1]++;
+    }
+
+    private void ensure(int extra) {
+      if (size + extra > data.length) {
+        data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+      }
+    }
+
+    int document(int entry) {
+      return data[entries[entry]];
+    }
+
+    int count(int entry) {
+      return data[entries[entry] + 1];
+    }
+
+    /**
+     * Finds the first entry at or after from whose document is at least document, galloping
+     * ahead before the binary search so that walking a short list through a long one stays cheap
+     *
+     * @param document document to find
+     * @param from     entry to start at
+     * @return index of the entry, entryCount if there is none
+     */
+    int find(int document, int from) {
+      int low = from;
+      int high = from;
+      int step = 1;
+      while (high < entryCount && document(high) < document) {
+        low = high + 1;
+        high += step;
+        step <<= 1;
+      }
+      high = Math.min(high, entryCount);
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (document(middle) < document) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * @param entry    entry to search
+     * @param position position to find
+     * @return true if the word occurs at position in the document of the entry
+     */
+    boolean hasPosition(int entry, int position) {
+      int start = entries[entry] + 2;
+      return Arrays.binarySearch(data, start, start + count(entry), position) >= 0;
+    }
+  }
+
+  /**
+   * Documents matching part of a search, sorted by id, with their scores
+   */
+  private static final class Matches {
+    static final Matches NONE = new Matches(0);
+
+    int[] documents;
+    double[] scores;
+    int size = 0;
+
+    Matches(int capacity) {
+      documents = new int[capacity];
+      scores = new double[capacity];
+    }
+
+    void add(int document, double score) {
+      if (size == documents.length) {
+        documents = Arrays.copyOf(documents, Math.max(8, size * 2));
+        scores = Arrays.copyOf(scores, documents.length);
+      }
+      documents[size] = document;
+      scores[size++] = score;
+    }
+  }
+
+  /**
+   * Part of a search: a word, a prefix or a phrase
+   */
+  private abstract class Clause {
+    /**
+     * @return upper bound on the number of matching documents
+     */
+    abstract long estimate();
+
+    /**
+     * Finds the matching documents with the score of this clause alone
+     *
+     * @param candidates documents to check, null to check every document
+     * @return matching documents sorted by id
+     */
+    abstract Matches evaluate(Matches candidates);
+  }
+
+  private final HashMap<String, Postings> words = new HashMap<>();
+  // every word in order, so that a prefix maps to a range; null after new words were added
+  private String[] sortedWords = null;
+  private final HashMap<String, Integer> ids = new HashMap<>();
+  private Hero[] documents = new Hero[16];
+  private int[] lengths = new int[16];
+  private final BitSet deleted = new BitSet();
+  private int nextId = 0;
+  private int live = 0;
+  private int deletedCount = 0;
+  private long totalLength = 0;
+
+  /**
+   * Splits text into lower case words of letters and digits
+   *
+   * @param text text to split
+   * @return words in order
+   */
+  static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    int start = -1;
+    for (int i = 0; i <= text.length(); ++i) {
+      boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (wordChar && start < 0) {
+        start = i;
+      } else if (!wordChar && start >= 0) {
+        tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+        start = -1;
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * Indexes the description of a hero, replacing a hero with the same name
+   *
+   * @param hero hero to add
+   */
+  public void add(Hero hero) {
+    Integer existing = ids.get(hero.name);
+    if (existing != null) {
+      delete(existing);
+      rebuildIfNeeded();
+    }
+    int id = nextId++;
+    if (id == documents.length) {
+      documents = Arrays.copyOf(documents, id * 2);
+      lengths = Arrays.copyOf(lengths, id * 2);
+    }
+    List<String> tokens = tokenize(hero.description);
+    for (int position = 0; position < tokens.size(); ++position) {
+      Postings postings = words.get(tokens.get(position));
+      if (postings == null) {
+        postings = new Postings();
+        words.put(tokens.get(position), postings);
+        sortedWords = null;
+      }
+      postings.add(id, position);
+    }
+    documents[id] = hero;
+    lengths[id] = tokens.size();
+    ids.put(hero.name, id);
+    live++;
+    totalLength += tokens.size();
+  }
+
+  /**
+   * Indexes many heroes, sizing the document arrays once
+   *
+   * @param heroes heroes to add
+   */
+  public void addAll(Collection<Hero> heroes) {
+    int needed = nextId + heroes.size();
+    if (needed > documents.length) {
+      documents = Arrays.copyOf(documents, needed);
+      lengths = Arrays.copyOf(lengths, needed);
+    }
+    for (Hero hero : heroes) {
+      add(hero);
+    }
+  }
+
+  /**
+   * Removes a hero if this exact hero is indexed
+   *
+   * @param hero hero to remove
+   * @return true if the hero was removed
+   */
+  public boolean remove(Hero hero) {
+    Integer id = ids.get(hero.name);
+    if (id == null || documents[id] != hero) {
+      return false;
+    }
+    delete(id);
+    rebuildIfNeeded();
+    return true;
+  }
+
+  /**
+   * Marks a document as deleted and takes it out of the word statistics
+   *
+   * @param id id of an indexed document
+   */
+  private void delete(int id) {
+    Hero hero = documents[id];
+    Set<String> seen = new HashSet<>();
+    for (String word : tokenize(hero.description)) {
+      if (seen.add(word)) {
+        words.get(word).documents--;
+      }
+    }
+    ids.remove(hero.name);
+    documents[id] = null;
+    deleted.set(id);
+    deletedCount++;
+    live--;
+    totalLength -= lengths[id];
+  }
+
+  /**
+   * Indexes the remaining heroes again, dropping the deleted documents, once most documents are
+   * deleted
+   */
+  private void rebuildIfNeeded() {
+    if (deletedCount <= Math.max(live, MIN_REBUILD)) {
+      return;
+    }
+    List<Hero> heroes = new ArrayList<>(live);
+    for (int id = 0; id < nextId; ++id) {
+      if (documents[id] != null) {
+        heroes.add(documents[id]);
+      }
+    }
+    clear();
+    addAll(heroes);
+  }
+
+  /**
+   * Removes every hero
+   */
+  public void clear() {
+    words.clear();
+    sortedWords = null;
+    ids.clear();
+    documents = new Hero[16];
+    lengths = new int[16];
+    deleted.clear();
+    nextId = 0;
+    live = 0;
+    deletedCount = 0;
+    totalLength = 0;
+  }
+
+  /**
+   * @return number of heroes indexed
+   */
+  public int size() {
+    return live;
+  }
+
+  /**
+   * Finds the heroes matching every word, prefix and phrase of a search. The clause with the
+   * fewest possible matches runs first, and the other clauses only check its matches.
+   *
+   * @param search words, prefixes ending in '*' and phrases in double quotes
+   * @param limit  maximum number of results
+   * @return up to limit heroes, most relevant first
+   */
+  public List<Hit> search(String search, int limit) {
+    List<Clause> clauses = new ArrayList<>();
+    String[] pieces = search.split("\"", -1);
+    for (int i = 0; i < pieces.length; ++i) {
+      if (i % 2 == 1) {
+        // inside quotes
+        List<String> phrase = tokenize(pieces[i]);
+        if (!phrase.isEmpty()) {
+          clauses.add(phrase.size() == 1 ? new Word(phrase.get(0)) : new Phrase(phrase));
+        }
+        continue;
+      }
+      for (String piece : pieces[i].trim().split("\\s+")) {
+        List<String> tokens = tokenize(piece);
+        for (int t = 0; t < tokens.size(); ++t) {
+          boolean prefix = piece.endsWith("*") && t == tokens.size() - 1;
+          clauses.add(prefix ? new Prefix(tokens.get(t)) : new Word(tokens.get(t)));
+        }
+      }
+    }
+    if (clauses.isEmpty()) {
+      return new ArrayList<>();
+    }
+    clauses.sort(Comparator.comparingLong(Clause::estimate));
+    Matches matches = clauses.get(0).evaluate(null);
+    for (int i = 1; i < clauses.size() && matches.size > 0; ++i) {
+      matches = addScores(matches, clauses.get(i).evaluate(matches));
+    }
+    return best(matches, limit);
+  }
+
+  /**
+   * Keeps the best hits in a heap whose head is the worst of them
+   *
+   * @param matches matching documents
+   * @param limit   maximum number of results
+   * @return up to limit hits, best first
+   */
+  private List<Hit> best(Matches matches, int limit) {
+    PriorityQueue<Hit> best = new PriorityQueue<>(Math.max(1, limit), BY_SCORE.reversed());
+    for (int i = 0; i < matches.size && limit > 0; ++i) {
+      Hit hit = new Hit(documents[matches.documents[i]], matches.scores[i]);
+      if (best.size() < limit) {
+        best.add(hit);
+      } else if (BY_SCORE.compare(hit, best.peek()) < 0) {
+        best.poll();
+        best.add(hit);
+      }
+    }
+    List<Hit> hits = new ArrayList<>(best);
+    hits.sort(BY_SCORE);
+    return hits;
+  }
+
+  /**
+   * Keeps the candidates that matched a clause, adding the clause scores to theirs
+   *
+   * @param candidates documents the clause checked
+   * @param matched    candidates the clause matched
+   * @return matched candidates with their total scores
+   */
+  private static Matches addScores(Matches candidates, Matches matched) {
+    int c = 0;
+    for (int m = 0; m < matched.size; ++m) {
+      while (candidates.documents[c] != matched.documents[m]) {
+        c++;
+      }
+      matched.scores[m] += candidates.scores[c];
+    }
+    return matched;
+  }
+
+  /**
+   * BM25 inverse document frequency of a word
+   *
+   * @param postings postings of the word
+   * @return weight of the word, higher for rarer words
+   */
+  private double idf(Postings postings) {
+    double documentsWith = postings.documents;
+    return Math.log(1 + (live - documentsWith + 0.5) / (documentsWith + 0.5));
+  }
+
+  /**
+   * BM25 weight of a number of occurrences in a document
+   *
+   * @param count    occurrences in the document
+   * @param document id of the document
+   * @return saturated occurrence weight
+   */
+  private double frequency(int count, int document) {
+    double averageLength = live == 0 ? 1 : (double) totalLength / live;
+    return count * (K1 + 1)
+        / (count + K1 * (1 - B + B * lengths[document] / averageLength));
+  }
+
+  /**
+   * Documents containing a word
+   */
+  private class Word extends Clause {
+    private final Postings postings;
+
+    Word(String word) {
+      postings = words.get(word);
+    }
+
+    long estimate() {
+      return postings == null ? 0 : postings.documents;
+    }
+
+    Matches evaluate(Matches candidates) {
+      if (postings == null || postings.documents == 0) {
+        return Matches.NONE;
+      }
+      double idf = idf(postings);
+      if (candidates == null) {
+        Matches matches = new Matches(postings.documents);
+        for (int entry = 0; entry < postings.entryCount; ++entry) {
+          int document = postings.document(entry);
+          if (!deleted.get(document)) {
+            matches.add(document, idf * frequency(postings.count(entry), document));
+          }
+        }
+        return matches;
+      }
+      Matches matches = new Matches(Math.min(candidates.size, postings.documents));
+      int entry = 0;
+      for (int i = 0; i < candidates.size && entry < postings.entryCount; ++i) {
+        int document = candidates.documents[i];
+        entry = postings.find(document, entry);
+        if (entry < postings.entryCount && postings.document(entry) == document) {
+          matches.add(document, idf * frequency(postings.count(entry), document));
+        }
+      }
+      return matches;
+    }
+  }
+
+  /**
+   * Documents containing a word starting with a prefix, scored on every such word
+   */
+  private class Prefix extends Clause {
+    private final List<Word> matching = new ArrayList<>();
+
+    Prefix(String prefix) {
+      if (sortedWords == null) {
+        sortedWords = words.keySet().toArray(new String[0]);
+        Arrays.sort(sortedWords);
+      }
+      int first = Arrays.binarySearch(sortedWords, prefix);
+      for (int i = first >= 0 ? first : -first - 1;
+          i < sortedWords.length && sortedWords[i].startsWith(prefix); ++i) {
+        matching.add(new Word(sortedWords[i]));
+      }
+    }
+
+    long estimate() {
+      long estimate = 0;
+      for (Word word : matching) {
+        estimate += word.estimate();
+      }
+      return estimate;
+    }
+
+    Matches evaluate(Matches candidates) {
+      if (matching.size() == 1) {
+        return matching.get(0).evaluate(candidates);
+      }
+      List<Matches> parts = new ArrayList<>(matching.size());
+      int total = 0;
+      for (Word word : matching) {
+        Matches part = word.evaluate(candidates);
+        parts.add(part);
+        total += part.size;
+      }
+      // sorts every (id, index) pair by id and adds up the scores of equal ids
+      long[] keys = new long[total];
+      double[] scores = new double[total];
+      int k = 0;
+      for (Matches part : parts) {
+        for (int i = 0; i < part.size; ++i) {
+          scores[k] = part.scores[i];
+          keys[k] = ((long) part.documents[i] << 32) | k;
+          k++;
+        }
+      }
+      Arrays.sort(keys);
+      Matches matches = new Matches(total);
+      for (long key : keys) {
+        int document = (int) (key >>> 32);
+        double score = scores[(int) key];
+        if (matches.size > 0 && matches.documents[matches.size - 1] == document) {
+          matches.scores[matches.size - 1] += score;
+        } else {
+          matches.add(document, score);
+        }
+      }
+      return matches;
+    }
+  }
+
+  /**
+   * Documents containing words right after each other, scored on the number of occurrences
+   */
+  private class Phrase extends Clause {
+    private final Postings[] lists;
+    // word with the fewest documents, whose documents are checked
+    private int rarest = 0;
+
+    Phrase(List<String> phrase) {
+      lists = new Postings[phrase.size()];
+      for (int w = 0; w < lists.length; ++w) {
+        lists[w] = words.get(phrase.get(w));
+        if (lists[w] != null && lists[rarest] != null
+            && lists[w].documents < lists[rarest].documents) {
+          rarest = w;
+        }
+      }
+    }
+
+    long estimate() {
+      long estimate = Long.MAX_VALUE;
+      for (Postings postings : lists) {
+        estimate = Math.min(estimate, postings == null ? 0 : postings.documents);
+      }
+      return estimate;
+    }
+
+    Matches evaluate(Matches candidates) {
+      if (estimate() == 0) {
+        return Matches.NONE;
+      }
+      double idf = 0;
+      for (Postings postings : lists) {
+        idf += idf(postings);
+      }
+      // one cursor per word
+      int[] at = new int[lists.length];
+      Matches matches = new Matches(8);
+      Postings driver = lists[rarest];
+      int count = candidates == null ? driver.entryCount : candidates.size;
+      for (int i = 0; i < count; ++i) {
+        int document;
+        if (candidates == null) {
+          document = driver.document(i);
+          if (deleted.get(document)) {
+            continue;
+          }
+        } else {
+          document = candidates.documents[i];
+        }
+        if (seek(at, document)) {
+          int occurrences = occurrences(at);
+          if (occurrences > 0) {
+            matches.add(document, idf * frequency(occurrences, document));
+          }
+        }
+      }
+      return matches;
+    }
+
+    /**
+     * Moves every cursor to the entry of a document
+     *
+     * @param at       cursors into the postings
+     * @param document document to move to
+     * @return true if every word occurs in the document
+     */
+    private boolean seek(int[] at, int document) {
+      for (int w = 0; w < lists.length; ++w) {
+        at[w] = lists[w].find(document, at[w]);
+        if (at[w] >= lists[w].entryCount || lists[w].document(at[w]) != document) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Counts the positions where the phrase starts in the document every cursor is at
+     *
+     * @param at cursors at entries of the same document
+     * @return number of occurrences of the phrase
+     */
+    private int occurrences(int[] at) {
+      Postings driver = lists[rarest];
+      int start = driver.entries[at[rarest]] + 2;
+      int occurrences = 0;
+      for (int p = start; p < start + driver.count(at[rarest]); ++p) {
+        // where the phrase would start if the rarest word is at this position
+        int first = driver.data[p] - rarest;
+        boolean found = first >= 0;
+        for (int w = 0; w < lists.length && found; ++w) {
+          found = w == rarest || lists[w].hasPosition(at[w], first + w);
+        }
+        if (found) {
+          occurrences++;
+        }
+      }
+      return occurrences;
+    }
+  }
+}
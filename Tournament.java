@@ -0,0 +1,412 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs tournaments between heroes: every hero against every other hero, or a knockout bracket.
+ * Who wins a battle is decided by a BattleScorer from the rating and trait of both heroes.
+ *
+ * For every hero against every other, the heroes are cut into blocks and each pair of blocks is
+ * a unit of work on a fork-join pool, split in halves so idle threads can steal them. A battle
+ * only depends on rating and trait, so the scorer runs once per combination of both, and heroes
+ * are sorted by that combination first: a block then holds a few runs of heroes that fight
+ * alike, and two runs settle all their battles with one table lookup. Wins and losses are
+ * counted in a long per hero in arrays owned by each pool thread and added up at the end, so no
+ * object is created per battle.
+ */
+public class Tournament {
+
+  /**
+   * Decides a battle between two heroes
+   */
+  public interface BattleScorer {
+    /**
+     * @param firstRating  rating of the first hero
+     * @param firstTrait   trait of the first hero
+     * @param secondRating rating of the second hero
+     * @param secondTrait  trait of the second hero
+     * @return positive if the first hero wins, negative if the second wins, 0 for a tie
+     */
+    int battle(int firstRating, Hero.Traits firstTrait, int secondRating,
+        Hero.Traits secondTrait);
+  }
+
+  // the higher rating wins, as in Hero.compareTo()
+  public static final BattleScorer BY_RATING =
+      (firstRating, firstTrait, secondRating, secondTrait) ->
+          Integer.compare(firstRating, secondRating);
+
+  // rating points a trait is worth against a trait it has the edge over
+  public static final int MATCHUP_BONUS = 10;
+  // the higher rating wins, after each trait gets MATCHUP_BONUS against the two traits declared
+  // after it, wrapping around, so every trait has the edge over two traits and is weak to two
+  public static final BattleScorer TRAIT_MATCHUPS =
+      (firstRating, firstTrait, secondRating, secondTrait) -> {
+        int traits = Hero.Traits.values().length;
+        int distance = (secondTrait.ordinal() - firstTrait.ordinal() + traits) % traits;
+        int bonus = distance == 0 ? 0 : distance <= 2 ? MATCHUP_BONUS : -MATCHUP_BONUS;
+        return Integer.compare(firstRating + bonus, secondRating);
+      };
+
+  // default number of heroes in a block, small enough for a block pair to stay in cache
+  public static final int DEFAULT_BLOCK_SIZE = 1024;
+  private static final int TRAITS = Hero.Traits.values().length;
+  // combinations of rating and trait
+  private static final int CLASSES = (RatingIndex.MAX_RATING + 1) * TRAITS;
+  // a record keeps the wins of a hero in its low 32 bits and the losses in its high 32 bits, so
+  // one addition counts either
+  private static final long WIN = 1;
+  private static final long LOSS = 1L << 32;
+
+  private final ForkJoinPool pool;
+  private final BattleScorer scorer;
+  private final int blockSize;
+
+  /**
+   * Result of a tournament of every hero against every other hero
+   */
+  public static class Result {
+    private final Hero[] heroes;
+    private final int[] wins;
+    private final int[] losses;
+
+    Result(Hero[] heroes, int[] wins, int[] losses) {
+      this.heroes = heroes;
+      this.wins = wins;
+      this.losses = losses;
+    }
+
+    /**
+     * @return number of heroes in the tournament
+     */
+    public int size() {
+      return heroes.length;
+    }
+
+    /**
+     * @param index position of the hero in the collection the tournament ran on
+     * @return hero at that position
+     */
+    public Hero hero(int index) {
+      return heroes[index];
+    }
+
+    /**
+     * @param index position of the hero
+     * @return battles the hero won
+     */
+    public int wins(int index) {
+      return wins[index];
+    }
+
+    /**
+     * @param index position of the hero
+     * @return battles the hero lost
+     */
+    public int losses(int index) {
+      return losses[index];
+    }
+
+    /**
+     * @param index position of the hero
+     * @return battles that ended in a tie
+     */
+    public int ties(int index) {
+      return heroes.length - 1 - wins[index] - losses[index];
+    }
+
+    /**
+     * Ranks the heroes by most wins, then fewest losses, then name
+     *
+     * @return positions of the heroes, winner first
+     */
+    public int[] ranking() {
+      Integer[] order = new Integer[heroes.length];
+      for (int i = 0; i < order.length; ++i) {
+        order[i] = i;
+      }
+      Arrays.sort(order, Comparator.comparingInt((Integer i) -> -wins[i])
+          .thenComparingInt(i -> losses[i]).thenComparing(i -> heroes[i].name));
+      int[] ranking = new int[order.length];
+      for (int i = 0; i < ranking.length; ++i) {
+        ranking[i] = order[i];
+      }
+      return ranking;
+    }
+
+    /**
+     * Writes the win, loss and tie table of the best heroes
+     *
+     * @param limit number of heroes listed
+     * @return one line per hero, winner first
+     */
+    public String table(int limit) {
+      StringBuilder table = new StringBuilder();
+      int[] ranking = ranking();
+      for (int rank = 0; rank < Math.min(limit, ranking.length); ++rank) {
+        int i = ranking[rank];
+        table.append(rank + 1).append(". ").append(heroes[i].name).append(": ").append(wins[i])
+            .append(" won, ").append(losses[i]).append(" lost, ").append(ties(i))
+            .append(" tied\n");
+      }
+      return table.toString();
+    }
+  }
+
+  /**
+   * Constructor with specified pool, scorer and block size
+   *
+   * @param pool      pool to run the battles on
+   * @param scorer    decides every battle
+   * @param blockSize number of heroes in a block
+   */
+  public Tournament(ForkJoinPool pool, BattleScorer scorer, int blockSize) {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("block size must be positive: " + blockSize);
+    }
+    this.pool = pool;
+    this.scorer = scorer;
+    this.blockSize = blockSize;
+  }
+
+  /**
+   * Constructor using the common pool and default block size
+   *
+   * @param scorer decides every battle
+   */
+  public Tournament(BattleScorer scorer) {
+    this(ForkJoinPool.commonPool(), scorer, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * @param hero hero to classify
+   * @return number of the combination of rating and trait of the hero
+   */
+  private static int classOf(Hero hero) {
+    return hero.rating * TRAITS + hero.traitNumber;
+  }
+
+  /**
+   * Runs a battle between every pair of heroes
+   *
+   * @param heroes heroes taking part
+   * @return wins, losses and ties of every hero, in the order of the collection
+   */
+  public Result allPairs(Collection<Hero> heroes) {
+    Hero[] field = heroes.toArray(new Hero[0]);
+    int n = field.length;
+    // counting sort of the heroes by class, so that a block holds a few runs of one class
+    int[] classStart = new int[CLASSES + 1];
+    for (Hero hero : field) {
+      classStart[classOf(hero) + 1]++;
+    }
+    for (int c = 0; c < CLASSES; ++c) {
+      classStart[c + 1] += classStart[c];
+    }
+    int[] sorted = new int[n];
+    int[] next = Arrays.copyOf(classStart, CLASSES);
+    for (int i = 0; i < n; ++i) {
+      sorted[next[classOf(field[i])]++] = i;
+    }
+
+    // outcome of a battle between a hero of the row class and one of the column class, as a
+    // win or loss added to the record of the row hero and of the column hero
+    long[] rowRecord = new long[CLASSES * CLASSES];
+    long[] columnRecord = new long[CLASSES * CLASSES];
+    Hero.Traits[] traits = Hero.Traits.values();
+    for (int a = 0; a < CLASSES; ++a) {
+      for (int b = 0; b < CLASSES; ++b) {
+        if (classStart[a] < classStart[a + 1] && classStart[b] < classStart[b + 1]) {
+          int outcome = scorer.battle(a / TRAITS, traits[a % TRAITS], b / TRAITS,
+              traits[b % TRAITS]);
+          rowRecord[a * CLASSES + b] = outcome > 0 ? WIN : outcome < 0 ? LOSS : 0;
+          columnRecord[a * CLASSES + b] = outcome > 0 ? LOSS : outcome < 0 ? WIN : 0;
+        }
+      }
+    }
+
+    int blocks = (n + blockSize - 1) / blockSize;
+    // records by sorted position of every thread that ran battles
+    ConcurrentHashMap<Thread, long[]> records = new ConcurrentHashMap<>();
+
+    // battles of a range of block pairs, numbered row by row over the pairs (i, j) with i <= j
+    @SuppressWarnings("serial")
+    class Battles extends RecursiveAction {
+      private final long from;
+      private final long to;
+
+      Battles(long from, long to) {
+        this.from = from;
+        this.to = to;
+      }
+
+      @Override
+      protected void compute() {
+        if (to - from > 1) {
+          long middle = (from + to) >>> 1;
+          invokeAll(new Battles(from, middle), new Battles(middle, to));
+          return;
+        }
+        // finds the row of the pair: row r starts at r * blocks - r * (r - 1) / 2
+        int low = 0;
+        int high = blocks - 1;
+        while (low < high) {
+          int row = (low + high + 1) >>> 1;
+          if ((long) row * blocks - (long) row * (row - 1) / 2 <= from) {
+            low = row;
+          } else {
+            high = row - 1;
+          }
+        }
+        int column = (int) (from - ((long) low * blocks - (long) low * (low - 1) / 2)) + low;
+        battle(low, column, records.computeIfAbsent(Thread.currentThread(),
+            thread -> new long[n]));
+      }
+
+      /**
+       * Splits a block into runs of heroes of the same class
+       *
+       * @param block block to split
+       * @return start of every run followed by the end of the block
+       */
+      private int[] runs(int block) {
+        int start = block * blockSize;
+        int end = Math.min(n, start + blockSize);
+        int[] runs = new int[end - start + 1];
+        int count = 0;
+        int position = start;
+        while (position < end) {
+          runs[count++] = position;
+          int c = classOf(field[sorted[position]]);
+          position = Math.min(end, classStart[c + 1]);
+        }
+        runs[count++] = end;
+        return Arrays.copyOf(runs, count);
+      }
+
+      /**
+       * Runs the battles between two blocks, or within a block if both are the same. All heroes
+       * of a run fight the heroes of another run the same way, so the outcome of one battle is
+       * counted once per hero of the other run.
+       *
+       * @param first   block of the first heroes
+       * @param second  block of the second heroes, not before first
+       * @param records records of this thread
+       */
+      private void battle(int first, int second, long[] records) {
+        int[] firstRuns = runs(first);
+        int[] secondRuns = first == second ? firstRuns : runs(second);
+        long[] secondGain = new long[secondRuns.length - 1];
+        for (int a = 0; a + 1 < firstRuns.length; ++a) {
+          int aStart = firstRuns[a];
+          int aLength = firstRuns[a + 1] - aStart;
+          int row = classOf(field[sorted[aStart]]) * CLASSES;
+          long firstGain = 0;
+          for (int b = first == second ? a + 1 : 0; b + 1 < secondRuns.length; ++b) {
+            int bLength = secondRuns[b + 1] - secondRuns[b];
+            int index = row + classOf(field[sorted[secondRuns[b]]]);
+            firstGain += bLength * rowRecord[index];
+            secondGain[b] += aLength * columnRecord[index];
+          }
+          for (int i = aStart; i < aStart + aLength; ++i) {
+            records[i] += firstGain;
+          }
+          if (first == second) {
+            // battles within the run, where the earlier hero is the first one
+            int index = row + classOf(field[sorted[aStart]]);
+            for (int k = 0; k < aLength; ++k) {
+              records[aStart + k] +=
+                  (aLength - 1 - k) * rowRecord[index] + k * columnRecord[index];
+            }
+          }
+        }
+        for (int b = 0; b + 1 < secondRuns.length; ++b) {
+          for (int j = secondRuns[b]; j < secondRuns[b + 1]; ++j) {
+            records[j] += secondGain[b];
+          }
+        }
+      }
+    }
+
+    if (blocks > 0) {
+      pool.invoke(new Battles(0, (long) blocks * (blocks + 1) / 2));
+    }
+    int[] wins = new int[n];
+    int[] losses = new int[n];
+    for (long[] own : records.values()) {
+      for (int position = 0; position < n; ++position) {
+        wins[sorted[position]] += (int) own[position];
+        losses[sorted[position]] += (int) (own[position] >>> 32);
+      }
+    }
+    return new Result(field, wins, losses);
+  }
+
+  /**
+   * Runs a knockout bracket. Heroes are seeded by rating and the best seeds meet as late as
+   * possible; seeds without an opponent advance, and a tie sends the better seed through.
+   *
+   * @param heroes heroes taking part
+   * @return heroes by the round they went out in, champion first and better seeds first within
+   *         a round
+   */
+  public List<Hero> bracket(Collection<Hero> heroes) {
+    List<Hero> seeds = new ArrayList<>(heroes);
+    seeds.sort(HeroQuery.BY_RATING);
+    int slots = 1;
+    while (slots < seeds.size()) {
+      slots *= 2;
+    }
+    // seed numbers in bracket order, so that seed s meets seed slots + 1 - s in the first round
+    int[] order = {0};
+    while (order.length < slots) {
+      int[] next = new int[order.length * 2];
+      for (int i = 0; i < order.length; ++i) {
+        next[2 * i] = order[i];
+        next[2 * i + 1] = order.length * 2 - 1 - order[i];
+      }
+      order = next;
+    }
+
+    List<List<Integer>> rounds = new ArrayList<>();
+    int[] alive = order;
+    while (alive.length > 1) {
+      int[] winners = new int[alive.length / 2];
+      List<Integer> out = new ArrayList<>();
+      for (int i = 0; i < winners.length; ++i) {
+        int a = Math.min(alive[2 * i], alive[2 * i + 1]);
+        int b = Math.max(alive[2 * i], alive[2 * i + 1]);
+        if (b >= seeds.size()) {
+          // a bye
+          winners[i] = a;
+          continue;
+        }
+        Hero better = seeds.get(a);
+        Hero worse = seeds.get(b);
+        int outcome = scorer.battle(better.rating, better.trait(), worse.rating, worse.trait());
+        winners[i] = outcome >= 0 ? a : b;
+        out.add(outcome >= 0 ? b : a);
+      }
+      Collections.sort(out);
+      rounds.add(out);
+      alive = winners;
+    }
+
+    List<Hero> ranking = new ArrayList<>(seeds.size());
+    if (!seeds.isEmpty()) {
+      ranking.add(seeds.get(alive[0]));
+    }
+    for (int round = rounds.size() - 1; round >= 0; --round) {
+      for (int seed : rounds.get(round)) {
+        ranking.add(seeds.get(seed));
+      }
+    }
+    return ranking;
+  }
+}
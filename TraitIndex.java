@@ -0,0 +1,80 @@
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Inverted index from each trait to the heroes that have it, kept up to date on every add and
+ * remove. Each trait maps to its heroes sorted by name and is handed out as a read-only view, so
+ * a filter by trait neither scans the hash table nor copies the matches, its size is known in
+ * constant time, and other filters can test membership with containsKey().
+ */
+public class TraitIndex {
+
+  private final EnumMap<Hero.Traits, TreeMap<String, Hero>> heroes =
+      new EnumMap<>(Hero.Traits.class);
+  // read-only views handed out by withTrait(), created once per trait
+  private final EnumMap<Hero.Traits, NavigableMap<String, Hero>> views =
+      new EnumMap<>(Hero.Traits.class);
+
+  /**
+   * Constructor creating an empty entry per trait
+   */
+  public TraitIndex() {
+    for (Hero.Traits trait : Hero.Traits.values()) {
+      TreeMap<String, Hero> withTrait = new TreeMap<>();
+      heroes.put(trait, withTrait);
+      views.put(trait, Collections.unmodifiableNavigableMap(withTrait));
+    }
+  }
+
+  /**
+   * Adds a hero under its trait, replacing a hero with the same name and trait
+   *
+   * @param hero hero to add
+   */
+  public void add(Hero hero) {
+    heroes.get(hero.trait()).put(hero.name, hero);
+  }
+
+  /**
+   * Removes a hero if this exact hero is indexed
+   *
+   * @param hero hero to remove
+   * @return true if the hero was removed
+   */
+  public boolean remove(Hero hero) {
+    return heroes.get(hero.trait()).remove(hero.name, hero);
+  }
+
+  /**
+   * Removes every hero
+   */
+  public void clear() {
+    for (TreeMap<String, Hero> withTrait : heroes.values()) {
+      withTrait.clear();
+    }
+  }
+
+  /**
+   * Returns the heroes that have a trait, keyed and sorted by name. The view follows later
+   * changes to the index and cannot be modified. Its tailMap() resumes a listing after the
+   * last name seen.
+   *
+   * @param trait trait to match
+   * @return read-only view of the matching heroes
+   */
+  public NavigableMap<String, Hero> withTrait(Hero.Traits trait) {
+    return views.get(trait);
+  }
+
+  /**
+   * Counts the heroes that have a trait
+   *
+   * @param trait trait to match
+   * @return number of matching heroes
+   */
+  public int count(Hero.Traits trait) {
+    return heroes.get(trait).size();
+  }
+}